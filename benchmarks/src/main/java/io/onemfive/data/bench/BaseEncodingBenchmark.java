@@ -0,0 +1,69 @@
+package io.onemfive.data.bench;
+
+import io.onemfive.data.util.Base32;
+import io.onemfive.data.util.Base58;
+import io.onemfive.data.util.Base64;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Base64/Base58/Base32 at key, hash and small message sizes. Base58 and
+ * Base32 go through BigInteger and grow quadratically, so sizes stay small.
+ *
+ * @author objectorange
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class BaseEncodingBenchmark {
+
+    @Param({"32", "256", "1024"})
+    public int size;
+
+    private byte[] data;
+    private String base64;
+    private String base58;
+    private String base32;
+
+    @Setup
+    public void setup() {
+        data = Payloads.randomBytes(size);
+        base64 = Base64.encode(data);
+        base58 = Base58.encode(data);
+        base32 = Base32.encode(data);
+    }
+
+    @Benchmark
+    public String base64Encode() {
+        return Base64.encode(data);
+    }
+
+    @Benchmark
+    public byte[] base64Decode() {
+        return Base64.decode(base64);
+    }
+
+    @Benchmark
+    public String base58Encode() {
+        return Base58.encode(data);
+    }
+
+    @Benchmark
+    public byte[] base58Decode() {
+        return Base58.decode(base58);
+    }
+
+    @Benchmark
+    public String base32Encode() {
+        return Base32.encode(data);
+    }
+
+    @Benchmark
+    public byte[] base32Decode() {
+        return Base32.decode(base32);
+    }
+}
@@ -0,0 +1,52 @@
+package io.onemfive.data.bench;
+
+import io.onemfive.data.util.ByteArray;
+import io.onemfive.data.util.ByteCache;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ByteCache.acquire/release from one thread and under contention.
+ *
+ * @author objectorange
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class ByteCacheBenchmark {
+
+    @Param({"1024", "32768"})
+    public int size;
+
+    private ByteCache cache;
+
+    @Setup
+    public void setup() {
+        cache = ByteCache.getInstance(64, size);
+    }
+
+    @TearDown
+    public void tearDown() {
+        ByteCache.clearAll();
+    }
+
+    @Benchmark
+    @Threads(1)
+    public ByteArray acquireRelease() {
+        ByteArray b = cache.acquire();
+        cache.release(b);
+        return b;
+    }
+
+    @Benchmark
+    @Threads(8)
+    public ByteArray acquireReleaseContended() {
+        ByteArray b = cache.acquire();
+        cache.release(b);
+        return b;
+    }
+}
@@ -0,0 +1,47 @@
+package io.onemfive.data.bench;
+
+import io.onemfive.data.util.DataHelper;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * DataHelper.compress/decompress of JSON message traffic, which compresses,
+ * and of random bytes, which does not.
+ *
+ * @author objectorange
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class CompressionBenchmark {
+
+    @Param({"1024", "65536", "1048576"})
+    public int size;
+
+    @Param({"json", "random"})
+    public String kind;
+
+    private byte[] data;
+    private byte[] compressed;
+
+    @Setup
+    public void setup() {
+        data = "json".equals(kind) ? Payloads.jsonBytes(size) : Payloads.randomBytes(size);
+        compressed = DataHelper.compress(data);
+    }
+
+    @Benchmark
+    public byte[] compress() {
+        return DataHelper.compress(data);
+    }
+
+    @Benchmark
+    public byte[] decompress() throws IOException {
+        return DataHelper.decompress(compressed);
+    }
+}
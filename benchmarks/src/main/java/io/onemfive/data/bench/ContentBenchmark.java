@@ -0,0 +1,42 @@
+package io.onemfive.data.bench;
+
+import io.onemfive.data.content.Content;
+import io.onemfive.data.content.Image;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Content.toMap with large binary bodies, where the Base64 copy dominates.
+ *
+ * @author objectorange
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class ContentBenchmark {
+
+    @Param({"65536", "1048576", "8388608"})
+    public int size;
+
+    private Content content;
+
+    @Setup
+    public void setup() {
+        content = new Image(Payloads.randomBytes(size), "image/jpeg", "photo.jpg", false, false);
+    }
+
+    @Benchmark
+    public Map<String,Object> toMap() {
+        return content.toMap();
+    }
+
+    @Benchmark
+    public Map<String,Object> toMapRawBody() {
+        return content.toMap(false);
+    }
+}
@@ -0,0 +1,45 @@
+package io.onemfive.data.bench;
+
+import io.onemfive.data.Envelope;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Envelope.toMap/fromMap, the path every service hop takes, by header count.
+ *
+ * @author objectorange
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class EnvelopeBenchmark {
+
+    @Param({"0", "8", "64"})
+    public int headers;
+
+    private Envelope envelope;
+    private Map<String,Object> map;
+
+    @Setup
+    public void setup() {
+        envelope = Payloads.envelope(headers);
+        map = envelope.toMap();
+    }
+
+    @Benchmark
+    public Map<String,Object> toMap() {
+        return envelope.toMap();
+    }
+
+    @Benchmark
+    public Envelope fromMap() {
+        Envelope e = new Envelope();
+        e.fromMap(map);
+        return e;
+    }
+}
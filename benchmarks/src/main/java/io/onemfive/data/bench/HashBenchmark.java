@@ -0,0 +1,53 @@
+package io.onemfive.data.bench;
+
+import io.onemfive.data.Hash;
+import io.onemfive.data.util.HashUtil;
+import org.openjdk.jmh.annotations.*;
+
+import java.security.NoSuchAlgorithmException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Content hashing by size and algorithm, and passphrase hashing, which is
+ * slow by design and measured per call.
+ *
+ * @author objectorange
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class HashBenchmark {
+
+    @Param({"1024", "65536", "1048576"})
+    public int size;
+
+    @Param({"SHA1", "SHA256", "SHA512"})
+    public Hash.Algorithm algorithm;
+
+    private byte[] data;
+
+    @Setup
+    public void setup() {
+        data = Payloads.randomBytes(size);
+    }
+
+    @Benchmark
+    public Hash generateHash() throws NoSuchAlgorithmException {
+        return HashUtil.generateHash(data, algorithm);
+    }
+
+    /**
+     * Independent of the parameters; JMH still runs it once per combination.
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Warmup(iterations = 3)
+    @Measurement(iterations = 10)
+    public Hash generatePasswordHash() throws NoSuchAlgorithmException {
+        return HashUtil.generatePasswordHash("correct horse battery staple");
+    }
+}
@@ -0,0 +1,49 @@
+package io.onemfive.data.bench;
+
+import io.onemfive.data.util.JSONParser;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JSONParser.parse and toString over payloads of growing size.
+ *
+ * @author objectorange
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class JSONBenchmark {
+
+    @Param({"1024", "65536", "1048576"})
+    public int size;
+
+    private String text;
+    private byte[] bytes;
+    private Object graph;
+
+    @Setup
+    public void setup() {
+        text = Payloads.jsonText(size);
+        bytes = Payloads.jsonBytes(size);
+        graph = JSONParser.parse(text);
+    }
+
+    @Benchmark
+    public Object parseString() {
+        return JSONParser.parse(text);
+    }
+
+    @Benchmark
+    public Object parseBytes() {
+        return JSONParser.parse(bytes);
+    }
+
+    @Benchmark
+    public String toJSONString() {
+        return JSONParser.toString(graph);
+    }
+}
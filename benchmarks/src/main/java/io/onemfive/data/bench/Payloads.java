@@ -0,0 +1,124 @@
+package io.onemfive.data.bench;
+
+import io.onemfive.data.DID;
+import io.onemfive.data.Envelope;
+import io.onemfive.data.NetworkPeer;
+import io.onemfive.data.PublicKey;
+import io.onemfive.data.route.SimpleRoute;
+import io.onemfive.data.util.JSONParser;
+
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * Seeded benchmark inputs shaped like real 1M5 traffic, so every run and
+ * every fork measures the same bytes.
+ *
+ * @author objectorange
+ */
+final class Payloads {
+
+    private static final long SEED = 0x1A5L;
+
+    private static final String[] WORDS = {"invisible", "matrix", "service", "route", "peer", "onion",
+            "garlic", "tunnel", "identity", "key", "envelope", "message", "content", "hash", "fingerprint"};
+
+    private Payloads() {}
+
+    static Random random() {
+        return new Random(SEED);
+    }
+
+    /**
+     * @return incompressible bytes, like an encrypted or already compressed body
+     */
+    static byte[] randomBytes(int size) {
+        byte[] b = new byte[size];
+        random().nextBytes(b);
+        return b;
+    }
+
+    /**
+     * @return about size bytes of UTF-8 JSON text, compressible the way message traffic is
+     */
+    static byte[] jsonBytes(int size) {
+        return jsonText(size).getBytes(StandardCharsets.UTF_8);
+    }
+
+    static String jsonText(int size) {
+        Random r = random();
+        List<Object> records = new ArrayList<>();
+        int length = 2;
+        while(length < size) {
+            Map<String,Object> m = record(r);
+            length += JSONParser.toString(m).length() + 1;
+            records.add(m);
+        }
+        return JSONParser.toString(records);
+    }
+
+    private static Map<String,Object> record(Random r) {
+        Map<String,Object> m = new HashMap<>();
+        m.put("id", r.nextLong());
+        m.put("type", "io.onemfive.data.content.Text");
+        m.put("name", sentence(r, 3));
+        m.put("body", sentence(r, 12));
+        m.put("createdAt", String.valueOf(1550000000000L + r.nextInt(Integer.MAX_VALUE)));
+        m.put("size", r.nextInt(100000));
+        m.put("score", r.nextDouble());
+        m.put("readable", r.nextBoolean());
+        m.put("keywords", Arrays.asList(word(r), word(r), word(r)));
+        return m;
+    }
+
+    /**
+     * @return a routed document envelope carrying a DID with keys and peers
+     */
+    static Envelope envelope(int headers) {
+        Random r = random();
+        Envelope e = Envelope.documentFactory();
+        e.setRoute(new SimpleRoute("io.onemfive.core.sensors.SensorsService", "SEND"));
+        e.setCommandPath("/" + word(r) + "/" + word(r));
+        e.setAction(Envelope.Action.ADD);
+        e.setSensitivity(Envelope.Sensitivity.HIGH);
+        e.setContentType(Envelope.HEADER_CONTENT_TYPE_JSON);
+        for(int i = 0; i < headers; i++)
+            e.setHeader("X-" + word(r) + "-" + i, sentence(r, 2));
+        e.setDID(did(r));
+        return e;
+    }
+
+    private static DID did(Random r) {
+        DID did = new DID();
+        did.setUsername(word(r) + r.nextInt(1000));
+        did.setDescription(sentence(r, 6));
+        PublicKey key = new PublicKey(base64(r, 387));
+        key.setAlias(did.getUsername());
+        key.setFingerprint(base64(r, 20));
+        did.addPublicKey(key);
+        NetworkPeer peer = new NetworkPeer("I2P");
+        peer.setAddress(base64(r, 387));
+        peer.setFingerprint(base64(r, 20));
+        did.addPeer(peer);
+        return did;
+    }
+
+    private static String base64(Random r, int bytes) {
+        byte[] b = new byte[bytes];
+        r.nextBytes(b);
+        return Base64.getEncoder().encodeToString(b);
+    }
+
+    private static String sentence(Random r, int words) {
+        StringBuilder sb = new StringBuilder();
+        for(int i = 0; i < words; i++) {
+            if(i > 0) sb.append(' ');
+            sb.append(word(r));
+        }
+        return sb.toString();
+    }
+
+    private static String word(Random r) {
+        return WORDS[r.nextInt(WORDS.length)];
+    }
+}
@@ -1,6 +1,13 @@
 package io.onemfive.data;
 
+import io.onemfive.data.content.Content;
+import io.onemfive.data.util.BinaryCodec;
+import io.onemfive.data.util.BinaryCodecs;
+import io.onemfive.data.util.BinaryReader;
+import io.onemfive.data.util.BinaryWriter;
+
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -11,6 +18,10 @@ import java.util.Map;
  */
 public class BaseMessage implements Message, Persistable {
 
+    static {
+        BinaryCodecs.register(new Wire<BaseMessage>(), BaseMessage.class);
+    }
+
     private List<String> errorMessages = new ArrayList<>();
     public void addErrorMessage(String errorMessage) {
         errorMessages.add(errorMessage);
@@ -25,13 +36,79 @@ public class BaseMessage implements Message, Persistable {
         errorMessages.clear();
     }
 
+    /**
+     * Clear message state for reuse by a pooled Envelope; subclasses clear their own fields too.
+     */
+    void reset() {
+        errorMessages.clear();
+    }
+
     @Override
     public Map<String, Object> toMap() {
-        return null;
+        Map<String,Object> m = new HashMap<>();
+        if(!errorMessages.isEmpty()) m.put("errorMessages", errorMessages);
+        return m;
     }
 
     @Override
+    @SuppressWarnings("unchecked")
     public void fromMap(Map<String, Object> m) {
+        if(m.get("errorMessages")!=null) errorMessages = new ArrayList<>((List<String>)m.get("errorMessages"));
+    }
+
+    /**
+     * @return v as the Content it was mapped from if it is a map whose type
+     * member names a Content class, else v itself
+     */
+    @SuppressWarnings("unchecked")
+    static Object content(Object v) {
+        if(!(v instanceof Map) || !(((Map<?,?>)v).get("type") instanceof String))
+            return v;
+        String type = (String)((Map<?,?>)v).get("type");
+        try {
+            Class<?> c = Class.forName(type, false, Content.class.getClassLoader());
+            if(!Content.class.isAssignableFrom(c))
+                return v;
+            Content content = (Content)c.getConstructor().newInstance();
+            content.fromMap((Map<String,Object>)v);
+            return content;
+        } catch (ReflectiveOperationException | LinkageError e) {
+            return v;
+        }
+    }
+
+    /**
+     * Binary fields of a message; subclasses continue the numbering from 2.
+     */
+    static class Wire<M extends BaseMessage> implements BinaryCodec<M> {
+
+        static final int ERROR_MESSAGE = 1;
+
+        @Override
+        public final void write(M m, BinaryWriter w) {
+            for(String e : m.getErrorMessages())
+                w.writeStringField(ERROR_MESSAGE, e);
+            writeFields(m, w);
+        }
+
+        @Override
+        public final void read(BinaryReader r, M m) {
+            int tag;
+            while((tag = r.readTag()) != 0) {
+                if(BinaryReader.field(tag)==ERROR_MESSAGE)
+                    m.addErrorMessage(r.readString());
+                else if(!readField(r, tag, m))
+                    r.skip(tag);
+            }
+        }
+
+        void writeFields(M m, BinaryWriter w) {}
 
+        /**
+         * @return false when the field is not one of the subclass's
+         */
+        boolean readField(BinaryReader r, int tag, M m) {
+            return false;
+        }
     }
 }
@@ -1,5 +1,9 @@
 package io.onemfive.data;
 
+import io.onemfive.data.util.BinaryCodecs;
+import io.onemfive.data.util.BinaryReader;
+import io.onemfive.data.util.BinaryWriter;
+
 import java.util.Map;
 
 /**
@@ -10,6 +14,10 @@ import java.util.Map;
  */
 public final class CommandMessage extends BaseMessage {
 
+    static {
+        BinaryCodecs.register(new Wire(), CommandMessage.class);
+    }
+
     public enum Command {
         Start,
         Shutdown,
@@ -42,13 +50,46 @@ public final class CommandMessage extends BaseMessage {
         this.targetName = targetName;
     }
 
+    @Override
+    void reset() {
+        super.reset();
+        command = null;
+        targetName = null;
+    }
+
     @Override
     public Map<String, Object> toMap() {
-        return super.toMap();
+        Map<String,Object> m = super.toMap();
+        if(command!=null) m.put("command", command.name());
+        if(targetName!=null) m.put("targetName", targetName);
+        return m;
     }
 
     @Override
     public void fromMap(Map<String, Object> m) {
         super.fromMap(m);
+        if(m.get("command")!=null) command = Command.valueOf((String)m.get("command"));
+        if(m.get("targetName")!=null) targetName = (String)m.get("targetName");
+    }
+
+    private static final class Wire extends BaseMessage.Wire<CommandMessage> {
+
+        private static final int COMMAND = 2;
+        private static final int TARGET_NAME = 3;
+
+        @Override
+        void writeFields(CommandMessage m, BinaryWriter w) {
+            w.writeEnumField(COMMAND, m.command);
+            w.writeStringField(TARGET_NAME, m.targetName);
+        }
+
+        @Override
+        boolean readField(BinaryReader r, int tag, CommandMessage m) {
+            switch(BinaryReader.field(tag)) {
+                case COMMAND: m.command = r.readEnum(Command.values()); return true;
+                case TARGET_NAME: m.targetName = r.readString(); return true;
+                default: return false;
+            }
+        }
     }
 }
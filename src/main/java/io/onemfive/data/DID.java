@@ -1,7 +1,16 @@
 package io.onemfive.data;
 
+import io.onemfive.data.util.BinaryCodec;
+import io.onemfive.data.util.BinaryCodecs;
+import io.onemfive.data.util.BinaryReader;
+import io.onemfive.data.util.BinaryWriter;
+import io.onemfive.data.util.JSONCodec;
+import io.onemfive.data.util.JSONCodecs;
 import io.onemfive.data.util.JSONParser;
+import io.onemfive.data.util.JSONReader;
+import io.onemfive.data.util.JSONWriter;
 
+import java.io.IOException;
 import java.util.*;
 
 /**
@@ -16,6 +25,11 @@ import java.util.*;
  */
 public class DID implements Persistable, PIIClearable, JSONSerializable {
 
+    static {
+        JSONCodecs.register(new Codec(), DID.class);
+        BinaryCodecs.register(new Wire(), DID.class);
+    }
+
     public enum Status {INACTIVE, ACTIVE, SUSPENDED}
 
     public static String VERSION = "https://w3id.org/did/v1";
@@ -39,6 +53,23 @@ public class DID implements Persistable, PIIClearable, JSONSerializable {
     public DID() {
     }
 
+    /**
+     * Back to the state of a new DID, for reuse by a pooled Envelope.
+     */
+    void reset() {
+        username = DEFAULT_ALIAS;
+        passphrase = null;
+        passphrase2 = null;
+        passphraseHash = null;
+        passphraseHashAlgorithm = Hash.Algorithm.PBKDF2WithHmacSHA1;
+        description = "";
+        status = Status.ACTIVE;
+        verified = false;
+        authenticated = false;
+        identities.clear();
+        peers.clear();
+    }
+
     public String getUsername() {
         return username;
     }
@@ -353,4 +384,187 @@ public class DID implements Persistable, PIIClearable, JSONSerializable {
         return JSONParser.toString(toMap());
     }
 
+
+    /**
+     * Same members as toMap()/fromMap().
+     */
+    private static final class Codec implements JSONCodec<DID> {
+
+        @Override
+        public void write(DID d, JSONWriter w) throws IOException {
+            w.startObject();
+            if(d.username!=null) w.writeName("username").writeString(d.username);
+            if(d.passphrase!=null) w.writeName("passphrase").writeString(d.passphrase);
+            if(d.passphraseHash!=null) w.writeName("passphraseHash").writeString(d.passphraseHash.getHash());
+            if(d.passphraseHashAlgorithm!=null) w.writeName("passphraseHashAlgorithm").writeString(d.passphraseHashAlgorithm.getName());
+            if(d.passphrase2!=null) w.writeName("passphrase2").writeString(d.passphrase2);
+            if(d.description!=null) w.writeName("description").writeString(d.description);
+            if(d.status!=null) w.writeName("status").writeString(d.status.name());
+            if(d.verified!=null) w.writeName("verified").writeString(d.verified.toString());
+            if(d.authenticated!=null) w.writeName("authenticated").writeString(d.authenticated.toString());
+            if(d.identities != null && d.identities.size() > 0) {
+                w.writeName("identities").startObject();
+                for(Map.Entry<String,PublicKey> e : d.identities.entrySet()) {
+                    PublicKey p = e.getValue();
+                    w.writeName(e.getKey()).startObject();
+                    w.writeName("alias").writeString(String.valueOf(p.getAlias()));
+                    w.writeName("fingerprint").writeString(p.getFingerprint());
+                    w.writeName("address").writeString(p.getAddress());
+                    w.endObject();
+                }
+                w.endObject();
+            }
+            if(d.peers != null && d.peers.size() > 0) {
+                w.writeName("peers").startObject();
+                for(Map.Entry<String,NetworkPeer> e : d.peers.entrySet())
+                    w.writeName(e.getKey()).writeValue(e.getValue());
+                w.endObject();
+            }
+            w.endObject();
+        }
+
+        @Override
+        public void read(JSONReader r, DID d) {
+            // the hash needs its algorithm, which may come after it
+            String hash = null;
+            while(r.nextToken()==JSONReader.Token.FIELD_NAME) {
+                String name = r.getText();
+                if(r.nextToken()==JSONReader.Token.VALUE_NULL) continue;
+                switch(name) {
+                    case "username": d.username = r.getValueAsString(); break;
+                    case "passphrase": d.passphrase = r.getValueAsString(); break;
+                    case "passphraseHashAlgorithm": d.passphraseHashAlgorithm = Hash.Algorithm.value(r.getValueAsString()); break;
+                    case "passphraseHash": hash = r.getValueAsString(); break;
+                    case "passphrase2": d.passphrase2 = r.getValueAsString(); break;
+                    case "description": d.description = r.getValueAsString(); break;
+                    case "status": d.status = Status.valueOf(r.getValueAsString()); break;
+                    case "verified": d.verified = r.getValueAsBoolean(); break;
+                    case "authenticated": d.authenticated = r.getValueAsBoolean(); break;
+                    case "identities": {
+                        d.identities = new HashMap<>();
+                        while(r.nextToken()==JSONReader.Token.FIELD_NAME) {
+                            String alias = r.getText();
+                            PublicKey key = new PublicKey();
+                            if(r.readObject(key)!=null)
+                                d.identities.put(alias, key);
+                        }
+                        break;
+                    }
+                    case "peers": {
+                        d.peers = new HashMap<>();
+                        while(r.nextToken()==JSONReader.Token.FIELD_NAME) {
+                            String network = r.getText();
+                            NetworkPeer p = new NetworkPeer();
+                            if(r.readObject(p)!=null)
+                                d.peers.put(network, p);
+                        }
+                        break;
+                    }
+                    default: r.skipChildren();
+                }
+            }
+            if(hash!=null) d.passphraseHash = new Hash(hash, d.passphraseHashAlgorithm);
+        }
+    }
+
+    private static final class Wire implements BinaryCodec<DID> {
+
+        private static final int USERNAME = 1;
+        private static final int PASSPHRASE = 2;
+        private static final int PASSPHRASE2 = 3;
+        private static final int PASSPHRASE_HASH = 4;
+        private static final int PASSPHRASE_HASH_ALGORITHM = 5;
+        private static final int DESCRIPTION = 6;
+        private static final int STATUS = 7;
+        private static final int VERIFIED = 8;
+        private static final int AUTHENTICATED = 9;
+        private static final int IDENTITY = 10;
+        private static final int PEER = 11;
+
+        // fields of an IDENTITY or PEER entry
+        private static final int ENTRY_KEY = 1;
+        private static final int ENTRY_VALUE = 2;
+
+        @Override
+        public void write(DID d, BinaryWriter w) {
+            w.writeStringField(USERNAME, d.username);
+            w.writeStringField(PASSPHRASE, d.passphrase);
+            w.writeStringField(PASSPHRASE2, d.passphrase2);
+            if(d.passphraseHash!=null) w.writeStringField(PASSPHRASE_HASH, d.passphraseHash.getHash());
+            w.writeEnumField(PASSPHRASE_HASH_ALGORITHM, d.passphraseHashAlgorithm);
+            w.writeStringField(DESCRIPTION, d.description);
+            w.writeEnumField(STATUS, d.status);
+            w.writeBooleanField(VERIFIED, d.verified);
+            w.writeBooleanField(AUTHENTICATED, d.authenticated);
+            if(d.identities!=null) {
+                for(Map.Entry<String,PublicKey> e : d.identities.entrySet())
+                    writeEntry(w, IDENTITY, e.getKey(), e.getValue());
+            }
+            if(d.peers!=null) {
+                for(Map.Entry<String,NetworkPeer> e : d.peers.entrySet())
+                    writeEntry(w, PEER, e.getKey(), e.getValue());
+            }
+        }
+
+        private static void writeEntry(BinaryWriter w, int field, String key, Object value) {
+            int mark = w.startMessage(field);
+            w.writeStringField(ENTRY_KEY, key);
+            w.writeMessageField(ENTRY_VALUE, value);
+            w.endMessage(mark);
+        }
+
+        @Override
+        public void read(BinaryReader r, DID d) {
+            String hash = null;
+            boolean identities = false, peers = false;
+            int tag;
+            while((tag = r.readTag()) != 0) {
+                switch(BinaryReader.field(tag)) {
+                    case USERNAME: d.username = r.readString(); break;
+                    case PASSPHRASE: d.passphrase = r.readString(); break;
+                    case PASSPHRASE2: d.passphrase2 = r.readString(); break;
+                    case PASSPHRASE_HASH: hash = r.readString(); break;
+                    case PASSPHRASE_HASH_ALGORITHM: d.passphraseHashAlgorithm = r.readEnum(Hash.Algorithm.values()); break;
+                    case DESCRIPTION: d.description = r.readString(); break;
+                    case STATUS: d.status = r.readEnum(Status.values()); break;
+                    case VERIFIED: d.verified = r.readBoolean(); break;
+                    case AUTHENTICATED: d.authenticated = r.readBoolean(); break;
+                    case IDENTITY: {
+                        // replace the defaults rather than merge into them
+                        if(!identities) {
+                            d.identities = new HashMap<>();
+                            identities = true;
+                        }
+                        readEntry(r, d.identities, new PublicKey());
+                        break;
+                    }
+                    case PEER: {
+                        if(!peers) {
+                            d.peers = new HashMap<>();
+                            peers = true;
+                        }
+                        readEntry(r, d.peers, new NetworkPeer());
+                        break;
+                    }
+                    default: r.skip(tag);
+                }
+            }
+            if(hash!=null) d.passphraseHash = new Hash(hash, d.passphraseHashAlgorithm);
+        }
+
+        private static <V> void readEntry(BinaryReader r, Map<String,V> m, V value) {
+            int limit = r.enter();
+            String key = null;
+            int tag;
+            while((tag = r.readTag()) != 0) {
+                switch(BinaryReader.field(tag)) {
+                    case ENTRY_KEY: key = r.readString(); break;
+                    case ENTRY_VALUE: r.readMessage(value); break;
+                    default: r.skip(tag);
+                }
+            }
+            r.exit(limit);
+            m.put(key, value);
+        }
+    }
 }
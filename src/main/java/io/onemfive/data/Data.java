@@ -6,6 +6,9 @@ import io.onemfive.data.util.DataHelper;
 import io.onemfive.data.util.HashUtil;
 
 import java.io.*;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.GatheringByteChannel;
 import java.security.NoSuchAlgorithmException;
 import java.util.Arrays;
 
@@ -91,6 +94,69 @@ public abstract class Data {
         return DataHelper.read(in, target);
     }
 
+    /**
+     * @return the bytes writeBytes would write, without copying; subclasses
+     * with another encoding override this along with writeBytes
+     */
+    public ByteBuffer toByteBuffer() throws DataFormatException {
+        if(data==null) throw new DataFormatException("No data to write");
+        return ByteBuffer.wrap(data).asReadOnlyBuffer();
+    }
+
+    /**
+     * Put this into the buffer at its position.
+     *
+     * @throws java.nio.BufferOverflowException if the buffer has no room left for it
+     */
+    public void writeTo(ByteBuffer out) throws DataFormatException {
+        out.put(toByteBuffer());
+    }
+
+    /**
+     * Read length() bytes from the buffer at its position, as readBytes does from a stream.
+     */
+    public void readFrom(ByteBuffer in) throws DataFormatException {
+        byte[] b = new byte[length()];
+        try {
+            in.get(b);
+        } catch (BufferUnderflowException e) {
+            throw new DataFormatException("Not enough data to read", e);
+        }
+        data = b;
+    }
+
+    /**
+     * Write this to the channel, blocking until all of it is written.
+     *
+     * @return bytes written
+     */
+    public long writeTo(GatheringByteChannel out) throws DataFormatException, IOException {
+        return writeTo(out, this);
+    }
+
+    /**
+     * Write all items to the channel in as few gathering writes as it
+     * accepts, without first copying them into one array.
+     *
+     * @return bytes written
+     */
+    public static long writeTo(GatheringByteChannel out, Data... items) throws DataFormatException, IOException {
+        ByteBuffer[] buffers = new ByteBuffer[items.length];
+        long remaining = 0;
+        for(int i = 0; i < items.length; i++) {
+            buffers[i] = items[i].toByteBuffer();
+            remaining += buffers[i].remaining();
+        }
+        long total = remaining;
+        int first = 0;
+        while(remaining > 0) {
+            remaining -= out.write(buffers, first, buffers.length - first);
+            while(first < buffers.length && !buffers[first].hasRemaining())
+                first++;
+        }
+        return total;
+    }
+
     public int hashCode() {
         if (data == null) {
             return 0;
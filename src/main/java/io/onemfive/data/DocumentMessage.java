@@ -1,7 +1,11 @@
 package io.onemfive.data;
 
+import io.onemfive.data.util.BinaryCodecs;
+import io.onemfive.data.util.BinaryReader;
+import io.onemfive.data.util.BinaryWriter;
+import io.onemfive.data.util.DLCKey;
+
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -12,20 +16,91 @@ import java.util.Map;
  */
 public final class DocumentMessage extends BaseMessage {
 
+    static {
+        BinaryCodecs.register(new Wire(), DocumentMessage.class);
+    }
+
     public List<Map<String,Object>> data;
 
     public DocumentMessage() {
         data = new ArrayList<>();
-        data.add(new HashMap<>());
+        data.add(new DocumentSlots());
+    }
+
+    /**
+     * @return the value under key in the first document
+     */
+    public <T> T get(DLCKey<T> key) {
+        Map<String,Object> d = data.get(0);
+        if(d instanceof DocumentSlots) return ((DocumentSlots)d).get(key);
+        return key.cast(d.get(key.getName()));
+    }
+
+    /**
+     * Set the value under key in the first document.
+     * @return the previous value
+     */
+    public <T> T put(DLCKey<T> key, T value) {
+        Map<String,Object> d = data.get(0);
+        if(d instanceof DocumentSlots) return ((DocumentSlots)d).put(key, value);
+        return key.cast(d.put(key.getName(), value));
+    }
+
+    /**
+     * Back to one empty document, reusing the list and first map.
+     */
+    @Override
+    void reset() {
+        super.reset();
+        if(data == null || data.isEmpty()) {
+            data = new ArrayList<>();
+            data.add(new DocumentSlots());
+        } else {
+            data.subList(1, data.size()).clear();
+            data.get(0).clear();
+        }
     }
 
     @Override
     public Map<String, Object> toMap() {
-        return super.toMap();
+        Map<String,Object> m = super.toMap();
+        if(data!=null) m.put("data", data);
+        return m;
     }
 
     @Override
+    @SuppressWarnings("unchecked")
     public void fromMap(Map<String, Object> m) {
         super.fromMap(m);
+        if(m.get("data")!=null) {
+            data = new ArrayList<>();
+            for(Map<String,Object> d : (List<Map<String,Object>>)m.get("data")) {
+                DocumentSlots slots = new DocumentSlots();
+                for(Map.Entry<String,Object> e : d.entrySet())
+                    slots.put(e.getKey(), content(e.getValue()));
+                data.add(slots);
+            }
+        }
+    }
+
+    private static final class Wire extends BaseMessage.Wire<DocumentMessage> {
+
+        private static final int DATA = 2;
+
+        @Override
+        void writeFields(DocumentMessage m, BinaryWriter w) {
+            w.writeValueField(DATA, m.data);
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        boolean readField(BinaryReader r, int tag, DocumentMessage m) {
+            if(BinaryReader.field(tag)!=DATA)
+                return false;
+            m.data = (List<Map<String,Object>>)r.readValueField();
+            if(m.data != null)
+                m.data.replaceAll(DocumentSlots::new);
+            return true;
+        }
     }
 }
@@ -0,0 +1,295 @@
+package io.onemfive.data;
+
+import io.onemfive.data.util.DLCKey;
+
+import java.io.IOException;
+import java.io.InvalidObjectException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.*;
+
+/**
+ * A document of a {@link DocumentMessage}.
+ *
+ * Values under a registered {@link DLCKey} live in an array at the key's
+ * slot, so get(DLCKey) and put(DLCKey, T) are an index and no hashing.
+ * Any other name goes to a HashMap created on first use. The Map view
+ * reads and writes the same values by name, with slotted entries first
+ * in slot order. Null values are allowed. Not thread-safe.
+ *
+ * Serializes as name/value pairs, as slot indexes depend on the order keys
+ * were registered in the writing JVM; names are re-resolved when read.
+ *
+ * @author objectorange
+ */
+public final class DocumentSlots extends AbstractMap<String,Object> implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private static final Object[] EMPTY = {};
+    // stands in for a null value so that a null slot means absent
+    private static final Object NULL = new Object();
+
+    private transient Object[] slots = EMPTY;
+    private transient int slotted;
+    // names without a key when they were put
+    private transient Map<String,Object> others;
+
+    private transient int modCount;
+
+    public DocumentSlots() {}
+
+    public DocumentSlots(Map<String,?> m) {
+        putAll(m);
+    }
+
+    public <T> T get(DLCKey<T> key) {
+        int i = key.getSlot();
+        Object v = i < slots.length ? slots[i] : null;
+        if(v == null) {
+            if(others == null) return null;
+            v = others.get(key.getName());
+        }
+        return v == NULL ? null : key.cast(v);
+    }
+
+    public <T> T put(DLCKey<T> key, T value) {
+        return key.cast(unmask(putSlot(key, value)));
+    }
+
+    public <T> T remove(DLCKey<T> key) {
+        return key.cast(unmask(removeSlot(key)));
+    }
+
+    public boolean containsKey(DLCKey<?> key) {
+        int i = key.getSlot();
+        return (i < slots.length && slots[i] != null) || (others != null && others.containsKey(key.getName()));
+    }
+
+    @Override
+    public int size() {
+        return slotted + (others == null ? 0 : others.size());
+    }
+
+    @Override
+    public Object get(Object name) {
+        DLCKey<?> key = DLCKey.forName(name);
+        if(key != null) return unmask(getSlot(key));
+        return others == null ? null : others.get(name);
+    }
+
+    @Override
+    public boolean containsKey(Object name) {
+        DLCKey<?> key = DLCKey.forName(name);
+        if(key != null) return containsKey(key);
+        return others != null && others.containsKey(name);
+    }
+
+    @Override
+    public Object put(String name, Object value) {
+        DLCKey<?> key = DLCKey.forName(name);
+        if(key != null) return unmask(putSlot(key, value));
+        if(others == null) others = new HashMap<>();
+        modCount++;
+        return others.put(name, value);
+    }
+
+    @Override
+    public Object remove(Object name) {
+        DLCKey<?> key = DLCKey.forName(name);
+        if(key != null) return unmask(removeSlot(key));
+        if(others == null) return null;
+        modCount++;
+        return others.remove(name);
+    }
+
+    @Override
+    public void clear() {
+        Arrays.fill(slots, null);
+        slotted = 0;
+        if(others != null) others.clear();
+        modCount++;
+    }
+
+    @Override
+    public Set<Entry<String,Object>> entrySet() {
+        return new AbstractSet<Entry<String,Object>>() {
+            @Override
+            public Iterator<Entry<String,Object>> iterator() {
+                return new EntryIterator();
+            }
+
+            @Override
+            public int size() {
+                return DocumentSlots.this.size();
+            }
+
+            @Override
+            public void clear() {
+                DocumentSlots.this.clear();
+            }
+        };
+    }
+
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        out.defaultWriteObject();
+        out.writeInt(size());
+        for(Entry<String,Object> e : entrySet()) {
+            out.writeObject(e.getKey());
+            out.writeObject(e.getValue());
+        }
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        slots = EMPTY;
+        int n = in.readInt();
+        if(n < 0) throw new InvalidObjectException("Negative entry count " + n);
+        for(int i = 0; i < n; i++)
+            put((String)in.readObject(), in.readObject());
+    }
+
+    private static Object unmask(Object v) {
+        return v == NULL ? null : v;
+    }
+
+    /**
+     * @return the masked value at key, also if it was put before key was registered
+     */
+    private Object getSlot(DLCKey<?> key) {
+        int i = key.getSlot();
+        Object v = i < slots.length ? slots[i] : null;
+        if(v == null && others != null) {
+            v = others.get(key.getName());
+            if(v == null && others.containsKey(key.getName())) v = NULL;
+        }
+        return v;
+    }
+
+    private Object putSlot(DLCKey<?> key, Object value) {
+        int i = key.getSlot();
+        if(i >= slots.length)
+            slots = Arrays.copyOf(slots, Math.max(DLCKey.slots(), i + 1));
+        Object old = slots[i];
+        if(old == null) {
+            if(others != null && others.containsKey(key.getName())) {
+                // put by name before the key was registered
+                old = others.remove(key.getName());
+                if(old == null) old = NULL;
+            }
+            slotted++;
+            modCount++;
+        }
+        slots[i] = value == null ? NULL : value;
+        return old;
+    }
+
+    private Object removeSlot(DLCKey<?> key) {
+        int i = key.getSlot();
+        Object old = i < slots.length ? slots[i] : null;
+        if(old != null) {
+            slots[i] = null;
+            slotted--;
+            modCount++;
+        } else if(others != null && others.containsKey(key.getName())) {
+            old = others.remove(key.getName());
+            if(old == null) old = NULL;
+            modCount++;
+        }
+        return old;
+    }
+
+    private final class EntryIterator implements Iterator<Entry<String,Object>> {
+
+        private int next = -1;
+        private int last = -1;
+        private Iterator<Entry<String,Object>> rest;
+        private int expectedModCount = modCount;
+
+        private EntryIterator() {
+            advance();
+        }
+
+        private void advance() {
+            next++;
+            while(next < slots.length && slots[next] == null)
+                next++;
+        }
+
+        @Override
+        public boolean hasNext() {
+            if(next < slots.length) return true;
+            if(rest == null) rest = others == null ? Collections.<Entry<String,Object>>emptyIterator() : others.entrySet().iterator();
+            return rest.hasNext();
+        }
+
+        @Override
+        public Entry<String,Object> next() {
+            if(modCount != expectedModCount) throw new ConcurrentModificationException();
+            if(!hasNext()) throw new NoSuchElementException();
+            if(next < slots.length) {
+                last = next;
+                advance();
+                return new SlotEntry(DLCKey.forSlot(last));
+            }
+            last = -1;
+            return rest.next();
+        }
+
+        @Override
+        public void remove() {
+            if(modCount != expectedModCount) throw new ConcurrentModificationException();
+            if(last >= 0) {
+                removeSlot(DLCKey.forSlot(last));
+                last = -1;
+            } else if(rest != null) {
+                rest.remove();
+                modCount++;
+            } else {
+                throw new IllegalStateException();
+            }
+            expectedModCount = modCount;
+        }
+    }
+
+    private final class SlotEntry implements Entry<String,Object> {
+
+        private final DLCKey<?> key;
+
+        private SlotEntry(DLCKey<?> key) {
+            this.key = key;
+        }
+
+        @Override
+        public String getKey() {
+            return key.getName();
+        }
+
+        @Override
+        public Object getValue() {
+            return unmask(getSlot(key));
+        }
+
+        @Override
+        public Object setValue(Object value) {
+            return unmask(putSlot(key, value));
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Entry && key.getName().equals(((Entry<?,?>)o).getKey())
+                    && Objects.equals(getValue(), ((Entry<?,?>)o).getValue());
+        }
+
+        @Override
+        public int hashCode() {
+            return key.getName().hashCode() ^ Objects.hashCode(getValue());
+        }
+
+        @Override
+        public String toString() {
+            return key.getName() + "=" + getValue();
+        }
+    }
+}
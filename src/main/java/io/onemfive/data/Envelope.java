@@ -2,11 +2,27 @@ package io.onemfive.data;
 
 import io.onemfive.data.route.DynamicRoutingSlip;
 import io.onemfive.data.route.Route;
+import io.onemfive.data.util.BinaryCodec;
+import io.onemfive.data.util.BinaryCodecs;
+import io.onemfive.data.util.BinaryReader;
+import io.onemfive.data.util.BinaryWriter;
+import io.onemfive.data.util.CBOR;
+import io.onemfive.data.util.IdGenerator;
+import io.onemfive.data.util.JSONCodec;
+import io.onemfive.data.util.JSONCodecs;
+import io.onemfive.data.util.JSONParser;
+import io.onemfive.data.util.JSONReader;
+import io.onemfive.data.util.JSONWriter;
+import io.onemfive.data.util.MessagePack;
 import io.onemfive.data.util.Multipart;
-import io.onemfive.data.util.RandomUtil;
 
+import java.io.IOException;
+import java.io.OutputStream;
 import java.lang.reflect.InvocationTargetException;
+import java.net.MalformedURLException;
 import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.util.*;
 import java.util.logging.Logger;
 
@@ -19,12 +35,19 @@ public final class Envelope implements Persistable, JSONSerializable {
 
     private static final Logger LOG = Logger.getLogger(Envelope.class.getName());
 
+    static {
+        JSONCodecs.register(new Codec(), Envelope.class);
+        BinaryCodecs.register(new Wire(), Envelope.class);
+    }
+
     public static final String HEADER_CONTENT_DISPOSITION = "Content-Disposition";
 
     public static final String HEADER_CONTENT_TRANSFER_ENCODING = "Content-Transfer-Encoding";
 
     public static final String HEADER_CONTENT_TYPE = "Content-Type";
     public static final String HEADER_CONTENT_TYPE_JSON = "application/json";
+    public static final String HEADER_CONTENT_TYPE_CBOR = CBOR.CONTENT_TYPE;
+    public static final String HEADER_CONTENT_TYPE_MSGPACK = MessagePack.CONTENT_TYPE;
 
     public static final String HEADER_USER_AGENT = "User-Agent";
 
@@ -45,9 +68,13 @@ public final class Envelope implements Persistable, JSONSerializable {
     private Action action = null;
     private String commandPath = null;
 
-    private Map<String, Object> headers;
+    private Headers headers;
     private Message message;
     private Sensitivity sensitivity = Sensitivity.HIGH; // Default to I2P
+    // set for envelopes owned by EnvelopePool; a deserialized copy is unpooled
+    private transient EnvelopePool.Slot slot;
+    // message and DID may be referenced by copies from envelopeFactory
+    private boolean shared;
 
     public enum Sensitivity { // with default sensors chosen
         NONE, // HTTP - MANCON 6
@@ -60,11 +87,11 @@ public final class Envelope implements Persistable, JSONSerializable {
     }
 
     public static Envelope commandFactory() {
-        return new Envelope(RandomUtil.nextRandomLong(), new CommandMessage());
+        return new Envelope(IdGenerator.nextId(), new CommandMessage());
     }
 
     public static Envelope documentFactory() {
-        return new Envelope(RandomUtil.nextRandomLong(), new DocumentMessage());
+        return new Envelope(IdGenerator.nextId(), new DocumentMessage());
     }
 
     public static Envelope documentFactory(Long id) {
@@ -72,19 +99,44 @@ public final class Envelope implements Persistable, JSONSerializable {
     }
 
     public static Envelope headersOnlyFactory() {
-        return new Envelope(RandomUtil.nextRandomLong(), null);
+        return new Envelope(IdGenerator.nextId(), null);
     }
 
     public static Envelope eventFactory(EventMessage.Type type) {
-        return new Envelope(RandomUtil.nextRandomLong(), new EventMessage(type.name()));
+        return new Envelope(IdGenerator.nextId(), new EventMessage(type.name()));
     }
 
     public static Envelope textFactory() {
-        return new Envelope(RandomUtil.nextRandomLong(), new TextMessage());
+        return new Envelope(IdGenerator.nextId(), new TextMessage());
+    }
+
+    /**
+     * Take an envelope from the pool, reset as a factory would create it. Hand it
+     * back with release() once nothing refers to it any more; see {@link EnvelopePool}.
+     */
+    public static Envelope acquire(MessageType type) {
+        return EnvelopePool.acquire(type);
+    }
+
+    public static Envelope acquireEvent(EventMessage.Type type) {
+        Envelope e = EnvelopePool.acquire(MessageType.EVENT);
+        ((EventMessage)e.message).setType(type.name());
+        return e;
     }
 
+    /**
+     * Copy for fan-out in O(1). The copy shares the message, DID and route with
+     * the original but gets copy-on-write headers and its own routing slip over
+     * the same remaining routes, so headers set or routes taken on one envelope
+     * do not show on the other. Neither envelope clears the shared message and
+     * DID in place on reset, and a pooled original is not recycled by release().
+     */
     public static Envelope envelopeFactory(Envelope envelope){
-        Envelope e = new Envelope(envelope.getId(), envelope.getHeaders(), envelope.getMessage(), envelope.getDynamicRoutingSlip());
+        envelope.share();
+        Envelope e = new Envelope(envelope.getId(),
+                envelope.headers == null ? null : envelope.headers.copy(),
+                envelope.getMessage(),
+                envelope.dynamicRoutingSlip == null ? null : envelope.dynamicRoutingSlip.copy());
         e.setExternal(envelope.getExternal());
         e.setClient(envelope.getClient());
         e.setClientReplyAction(envelope.getClientReplyAction());
@@ -94,31 +146,129 @@ public final class Envelope implements Persistable, JSONSerializable {
         e.setURL(envelope.getURL());
         e.setAction(envelope.getAction());
         e.setCommandPath(envelope.getCommandPath());
-        e.setContentType(envelope.getContentType());
         e.setMultipart(envelope.getMultipart());
-        e.setMessage(envelope.getMessage());
         e.setSensitivity(envelope.getSensitivity());
+        e.shared = true;
         return e;
     }
 
     public Envelope() {}
 
+    Envelope(EnvelopePool.Slot slot) {
+        this.slot = slot;
+    }
+
     public Envelope(Long id, Message message) {
-        this(id, message, new HashMap<>());
+        this(id, message, new Headers());
     }
 
+    /**
+     * @param headers copied into a {@link Headers} unless it is one
+     */
     public Envelope(Long id, Message message, Map<String,Object> headers) {
         this.id = id;
         this.message = message;
-        this.headers = headers;
+        this.headers = Headers.from(headers);
         this.dynamicRoutingSlip = new DynamicRoutingSlip();
     }
 
-    private Envelope(Long id, Map<String,Object> headers, Message message, DynamicRoutingSlip dynamicRoutingSlip) {
-        this(id, message, headers);
+    private Envelope(Long id, Headers headers, Message message, DynamicRoutingSlip dynamicRoutingSlip) {
+        this.id = id;
+        this.message = message;
+        this.headers = headers;
         this.dynamicRoutingSlip = dynamicRoutingSlip;
     }
 
+    /**
+     * Return this envelope, taken with acquire(), to the pool.
+     *
+     * @throws IllegalStateException if it was not acquired or was already released
+     */
+    public void release() {
+        EnvelopePool.release(this);
+    }
+
+    /**
+     * Clear headers, routes and message state in place and give the envelope a new id.
+     * A pooled envelope gets back the headers map, routing slip, DID and message it
+     * was created with; otherwise the DID is replaced, as it may be shared. So is
+     * the message if it was handed to a copy by envelopeFactory.
+     */
+    public void reset() {
+        id = IdGenerator.nextId();
+        external = false;
+        route = null;
+        client = 0L;
+        replyToClient = false;
+        clientReplyAction = null;
+        url = null;
+        multipart = null;
+        action = null;
+        commandPath = null;
+        sensitivity = Sensitivity.HIGH;
+        if(slot != null) {
+            headers = slot.headers;
+            dynamicRoutingSlip = slot.slip;
+        }
+        if(slot != null && !slot.shared) {
+            did = slot.did;
+            did.reset();
+            message = slot.message;
+        } else {
+            did = new DID();
+            if(shared) message = newMessage(message);
+        }
+        shared = false;
+        if(headers != null) headers.clear();
+        else headers = new Headers();
+        if(dynamicRoutingSlip != null) dynamicRoutingSlip.clear();
+        else dynamicRoutingSlip = new DynamicRoutingSlip();
+        if(message instanceof BaseMessage) ((BaseMessage)message).reset();
+    }
+
+    EnvelopePool.Slot slot() {
+        return slot;
+    }
+
+    private void share() {
+        shared = true;
+        if(slot != null) slot.shared = true;
+    }
+
+    /**
+     * @return an empty message of the same kind as m, to replace one that is shared
+     */
+    private static Message newMessage(Message m) {
+        if(m instanceof DocumentMessage) return new DocumentMessage();
+        if(m instanceof TextMessage) return new TextMessage();
+        if(m instanceof EventMessage) return new EventMessage(null);
+        if(m instanceof CommandMessage) return new CommandMessage();
+        return m == null ? null : new BaseMessage();
+    }
+
+    /**
+     * @return the type the message is carried as, null for classes other than the built in ones
+     */
+    private static MessageType messageType(Message m) {
+        Class<?> c = m.getClass();
+        if(c == DocumentMessage.class) return MessageType.DOCUMENT;
+        if(c == TextMessage.class) return MessageType.TEXT;
+        if(c == EventMessage.class) return MessageType.EVENT;
+        if(c == CommandMessage.class) return MessageType.COMMAND;
+        if(c == BaseMessage.class) return MessageType.NONE;
+        return null;
+    }
+
+    private static Message newMessage(MessageType type) {
+        switch(type) {
+            case DOCUMENT: return new DocumentMessage();
+            case TEXT: return new TextMessage();
+            case EVENT: return new EventMessage(null);
+            case COMMAND: return new CommandMessage();
+            default: return new BaseMessage();
+        }
+    }
+
     public Long getId() {
         return id;
     }
@@ -132,6 +282,7 @@ public final class Envelope implements Persistable, JSONSerializable {
     }
 
     public void setHeader(String name, Object value) {
+        if(headers==null) headers = new Headers();
         headers.put(name, value);
     }
 
@@ -151,8 +302,11 @@ public final class Envelope implements Persistable, JSONSerializable {
         return headers;
     }
 
+    /**
+     * @param headers copied into a {@link Headers} unless it is one
+     */
     public void setHeaders(Map<String, Object> headers) {
-        this.headers = headers;
+        this.headers = Headers.from(headers);
     }
 
     private void setMessage(Message message) {
@@ -240,11 +394,12 @@ public final class Envelope implements Persistable, JSONSerializable {
     }
 
     public String getContentType() {
-        return (String)headers.get(HEADER_CONTENT_TYPE);
+        return headers==null ? null : (String)headers.get(Headers.Key.CONTENT_TYPE);
     }
 
     public void setContentType(String contentType) {
-        headers.put(HEADER_CONTENT_TYPE, contentType);
+        if(headers==null) headers = new Headers();
+        headers.put(Headers.Key.CONTENT_TYPE, contentType);
     }
 
     public Sensitivity getSensitivity() {
@@ -255,6 +410,57 @@ public final class Envelope implements Persistable, JSONSerializable {
         this.sensitivity = sensitivity;
     }
 
+    /**
+     * @return this envelope as one binary frame; see {@link BinaryCodecs}
+     */
+    public byte[] toBinary() {
+        return BinaryCodecs.encode(this);
+    }
+
+    public void writeBinary(OutputStream out) throws IOException {
+        BinaryCodecs.encode(this, out);
+    }
+
+    public static Envelope fromBinary(byte[] frame) {
+        return BinaryCodecs.decode(frame, new Envelope());
+    }
+
+    /**
+     * Read one frame, leaving the buffer positioned after it.
+     */
+    public static Envelope fromBinary(ByteBuffer frame) {
+        return BinaryCodecs.decode(frame, new Envelope());
+    }
+
+    /**
+     * @return this envelope, message included, in the format its Content-Type
+     * header names: CBOR, MessagePack or, when absent or anything else, JSON.
+     * CBOR and MessagePack carry Content bodies as raw bytes.
+     */
+    public byte[] toBytes() {
+        String contentType = getContentType();
+        if(isType(contentType, HEADER_CONTENT_TYPE_CBOR)) return CBOR.encode(toMap());
+        if(isType(contentType, HEADER_CONTENT_TYPE_MSGPACK)) return MessagePack.encode(toMap());
+        return JSONParser.toString(this).getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @param contentType the Content-Type the bytes were sent with, as for toBytes()
+     */
+    @SuppressWarnings("unchecked")
+    public static Envelope fromBytes(byte[] data, String contentType) {
+        Envelope e = new Envelope();
+        if(isType(contentType, HEADER_CONTENT_TYPE_CBOR)) e.fromMap((Map<String,Object>)CBOR.decode(data));
+        else if(isType(contentType, HEADER_CONTENT_TYPE_MSGPACK)) e.fromMap((Map<String,Object>)MessagePack.decode(data));
+        else JSONParser.parse(data, e);
+        return e;
+    }
+
+    private static boolean isType(String contentType, String type) {
+        return contentType != null && contentType.regionMatches(true, 0, type, 0, type.length())
+                && (contentType.length() == type.length() || contentType.charAt(type.length()) == ';');
+    }
+
     @Override
     public Map<String, Object> toMap() {
         Map<String,Object> m = new HashMap<>();
@@ -271,27 +477,30 @@ public final class Envelope implements Persistable, JSONSerializable {
         if(action!=null) m.put("action", action.name());
         if(commandPath!=null) m.put("commandPath", commandPath);
         if(headers!=null) m.put("headers", headers);
-        if(message!=null) m.put("message", message.toMap());
+        if(message!=null && messageType(message)!=null) {
+            m.put("messageType", messageType(message).name());
+            m.put("message", message.toMap());
+        }
         if(sensitivity!=null) m.put("sensitivity", sensitivity.name());
         return m;
     }
 
     @Override
     public void fromMap(Map<String, Object> m) {
-        if(m.get("id")!=null) id = Long.parseLong((String)m.get("id"));
-        if(m.get("external")!=null) external = Boolean.parseBoolean((String)m.get("external"));
-        if(m.get(DynamicRoutingSlip.class.getSimpleName())!=null) {
+        if(m.get("id")!=null) id = Long.parseLong(String.valueOf(m.get("id")));
+        if(m.get("external")!=null) external = Boolean.parseBoolean(String.valueOf(m.get("external")));
+        if(m.get("dynamicRoutingSlip")!=null) {
             dynamicRoutingSlip = new DynamicRoutingSlip();
-            dynamicRoutingSlip.fromMap((Map<String,Object>)m.get(DynamicRoutingSlip.class.getSimpleName()));
+            dynamicRoutingSlip.fromMap((Map<String,Object>)m.get("dynamicRoutingSlip"));
         }
         if(m.get("route")!=null) {
-            String type = (String)m.get("type");
+            Map<String,Object> rm = (Map<String,Object>)m.get("route");
+            String type = (String)rm.get("type");
             if(type==null) {
                 LOG.warning("type must not be null. unable to reconstruct route.");
-            }
-            try {
+            } else try {
                 route = (Route)Class.forName(type).getConstructor().newInstance();
-                route.fromMap((Map<String,Object>)m.get("route"));
+                route.fromMap(rm);
             } catch (InstantiationException e) {
                 LOG.warning(e.getLocalizedMessage());
             } catch (IllegalAccessException e) {
@@ -305,19 +514,215 @@ public final class Envelope implements Persistable, JSONSerializable {
             }
         }
 
-        private DID did = new DID();
-        private Long client = 0L;
-        private Boolean replyToClient = false;
-        private String clientReplyAction = null;
-        private URL url = null;
-        private Multipart multipart = null;
+        if(m.get("did")!=null) {
+            did = new DID();
+            did.fromMap((Map<String,Object>)m.get("did"));
+        }
+        if(m.get("client")!=null) client = Long.parseLong(String.valueOf(m.get("client")));
+        if(m.get("replyToClient")!=null) replyToClient = Boolean.parseBoolean(String.valueOf(m.get("replyToClient")));
+        if(m.get("clientReplyAction")!=null) clientReplyAction = (String)m.get("clientReplyAction");
+        if(m.get("url")!=null) {
+            try {
+                url = new URL((String)m.get("url"));
+            } catch (MalformedURLException e) {
+                LOG.warning(e.getLocalizedMessage());
+            }
+        }
+        if(m.get("multipart")!=null) {
+            multipart = new Multipart("UTF-8");
+            multipart.fromMap((Map<String,Object>)m.get("multipart"));
+        }
+        if(m.get("action")!=null) action = Action.valueOf((String)m.get("action"));
+        if(m.get("commandPath")!=null) commandPath = (String)m.get("commandPath");
+        if(m.get("headers")!=null) headers = Headers.from((Map<String,Object>)m.get("headers"));
+        if(m.get("sensitivity")!=null) sensitivity = Sensitivity.valueOf((String)m.get("sensitivity"));
+        if(m.get("messageType")!=null && m.get("message")!=null) {
+            message = newMessage(MessageType.valueOf((String)m.get("messageType")));
+            message.fromMap((Map<String,Object>)m.get("message"));
+        }
+    }
+
+    /**
+     * Same members as toMap()/fromMap(). Nested routes, DIDs and contents go
+     * through their own codecs where they have one.
+     */
+    private static final class Codec implements JSONCodec<Envelope> {
+
+        @Override
+        public void write(Envelope e, JSONWriter w) throws IOException {
+            w.startObject();
+            if(e.id!=null) w.writeName("id").writeNumber(e.id);
+            if(e.external!=null) w.writeName("external").writeBoolean(e.external);
+            if(e.dynamicRoutingSlip!=null) w.writeName("dynamicRoutingSlip").writeValue(e.dynamicRoutingSlip);
+            if(e.route!=null) w.writeName("route").writeValue(e.route);
+            if(e.did!=null) w.writeName("did").writeValue(e.did);
+            if(e.client!=null) w.writeName("client").writeNumber(e.client);
+            if(e.replyToClient!=null) w.writeName("replyToClient").writeBoolean(e.replyToClient);
+            if(e.clientReplyAction!=null) w.writeName("clientReplyAction").writeString(e.clientReplyAction);
+            if(e.url!=null) w.writeName("url").writeString(e.url.toString());
+            if(e.multipart!=null) w.writeName("multipart").writeValue(e.multipart);
+            if(e.action!=null) w.writeName("action").writeString(e.action.name());
+            if(e.commandPath!=null) w.writeName("commandPath").writeString(e.commandPath);
+            if(e.headers!=null) w.writeName("headers").writeValue(e.headers);
+            if(e.message!=null && messageType(e.message)!=null) {
+                w.writeName("messageType").writeString(messageType(e.message).name());
+                w.writeName("message").writeValue(e.message);
+            }
+            if(e.sensitivity!=null) w.writeName("sensitivity").writeString(e.sensitivity.name());
+            w.endObject();
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public void read(JSONReader r, Envelope e) {
+            MessageType messageType = null;
+            while(r.nextToken()==JSONReader.Token.FIELD_NAME) {
+                String name = r.getText();
+                if(r.nextToken()==JSONReader.Token.VALUE_NULL) continue;
+                switch(name) {
+                    case "id": e.id = r.getValueAsLong(); break;
+                    case "external": e.external = r.getValueAsBoolean(); break;
+                    case "dynamicRoutingSlip": e.dynamicRoutingSlip = r.readObject(new DynamicRoutingSlip()); break;
+                    case "route": {
+                        // the route class is only known from its type member
+                        Map<String,Object> rm = (Map<String,Object>)r.readValue();
+                        String type = (String)rm.get("type");
+                        if(type==null) {
+                            LOG.warning("type must not be null. unable to reconstruct route.");
+                            break;
+                        }
+                        try {
+                            e.route = (Route)Class.forName(type).getConstructor().newInstance();
+                            e.route.fromMap(rm);
+                        } catch (ReflectiveOperationException ex) {
+                            LOG.warning(ex.getLocalizedMessage());
+                        }
+                        break;
+                    }
+                    case "did": e.did = r.readObject(new DID()); break;
+                    case "client": e.client = r.getValueAsLong(); break;
+                    case "replyToClient": e.replyToClient = r.getValueAsBoolean(); break;
+                    case "clientReplyAction": e.clientReplyAction = r.getValueAsString(); break;
+                    case "url": {
+                        try {
+                            e.url = new URL(r.getValueAsString());
+                        } catch (MalformedURLException ex) {
+                            LOG.warning(ex.getLocalizedMessage());
+                        }
+                        break;
+                    }
+                    case "multipart": e.multipart = r.readObject(new Multipart("UTF-8")); break;
+                    case "action": e.action = Action.valueOf(r.getValueAsString()); break;
+                    case "commandPath": e.commandPath = r.getValueAsString(); break;
+                    case "headers": e.headers = Headers.from((Map<String,Object>)r.readValue()); break;
+                    case "sensitivity": e.sensitivity = Sensitivity.valueOf(r.getValueAsString()); break;
+                    case "messageType": messageType = MessageType.valueOf(r.getValueAsString()); break;
+                    case "message": {
+                        // written after messageType
+                        Map<String,Object> mm = (Map<String,Object>)r.readValue();
+                        if(messageType == null) break;
+                        e.message = newMessage(messageType);
+                        e.message.fromMap(mm);
+                        break;
+                    }
+                    default: r.skipChildren();
+                }
+            }
+        }
+    }
 
-        private Action action = null;
-        private String commandPath = null;
+    /**
+     * Binary fields. The ones relays look at come first so a view can stop
+     * scanning early.
+     */
+    static final class Wire implements BinaryCodec<Envelope> {
+
+        static final int ID = 1;
+        static final int SENSITIVITY = 2;
+        static final int ROUTING_SLIP = 3;
+        static final int ROUTE = 4;
+        static final int EXTERNAL = 5;
+        static final int DID = 6;
+        static final int CLIENT = 7;
+        static final int REPLY_TO_CLIENT = 8;
+        static final int CLIENT_REPLY_ACTION = 9;
+        static final int URL = 10;
+        static final int MULTIPART = 11;
+        static final int ACTION = 12;
+        static final int COMMAND_PATH = 13;
+        static final int HEADERS = 14;
+        // MessageType of the MESSAGE that follows
+        static final int MESSAGE_TYPE = 15;
+        static final int MESSAGE = 16;
+
+        @Override
+        public void write(Envelope e, BinaryWriter w) {
+            w.writeFixed64Field(ID, e.id);
+            w.writeEnumField(SENSITIVITY, e.sensitivity);
+            w.writeMessageField(ROUTING_SLIP, e.dynamicRoutingSlip);
+            w.writeTypedField(ROUTE, e.route);
+            w.writeBooleanField(EXTERNAL, e.external);
+            w.writeMessageField(DID, e.did);
+            w.writeVarintField(CLIENT, e.client);
+            w.writeBooleanField(REPLY_TO_CLIENT, e.replyToClient);
+            w.writeStringField(CLIENT_REPLY_ACTION, e.clientReplyAction);
+            if(e.url!=null) w.writeStringField(URL, e.url.toString());
+            if(e.multipart!=null) w.writeValueField(MULTIPART, e.multipart.toMap());
+            w.writeEnumField(ACTION, e.action);
+            w.writeStringField(COMMAND_PATH, e.commandPath);
+            w.writeValueField(HEADERS, e.headers);
+            if(e.message!=null) {
+                MessageType type = messageType(e.message);
+                if(type == null)
+                    throw new IllegalArgumentException("No binary message type for " + e.message.getClass().getName());
+                w.writeEnumField(MESSAGE_TYPE, type);
+                w.writeMessageField(MESSAGE, e.message);
+            }
+        }
 
-        private Map<String, Object> headers;
-        private Message message;
-        private Sensitivity sensitivity = Sensitivity.HIGH; // Default to I2P
-        private RequestReport requestReport = new RequestReport();
+        @Override
+        @SuppressWarnings("unchecked")
+        public void read(BinaryReader r, Envelope e) {
+            MessageType type = MessageType.NONE;
+            int tag;
+            while((tag = r.readTag()) != 0) {
+                switch(BinaryReader.field(tag)) {
+                    case ID: e.id = r.readFixed64(); break;
+                    case SENSITIVITY: e.sensitivity = r.readEnum(Sensitivity.values()); break;
+                    case ROUTING_SLIP: e.dynamicRoutingSlip = r.readMessage(new DynamicRoutingSlip()); break;
+                    case ROUTE: e.route = r.readTyped(Route.class); break;
+                    case EXTERNAL: e.external = r.readBoolean(); break;
+                    case DID: e.did = r.readMessage(new DID()); break;
+                    case CLIENT: e.client = r.readVarint(); break;
+                    case REPLY_TO_CLIENT: e.replyToClient = r.readBoolean(); break;
+                    case CLIENT_REPLY_ACTION: e.clientReplyAction = r.readString(); break;
+                    case URL: {
+                        String url = r.readString();
+                        try {
+                            e.url = new URL(url);
+                        } catch (MalformedURLException ex) {
+                            LOG.warning(ex.getLocalizedMessage());
+                        }
+                        break;
+                    }
+                    case MULTIPART: {
+                        e.multipart = new Multipart("UTF-8");
+                        e.multipart.fromMap((Map<String,Object>)r.readValueField());
+                        break;
+                    }
+                    case ACTION: e.action = r.readEnum(Action.values()); break;
+                    case COMMAND_PATH: e.commandPath = r.readString(); break;
+                    case HEADERS: e.headers = Headers.from((Map<String,Object>)r.readValueField()); break;
+                    case MESSAGE_TYPE: type = r.readEnum(MessageType.values()); break;
+                    case MESSAGE: {
+                        // a message type from a newer version can not be read
+                        if(type == null) r.skip(tag);
+                        else e.message = r.readMessage(newMessage(type));
+                        break;
+                    }
+                    default: r.skip(tag);
+                }
+            }
+        }
     }
 }
@@ -0,0 +1,199 @@
+package io.onemfive.data;
+
+import io.onemfive.data.route.DynamicRoutingSlip;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Logger;
+
+/**
+ * Pool behind {@link Envelope#acquire(Envelope.MessageType)} and
+ * {@link Envelope#release()}, one queue of idle envelopes per message type.
+ *
+ * A pooled envelope keeps its headers map, routing slip, DID and message
+ * for life and has them cleared in place on release, so a busy factory
+ * allocates nothing once the pool is warm. Envelopes released into a full
+ * pool are left to the garbage collector, as ByteCache does with arrays,
+ * and so are envelopes whose message and DID were handed to copies by
+ * Envelope.envelopeFactory, as clearing them would clear the copies too.
+ *
+ * In debug mode (-Dio.onemfive.data.EnvelopePool.debug=true or
+ * setDebug(true)) every acquire records where it happened, and envelopes
+ * that become unreachable without being released are logged with that
+ * trace and counted as leaks.
+ *
+ * @author objectorange
+ */
+public final class EnvelopePool {
+
+    private static final Logger LOG = Logger.getLogger(EnvelopePool.class.getName());
+
+    private static volatile int capacity = Integer.getInteger(EnvelopePool.class.getName() + ".capacity", 1024);
+    private static volatile boolean debug = Boolean.getBoolean(EnvelopePool.class.getName() + ".debug");
+
+    private static final Queue<Envelope>[] idle = newQueues();
+
+    private static final LongAdder acquired = new LongAdder();
+    private static final LongAdder released = new LongAdder();
+    private static final LongAdder created = new LongAdder();
+    private static final LongAdder discarded = new LongAdder();
+    private static final LongAdder leaked = new LongAdder();
+
+    private static final ReferenceQueue<Envelope> unreleased = new ReferenceQueue<>();
+    // keeps leases reachable until their envelope is released or collected
+    private static final Set<Lease> leases = ConcurrentHashMap.newKeySet();
+
+    private EnvelopePool() {}
+
+    @SuppressWarnings({"rawtypes", "unchecked"})
+    private static Queue<Envelope>[] newQueues() {
+        Queue<Envelope>[] q = new Queue[Envelope.MessageType.values().length];
+        for(int i = 0; i < q.length; i++)
+            q[i] = new LinkedBlockingQueue<>();
+        return q;
+    }
+
+    /**
+     * @param max idle envelopes kept per message type
+     */
+    public static void setCapacity(int max) {
+        capacity = max;
+    }
+
+    public static boolean isDebug() {
+        return debug;
+    }
+
+    public static void setDebug(boolean enabled) {
+        debug = enabled;
+    }
+
+    /**
+     * Drop all idle envelopes (memory pressure).
+     */
+    public static void clear() {
+        for(Queue<Envelope> q : idle)
+            q.clear();
+    }
+
+    /**
+     * @return counters since startup: acquired, released, created, discarded,
+     * leaked (debug mode only), outstanding and idle
+     */
+    public static Map<String,Long> getStats() {
+        if(debug) reapLeaks();
+        Map<String,Long> m = new LinkedHashMap<>();
+        m.put("acquired", acquired.sum());
+        m.put("released", released.sum());
+        m.put("created", created.sum());
+        m.put("discarded", discarded.sum());
+        m.put("leaked", leaked.sum());
+        m.put("outstanding", acquired.sum() - released.sum());
+        long n = 0;
+        for(Queue<Envelope> q : idle)
+            n += q.size();
+        m.put("idle", n);
+        return m;
+    }
+
+    static Envelope acquire(Envelope.MessageType type) {
+        acquired.increment();
+        Envelope e = idle[type.ordinal()].poll();
+        if(e == null) {
+            created.increment();
+            e = new Envelope(new Slot(type));
+            e.reset();
+        }
+        // idle envelopes were reset, with a new id, when released
+        Slot slot = e.slot();
+        slot.leased.set(true);
+        if(debug) {
+            reapLeaks();
+            slot.lease = new Lease(e);
+            leases.add(slot.lease);
+        }
+        return e;
+    }
+
+    static void release(Envelope e) {
+        Slot slot = e.slot();
+        if(slot == null)
+            throw new IllegalStateException("Envelope " + e.getId() + " was not acquired from the pool");
+        if(!slot.leased.compareAndSet(true, false))
+            throw new IllegalStateException("Envelope " + e.getId() + " released twice");
+        if(slot.lease != null) {
+            slot.lease.clear();
+            leases.remove(slot.lease);
+            slot.lease = null;
+        }
+        released.increment();
+        Queue<Envelope> q = idle[slot.type.ordinal()];
+        if(q.size() < capacity && !slot.shared) {
+            e.reset();
+            q.offer(e);
+        } else {
+            discarded.increment();
+        }
+    }
+
+    private static void reapLeaks() {
+        Lease lease;
+        while((lease = (Lease)unreleased.poll()) != null) {
+            if(leases.remove(lease)) {
+                leaked.increment();
+                LOG.warning("Pooled envelope never released; acquired at:\n" + trace(lease.acquiredAt));
+            }
+        }
+    }
+
+    private static String trace(Throwable t) {
+        StringBuilder sb = new StringBuilder();
+        for(StackTraceElement s : t.getStackTrace())
+            sb.append("\tat ").append(s).append('\n');
+        return sb.toString();
+    }
+
+    /**
+     * What a pooled envelope owns for life and restores on reset.
+     */
+    static final class Slot {
+
+        final Envelope.MessageType type;
+        final Headers headers = new Headers();
+        final DynamicRoutingSlip slip = new DynamicRoutingSlip();
+        final DID did = new DID();
+        final BaseMessage message;
+        final AtomicBoolean leased = new AtomicBoolean();
+        // message and DID were handed to a copy, so the slot is not recycled
+        volatile boolean shared;
+        Lease lease;
+
+        private Slot(Envelope.MessageType type) {
+            this.type = type;
+            switch(type) {
+                case DOCUMENT: message = new DocumentMessage(); break;
+                case TEXT: message = new TextMessage(); break;
+                case EVENT: message = new EventMessage(null); break;
+                case COMMAND: message = new CommandMessage(); break;
+                default: message = null;
+            }
+        }
+    }
+
+    private static final class Lease extends WeakReference<Envelope> {
+
+        private final Throwable acquiredAt = new Throwable();
+
+        private Lease(Envelope e) {
+            super(e, unreleased);
+        }
+    }
+}
@@ -0,0 +1,225 @@
+package io.onemfive.data;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded multi-level queue of envelopes, one FIFO level per
+ * {@link Envelope.Sensitivity}, so envelopes bound for a slow network
+ * do not hold up those bound for a fast one.
+ *
+ * Levels are served weighted-fair: over every sum-of-weights polls each
+ * non-empty level gets a turn per unit of its weight (all 1 by default).
+ * To keep a lightly weighted level from starving, a level whose oldest
+ * envelope is past its deadline, or has waited longer than maxWait, is
+ * served first, most overdue first. Deadlines only apply at the head of a level;
+ * an envelope is never reordered within its level.
+ *
+ * Lock-free: levels are ConcurrentLinkedQueues and their bounds and turns
+ * are kept with atomic counters, so any number of threads may offer and
+ * poll at once.
+ *
+ * @author objectorange
+ */
+public final class EnvelopeQueue {
+
+    private static final Envelope.Sensitivity[] LEVELS = Envelope.Sensitivity.values();
+
+    private final int capacity;
+    private final long maxWait;
+    // smooth weighted round robin order of level ordinals
+    private final int[] schedule;
+    private final AtomicLong turn = new AtomicLong();
+
+    private final Queue<Entry>[] levels;
+    private final AtomicInteger[] depths;
+
+    private final LongAdder offered = new LongAdder();
+    private final LongAdder polled = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder promoted = new LongAdder();
+
+    /**
+     * @param capacity envelopes held per level
+     */
+    public EnvelopeQueue(int capacity) {
+        this(capacity, Collections.<Envelope.Sensitivity,Integer>emptyMap(), 1000);
+    }
+
+    /**
+     * @param capacity envelopes held per level
+     * @param weights turns per round by level, 1 for levels not given
+     * @param maxWait ms an envelope may wait at the head of its level before it is served first
+     */
+    @SuppressWarnings({"rawtypes", "unchecked"})
+    public EnvelopeQueue(int capacity, Map<Envelope.Sensitivity,Integer> weights, long maxWait) {
+        if(capacity < 1)
+            throw new IllegalArgumentException("Capacity must be at least 1");
+        this.capacity = capacity;
+        this.maxWait = maxWait;
+        this.schedule = schedule(weights);
+        levels = new Queue[LEVELS.length];
+        depths = new AtomicInteger[LEVELS.length];
+        for(int i = 0; i < LEVELS.length; i++) {
+            levels[i] = new ConcurrentLinkedQueue<>();
+            depths[i] = new AtomicInteger();
+        }
+    }
+
+    private static int[] schedule(Map<Envelope.Sensitivity,Integer> weights) {
+        int[] w = new int[LEVELS.length];
+        int total = 0;
+        for(int i = 0; i < w.length; i++) {
+            Integer weight = weights.get(LEVELS[i]);
+            w[i] = weight == null ? 1 : weight;
+            if(w[i] < 1)
+                throw new IllegalArgumentException("Weight of " + LEVELS[i] + " must be at least 1");
+            total += w[i];
+        }
+        // interleave levels rather than giving each its turns in one run
+        int[] order = new int[total];
+        int[] current = new int[w.length];
+        for(int n = 0; n < total; n++) {
+            int best = 0;
+            for(int i = 0; i < w.length; i++) {
+                current[i] += w[i];
+                if(current[i] > current[best]) best = i;
+            }
+            current[best] -= total;
+            order[n] = best;
+        }
+        return order;
+    }
+
+    /**
+     * @return false if the envelope's level is full
+     */
+    public boolean offer(Envelope e) {
+        return offer(e, Long.MAX_VALUE);
+    }
+
+    /**
+     * @param deadline ms since 1970 by which e should be served
+     * @return false if the envelope's level is full
+     */
+    public boolean offer(Envelope e, long deadline) {
+        int level = level(e);
+        AtomicInteger depth = depths[level];
+        if(depth.incrementAndGet() > capacity) {
+            depth.decrementAndGet();
+            rejected.increment();
+            return false;
+        }
+        long now = System.currentTimeMillis();
+        levels[level].offer(new Entry(e, Math.min(deadline, maxWait > Long.MAX_VALUE - now ? Long.MAX_VALUE : now + maxWait)));
+        offered.increment();
+        return true;
+    }
+
+    /**
+     * @return the next envelope or null if the queue is empty
+     */
+    public Envelope poll() {
+        long now = System.currentTimeMillis();
+        // anti-starvation: most overdue head first
+        int due = -1;
+        long dueAt = now;
+        for(int i = 0; i < levels.length; i++) {
+            Entry head = levels[i].peek();
+            if(head != null && head.due <= dueAt) {
+                due = i;
+                dueAt = head.due;
+            }
+        }
+        if(due >= 0) {
+            Envelope e = take(due);
+            if(e != null) {
+                promoted.increment();
+                return e;
+            }
+        }
+        // turns of empty levels are skipped, not handed on, to keep the weights
+        for(int i = 0; i < schedule.length; i++) {
+            Envelope e = take(schedule[(int)(turn.getAndIncrement() % schedule.length)]);
+            if(e != null) return e;
+        }
+        // other pollers took some of the turns
+        for(int i = 0; i < levels.length; i++) {
+            Envelope e = take(i);
+            if(e != null) return e;
+        }
+        return null;
+    }
+
+    /**
+     * Poll up to max envelopes into c, in the order poll() would return them.
+     * @return number of envelopes added
+     */
+    public int drainTo(Collection<? super Envelope> c, int max) {
+        int n = 0;
+        Envelope e;
+        while(n < max && (e = poll()) != null) {
+            c.add(e);
+            n++;
+        }
+        return n;
+    }
+
+    private Envelope take(int level) {
+        Entry entry = levels[level].poll();
+        if(entry == null) return null;
+        depths[level].decrementAndGet();
+        polled.increment();
+        return entry.envelope;
+    }
+
+    private static int level(Envelope e) {
+        Envelope.Sensitivity s = e.getSensitivity();
+        return s == null ? Envelope.Sensitivity.HIGH.ordinal() : s.ordinal();
+    }
+
+    public int depth(Envelope.Sensitivity level) {
+        return depths[level.ordinal()].get();
+    }
+
+    public int size() {
+        int n = 0;
+        for(AtomicInteger depth : depths)
+            n += depth.get();
+        return n;
+    }
+
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    /**
+     * @return counters since creation: offered, polled, rejected (level full),
+     * promoted (served early to meet a deadline or maxWait), and depth of each level
+     */
+    public Map<String,Long> getStats() {
+        Map<String,Long> m = new LinkedHashMap<>();
+        m.put("offered", offered.sum());
+        m.put("polled", polled.sum());
+        m.put("rejected", rejected.sum());
+        m.put("promoted", promoted.sum());
+        for(Envelope.Sensitivity s : LEVELS)
+            m.put("depth." + s.name(), (long)depth(s));
+        return m;
+    }
+
+    private static final class Entry {
+
+        private final Envelope envelope;
+        // deadline or end of maxWait, whichever is first
+        private final long due;
+
+        private Entry(Envelope envelope, long due) {
+            this.envelope = envelope;
+            this.due = due;
+        }
+    }
+}
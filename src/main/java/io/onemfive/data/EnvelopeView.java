@@ -0,0 +1,190 @@
+package io.onemfive.data;
+
+import io.onemfive.data.route.BaseRoute;
+import io.onemfive.data.route.Route;
+import io.onemfive.data.util.BinaryCodecs;
+import io.onemfive.data.util.BinaryReader;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.util.Arrays;
+
+/**
+ * Read-only view of an Envelope binary frame (see {@link Envelope#toBinary()}).
+ *
+ * Relays mostly look at the id, sensitivity and next route of an envelope
+ * and then pass it on unchanged. The view decodes just those fields straight
+ * out of the buffer when asked and forwards the original bytes, so no
+ * Envelope graph is built and nothing is re-encoded:
+ * <pre>
+ *     EnvelopeView view = new EnvelopeView();
+ *     ...
+ *     while(in.hasRemaining()) {
+ *         view.wrap(in);
+ *         if(view.getSensitivity() == Envelope.Sensitivity.HIGH) ...
+ *         view.writeTo(channel);
+ *     }
+ * </pre>
+ * One view can be rewrapped for every frame read on a connection. The
+ * wrapped bytes must not change while the view is in use.
+ *
+ * @author objectorange
+ */
+public final class EnvelopeView {
+
+    private ByteBuffer in;
+    private BinaryReader reader;
+    private int start;
+    private int body;
+    private int end;
+    // position of the first value of each field, -1 when absent
+    private final int[] offsets = new int[Envelope.Wire.MESSAGE + 1];
+    private boolean scanned;
+
+    public EnvelopeView() {}
+
+    public EnvelopeView(ByteBuffer frame) {
+        wrap(frame);
+    }
+
+    /**
+     * View the frame starting at the buffer's position, which is moved past the frame.
+     */
+    public EnvelopeView wrap(ByteBuffer frame) {
+        in = frame.duplicate();
+        reader = new BinaryReader(in);
+        start = in.position();
+        BinaryCodecs.readHeader(reader);
+        long len = reader.readUvarint();
+        if(len > in.remaining())
+            throw new IllegalStateException("Truncated frame at " + start);
+        body = in.position();
+        end = body + (int)len;
+        frame.position(end);
+        scanned = false;
+        return this;
+    }
+
+    /**
+     * @return size of the whole frame in bytes
+     */
+    public int size() {
+        return end - start;
+    }
+
+    public Long getId() {
+        int p = offset(Envelope.Wire.ID);
+        return p < 0 ? null : at(p).readFixed64();
+    }
+
+    public Envelope.Sensitivity getSensitivity() {
+        int p = offset(Envelope.Wire.SENSITIVITY);
+        return p < 0 ? null : at(p).readEnum(Envelope.Sensitivity.values());
+    }
+
+    public Boolean getExternal() {
+        int p = offset(Envelope.Wire.EXTERNAL);
+        return p < 0 ? null : at(p).readBoolean();
+    }
+
+    public Envelope.MessageType getMessageType() {
+        int p = offset(Envelope.Wire.MESSAGE_TYPE);
+        return p < 0 ? null : at(p).readEnum(Envelope.MessageType.values());
+    }
+
+    public String getCommandPath() {
+        int p = offset(Envelope.Wire.COMMAND_PATH);
+        return p < 0 ? null : at(p).readString();
+    }
+
+    /**
+     * @return the envelope's current route, the only part decoded
+     */
+    public Route getRoute() {
+        int p = offset(Envelope.Wire.ROUTE);
+        return p < 0 ? null : at(p).readTyped(Route.class);
+    }
+
+    /**
+     * @return the route the routing slip would hand out next or null if none remain;
+     * only that route is decoded
+     */
+    public Route peekAtNextRoute() {
+        int p = offset(Envelope.Wire.ROUTING_SLIP);
+        if(p < 0) return null;
+        BinaryReader r = at(p);
+        int limit = r.enter();
+        Route next = null;
+        int tag;
+        while((tag = r.readTag()) != 0) {
+            // remaining routes of a slip, next route first
+            if(BinaryReader.field(tag) == BaseRoute.Wire.ROUTE) {
+                next = r.readTyped(Route.class);
+                break;
+            }
+            r.skip(tag);
+        }
+        r.exit(limit);
+        return next;
+    }
+
+    /**
+     * @return the whole frame, untouched, as a read-only buffer positioned at its first byte
+     */
+    public ByteBuffer frame() {
+        ByteBuffer f = in.duplicate();
+        f.limit(end).position(start);
+        return f.asReadOnlyBuffer();
+    }
+
+    /**
+     * Forward the frame as is. Blocks until all of it is written, so hand
+     * frame() to non-blocking channels instead.
+     *
+     * @return bytes written
+     */
+    public int writeTo(WritableByteChannel out) throws IOException {
+        ByteBuffer f = in.duplicate();
+        f.limit(end).position(start);
+        while(f.hasRemaining())
+            out.write(f);
+        return end - start;
+    }
+
+    /**
+     * @return the full Envelope, for nodes that do need more than the view offers
+     */
+    public Envelope toEnvelope() {
+        return Envelope.fromBinary(frame());
+    }
+
+    private BinaryReader at(int position) {
+        in.limit(end);
+        in.position(position);
+        return reader;
+    }
+
+    private int offset(int field) {
+        if(!scanned) {
+            scan();
+            scanned = true;
+        }
+        return offsets[field];
+    }
+
+    /**
+     * Step over the top level fields once, noting where each starts.
+     */
+    private void scan() {
+        Arrays.fill(offsets, -1);
+        at(body);
+        int tag;
+        while((tag = reader.readTag()) != 0) {
+            int field = BinaryReader.field(tag);
+            if(field < offsets.length && offsets[field] < 0)
+                offsets[field] = in.position();
+            reader.skip(tag);
+        }
+    }
+}
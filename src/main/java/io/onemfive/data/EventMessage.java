@@ -1,7 +1,11 @@
 package io.onemfive.data;
 
+import io.onemfive.data.util.BinaryCodecs;
+import io.onemfive.data.util.BinaryReader;
+import io.onemfive.data.util.BinaryWriter;
+import io.onemfive.data.util.IdGenerator;
+
 import java.util.Map;
-import java.util.Random;
 
 /**
  * Events
@@ -10,6 +14,10 @@ import java.util.Random;
  */
 public final class EventMessage extends BaseMessage {
 
+    static {
+        BinaryCodecs.register(new Wire(), EventMessage.class);
+    }
+
     public enum Type {
         EMAIL,
         ERROR,
@@ -22,7 +30,7 @@ public final class EventMessage extends BaseMessage {
         TEXT
     }
 
-    private Long id = new Random(4763128720251739L).nextLong();
+    private Long id = IdGenerator.nextId();
     private String type;
     private String name;
     private Object message;
@@ -37,6 +45,10 @@ public final class EventMessage extends BaseMessage {
         return type;
     }
 
+    void setType(String type) {
+        this.type = type;
+    }
+
     public String getName() {
         return name;
     }
@@ -53,13 +65,58 @@ public final class EventMessage extends BaseMessage {
         return message;
     }
 
+    @Override
+    void reset() {
+        super.reset();
+        id = IdGenerator.nextId();
+        type = null;
+        name = null;
+        message = null;
+    }
+
     @Override
     public Map<String, Object> toMap() {
-        return super.toMap();
+        Map<String,Object> m = super.toMap();
+        if(id!=null) m.put("id", id);
+        if(type!=null) m.put("type", type);
+        if(name!=null) m.put("name", name);
+        if(message!=null) m.put("message", message);
+        return m;
     }
 
     @Override
     public void fromMap(Map<String, Object> m) {
         super.fromMap(m);
+        if(m.get("id")!=null) id = Long.parseLong(String.valueOf(m.get("id")));
+        if(m.get("type")!=null) type = (String)m.get("type");
+        if(m.get("name")!=null) name = (String)m.get("name");
+        if(m.get("message")!=null) message = content(m.get("message"));
+    }
+
+    private static final class Wire extends BaseMessage.Wire<EventMessage> {
+
+        private static final int ID = 2;
+        private static final int TYPE = 3;
+        private static final int NAME = 4;
+        private static final int MESSAGE = 5;
+
+        @Override
+        void writeFields(EventMessage m, BinaryWriter w) {
+            w.writeFixed64Field(ID, m.id);
+            w.writeStringField(TYPE, m.type);
+            w.writeStringField(NAME, m.name);
+            w.writeValueField(MESSAGE, m.message);
+        }
+
+        @Override
+        boolean readField(BinaryReader r, int tag, EventMessage m) {
+            switch(BinaryReader.field(tag)) {
+                case ID: m.id = r.readFixed64(); return true;
+                case TYPE: m.type = r.readString(); return true;
+                case NAME: m.name = r.readString(); return true;
+                case MESSAGE: m.message = r.readValueField(); return true;
+                default: return false;
+            }
+        }
     }
 }
@@ -0,0 +1,453 @@
+package io.onemfive.data;
+
+import java.io.IOException;
+import java.io.InvalidObjectException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.*;
+
+/**
+ * Compact header map of an {@link Envelope}.
+ *
+ * The well-known headers nearly every envelope carries live in an array
+ * slot per {@link Key}, so looking one up is an index rather than a hash
+ * lookup and an envelope with only those pays for one small array. Any
+ * other header goes to a small open-addressed table that is only created
+ * when the first one arrives.
+ *
+ * Behaves as an ordinary Map otherwise: null values are allowed, and
+ * iteration yields the well-known headers in Key order followed by the
+ * others in no particular order. Not thread-safe.
+ *
+ * copy() is O(1): the copy shares storage with the original until either
+ * one is written to, which then takes a private copy first. Shared storage
+ * is only ever read, so copies can go to other threads like any other map.
+ *
+ * Serialized as its name/value pairs, so the form does not depend on the
+ * slot layout.
+ *
+ * @author objectorange
+ */
+public final class Headers extends AbstractMap<String,Object> implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    public enum Key {
+        CONTENT_TYPE(Envelope.HEADER_CONTENT_TYPE),
+        CONTENT_DISPOSITION(Envelope.HEADER_CONTENT_DISPOSITION),
+        CONTENT_TRANSFER_ENCODING(Envelope.HEADER_CONTENT_TRANSFER_ENCODING),
+        USER_AGENT(Envelope.HEADER_USER_AGENT);
+
+        private final String name;
+
+        Key(String name) {
+            this.name = name;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * @return the Key of a well-known header name or null
+         */
+        public static Key of(Object name) {
+            if(!(name instanceof String)) return null;
+            switch((String)name) {
+                case Envelope.HEADER_CONTENT_TYPE: return CONTENT_TYPE;
+                case Envelope.HEADER_CONTENT_DISPOSITION: return CONTENT_DISPOSITION;
+                case Envelope.HEADER_CONTENT_TRANSFER_ENCODING: return CONTENT_TRANSFER_ENCODING;
+                case Envelope.HEADER_USER_AGENT: return USER_AGENT;
+                default: return null;
+            }
+        }
+    }
+
+    private static final Key[] KEYS = Key.values();
+    private static final String REMOVED = new String("");
+
+    private transient Object[] known;
+    // bit per Key set
+    private transient int present;
+
+    // other headers, linear probing; REMOVED marks a deleted slot
+    private transient String[] names;
+    private transient Object[] values;
+    private transient int spilled;
+    private transient int used;
+
+    private transient int modCount;
+    // storage is also referenced by a copy
+    private transient boolean shared;
+
+    public Headers() {
+        known = new Object[KEYS.length];
+    }
+
+    public Headers(Map<String,?> m) {
+        this();
+        putAll(m);
+    }
+
+    /**
+     * @return an equal Headers sharing this one's storage until either is changed
+     */
+    public Headers copy() {
+        Headers h = new Headers(this);
+        shared = true;
+        return h;
+    }
+
+    private Headers(Headers h) {
+        known = h.known;
+        present = h.present;
+        names = h.names;
+        values = h.values;
+        spilled = h.spilled;
+        used = h.used;
+        shared = true;
+    }
+
+    /**
+     * @return m as Headers, copied unless it already is
+     */
+    static Headers from(Map<String,?> m) {
+        if(m == null || m instanceof Headers) return (Headers)m;
+        return new Headers(m);
+    }
+
+    public Object get(Key key) {
+        return known[key.ordinal()];
+    }
+
+    public Object put(Key key, Object value) {
+        int bit = 1 << key.ordinal();
+        unshare();
+        Object old = known[key.ordinal()];
+        known[key.ordinal()] = value;
+        if((present & bit) == 0) {
+            present |= bit;
+            modCount++;
+        }
+        return old;
+    }
+
+    public Object remove(Key key) {
+        int bit = 1 << key.ordinal();
+        Object old = known[key.ordinal()];
+        if((present & bit) != 0) {
+            unshare();
+            present &= ~bit;
+            known[key.ordinal()] = null;
+            modCount++;
+        }
+        return old;
+    }
+
+    public boolean containsKey(Key key) {
+        return (present & (1 << key.ordinal())) != 0;
+    }
+
+    @Override
+    public int size() {
+        return Integer.bitCount(present) + spilled;
+    }
+
+    @Override
+    public Object get(Object name) {
+        Key key = Key.of(name);
+        if(key != null) return known[key.ordinal()];
+        int i = find(name);
+        return i < 0 ? null : values[i];
+    }
+
+    @Override
+    public boolean containsKey(Object name) {
+        Key key = Key.of(name);
+        return key != null ? containsKey(key) : find(name) >= 0;
+    }
+
+    @Override
+    public Object put(String name, Object value) {
+        Key key = Key.of(name);
+        if(key != null) return put(key, value);
+        if(name == null) throw new NullPointerException("Header name must not be null");
+        unshare();
+        int i = find(name);
+        if(i >= 0) {
+            Object old = values[i];
+            values[i] = value;
+            return old;
+        }
+        if(names == null || (used + 1) * 4 > names.length * 3)
+            resize();
+        int mask = names.length - 1;
+        i = hash(name) & mask;
+        while(names[i] != null && names[i] != REMOVED)
+            i = (i + 1) & mask;
+        if(names[i] == null) used++;
+        names[i] = name;
+        values[i] = value;
+        spilled++;
+        modCount++;
+        return null;
+    }
+
+    @Override
+    public Object remove(Object name) {
+        Key key = Key.of(name);
+        if(key != null) return remove(key);
+        int i = find(name);
+        if(i < 0) return null;
+        Object old = values[i];
+        removeAt(i);
+        return old;
+    }
+
+    @Override
+    public void clear() {
+        present = 0;
+        if(shared) {
+            known = new Object[KEYS.length];
+            names = null;
+            values = null;
+            shared = false;
+        } else {
+            Arrays.fill(known, null);
+            if(names != null) {
+                Arrays.fill(names, null);
+                Arrays.fill(values, null);
+            }
+        }
+        spilled = 0;
+        used = 0;
+        modCount++;
+    }
+
+    @Override
+    public Set<Entry<String,Object>> entrySet() {
+        return new AbstractSet<Entry<String,Object>>() {
+            @Override
+            public Iterator<Entry<String,Object>> iterator() {
+                return new EntryIterator();
+            }
+
+            @Override
+            public int size() {
+                return Headers.this.size();
+            }
+
+            @Override
+            public void clear() {
+                Headers.this.clear();
+            }
+        };
+    }
+
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        out.defaultWriteObject();
+        out.writeInt(size());
+        for(Entry<String,Object> e : entrySet()) {
+            out.writeObject(e.getKey());
+            out.writeObject(e.getValue());
+        }
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        known = new Object[KEYS.length];
+        int n = in.readInt();
+        if(n < 0) throw new InvalidObjectException("Negative header count " + n);
+        for(int i = 0; i < n; i++)
+            put((String)in.readObject(), in.readObject());
+    }
+
+    private void unshare() {
+        if(!shared) return;
+        known = known.clone();
+        if(names != null) {
+            names = names.clone();
+            values = values.clone();
+        }
+        shared = false;
+    }
+
+    private void removeAt(int i) {
+        unshare();
+        names[i] = REMOVED;
+        values[i] = null;
+        spilled--;
+        modCount++;
+    }
+
+    private int find(Object name) {
+        if(names == null || !(name instanceof String)) return -1;
+        int mask = names.length - 1;
+        int i = hash(name) & mask;
+        String n;
+        while((n = names[i]) != null) {
+            if(n != REMOVED && n.equals(name)) return i;
+            i = (i + 1) & mask;
+        }
+        return -1;
+    }
+
+    private static int hash(Object name) {
+        int h = name.hashCode();
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * Grow when live entries fill half the table, else just sweep out removed slots.
+     */
+    private void resize() {
+        String[] oldNames = names;
+        Object[] oldValues = values;
+        int capacity = oldNames == null ? 4 : spilled * 2 >= oldNames.length ? oldNames.length * 2 : oldNames.length;
+        names = new String[capacity];
+        values = new Object[capacity];
+        used = spilled;
+        if(oldNames == null) return;
+        int mask = capacity - 1;
+        for(int j = 0; j < oldNames.length; j++) {
+            String n = oldNames[j];
+            if(n == null || n == REMOVED) continue;
+            int i = hash(n) & mask;
+            while(names[i] != null)
+                i = (i + 1) & mask;
+            names[i] = n;
+            values[i] = oldValues[j];
+        }
+    }
+
+    private final class EntryIterator implements Iterator<Entry<String,Object>> {
+
+        // next known ordinal, then KEYS.length + spill index
+        private int next;
+        private int last = -1;
+        private int expectedModCount = modCount;
+
+        private EntryIterator() {
+            advance(0);
+        }
+
+        private void advance(int from) {
+            next = from;
+            while(next < KEYS.length && (present & (1 << next)) == 0)
+                next++;
+            if(next >= KEYS.length) {
+                int i = next - KEYS.length;
+                while(names != null && i < names.length && (names[i] == null || names[i] == REMOVED))
+                    i++;
+                next = KEYS.length + i;
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next < KEYS.length || (names != null && next - KEYS.length < names.length);
+        }
+
+        @Override
+        public Entry<String,Object> next() {
+            if(modCount != expectedModCount) throw new ConcurrentModificationException();
+            if(!hasNext()) throw new NoSuchElementException();
+            last = next;
+            advance(next + 1);
+            return last < KEYS.length ? new KnownEntry(KEYS[last]) : new SpilledEntry(last - KEYS.length);
+        }
+
+        @Override
+        public void remove() {
+            if(last < 0) throw new IllegalStateException();
+            if(modCount != expectedModCount) throw new ConcurrentModificationException();
+            if(last < KEYS.length) Headers.this.remove(KEYS[last]);
+            else removeAt(last - KEYS.length);
+            last = -1;
+            expectedModCount = modCount;
+        }
+    }
+
+    private final class KnownEntry implements Entry<String,Object> {
+
+        private final Key key;
+
+        private KnownEntry(Key key) {
+            this.key = key;
+        }
+
+        @Override
+        public String getKey() {
+            return key.name;
+        }
+
+        @Override
+        public Object getValue() {
+            return known[key.ordinal()];
+        }
+
+        @Override
+        public Object setValue(Object value) {
+            return put(key, value);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Entry && key.name.equals(((Entry<?,?>)o).getKey())
+                    && Objects.equals(getValue(), ((Entry<?,?>)o).getValue());
+        }
+
+        @Override
+        public int hashCode() {
+            return key.name.hashCode() ^ Objects.hashCode(getValue());
+        }
+
+        @Override
+        public String toString() {
+            return key.name + "=" + getValue();
+        }
+    }
+
+    private final class SpilledEntry implements Entry<String,Object> {
+
+        private final int index;
+        private final String name;
+
+        private SpilledEntry(int index) {
+            this.index = index;
+            this.name = names[index];
+        }
+
+        @Override
+        public String getKey() {
+            return name;
+        }
+
+        @Override
+        public Object getValue() {
+            return names[index] == name ? values[index] : get(name);
+        }
+
+        @Override
+        public Object setValue(Object value) {
+            return put(name, value);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Entry && name.equals(((Entry<?,?>)o).getKey())
+                    && Objects.equals(getValue(), ((Entry<?,?>)o).getValue());
+        }
+
+        @Override
+        public int hashCode() {
+            return name.hashCode() ^ Objects.hashCode(getValue());
+        }
+
+        @Override
+        public String toString() {
+            return name + "=" + getValue();
+        }
+    }
+}
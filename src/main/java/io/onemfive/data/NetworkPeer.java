@@ -1,7 +1,16 @@
 package io.onemfive.data;
 
+import io.onemfive.data.util.BinaryCodec;
+import io.onemfive.data.util.BinaryCodecs;
+import io.onemfive.data.util.BinaryReader;
+import io.onemfive.data.util.BinaryWriter;
+import io.onemfive.data.util.JSONCodec;
+import io.onemfive.data.util.JSONCodecs;
 import io.onemfive.data.util.JSONParser;
+import io.onemfive.data.util.JSONReader;
+import io.onemfive.data.util.JSONWriter;
 
+import java.io.IOException;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.logging.Logger;
@@ -20,6 +29,11 @@ public class NetworkPeer implements Addressable, JSONSerializable, PIIClearable
 
     private static Logger LOG = Logger.getLogger(NetworkPeer.class.getName());
 
+    static {
+        JSONCodecs.register(new Codec(), NetworkPeer.class);
+        BinaryCodecs.register(new Wire(), NetworkPeer.class);
+    }
+
     public enum Network {
         // Invisible Matrix Services (1M5) - https://github.com/1m5/1m5-core
         IMS,
@@ -375,4 +389,95 @@ public class NetworkPeer implements Addressable, JSONSerializable, PIIClearable
         sb.append("\n}");
         return sb.toString();
     }
+
+    /**
+     * Same members as toMap()/fromMap().
+     */
+    private static final class Codec implements JSONCodec<NetworkPeer> {
+
+        @Override
+        public void write(NetworkPeer p, JSONWriter w) throws IOException {
+            w.startObject();
+            if(p.network!=null) w.writeName("network").writeString(p.network);
+            writeString(w, "address", p.getAddress());
+            writeString(w, "fingerprint", p.getFingerprint());
+            writeString(w, "i2pAddress", p.getI2PAddress());
+            writeString(w, "i2pFingerprint", p.getI2PFingerprint());
+            writeString(w, "torAddress", p.getTorAddress());
+            writeString(w, "torFingerprint", p.getTorFingerprint());
+            writeString(w, "sdrAddress", p.getSDRAddress());
+            writeString(w, "sdrFingerprint", p.getSDRFingerprint());
+            writeString(w, "lifiAddress", p.getLiFiAddress());
+            writeString(w, "lifiFingerprint", p.getLiFiFingerprint());
+            writeString(w, "imsAddress", p.getIMSAddress());
+            writeString(w, "imsFingerprint", p.getIMSFingerprint());
+            if(p.did!=null) w.writeName("did").writeValue(p.did);
+            w.endObject();
+        }
+
+        private static void writeString(JSONWriter w, String name, String value) throws IOException {
+            if(value!=null) w.writeName(name).writeString(value);
+        }
+
+        @Override
+        public void read(JSONReader r, NetworkPeer p) {
+            // as in fromMap() the addresses go to the current did and a supplied did replaces it afterwards
+            DID did = null;
+            while(r.nextToken()==JSONReader.Token.FIELD_NAME) {
+                String name = r.getText();
+                if(r.nextToken()==JSONReader.Token.VALUE_NULL) continue;
+                switch(name) {
+                    case "network": p.network = r.getValueAsString(); break;
+                    case "address": p.setAddress(r.getValueAsString()); break;
+                    case "fingerprint": p.setFingerprint(r.getValueAsString()); break;
+                    case "i2pAddress": p.setI2PAddress(r.getValueAsString()); break;
+                    case "i2pFingerprint": p.setI2PFingerprint(r.getValueAsString()); break;
+                    case "torAddress": p.setTorAddress(r.getValueAsString()); break;
+                    case "torFingerprint": p.setTorFingerprint(r.getValueAsString()); break;
+                    case "sdrAddress": p.setSDRAddress(r.getValueAsString()); break;
+                    case "sdrFingerprint": p.setSDRFingerprint(r.getValueAsString()); break;
+                    case "lifiAddress": p.setLiFiAddress(r.getValueAsString()); break;
+                    case "lifiFingerprint": p.setLiFiFingerprint(r.getValueAsString()); break;
+                    case "imsAddress": p.setIMSAddress(r.getValueAsString()); break;
+                    case "imsFingerprint": p.setIMSFingerprint(r.getValueAsString()); break;
+                    case "did": {
+                        if(r.currentToken()==JSONReader.Token.VALUE_STRING)
+                            did = JSONParser.parse(r.getText(), new DID());
+                        else
+                            did = r.readObject(new DID());
+                        break;
+                    }
+                    default: r.skipChildren();
+                }
+            }
+            if(did!=null) p.did = did;
+        }
+    }
+
+    private static final class Wire implements BinaryCodec<NetworkPeer> {
+
+        private static final int NETWORK = 1;
+        private static final int DID = 2;
+        private static final int IS_LOCAL = 3;
+
+        @Override
+        public void write(NetworkPeer p, BinaryWriter w) {
+            w.writeStringField(NETWORK, p.network);
+            w.writeMessageField(DID, p.did);
+            w.writeBooleanField(IS_LOCAL, p.isLocal);
+        }
+
+        @Override
+        public void read(BinaryReader r, NetworkPeer p) {
+            int tag;
+            while((tag = r.readTag()) != 0) {
+                switch(BinaryReader.field(tag)) {
+                    case NETWORK: p.network = r.readString(); break;
+                    case DID: p.did = r.readMessage(new DID()); break;
+                    case IS_LOCAL: p.isLocal = r.readBoolean(); break;
+                    default: r.skip(tag);
+                }
+            }
+        }
+    }
 }
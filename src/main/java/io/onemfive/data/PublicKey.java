@@ -1,7 +1,16 @@
 package io.onemfive.data;
 
 import io.onemfive.data.util.Base64;
-
+import io.onemfive.data.util.BinaryCodec;
+import io.onemfive.data.util.BinaryCodecs;
+import io.onemfive.data.util.BinaryReader;
+import io.onemfive.data.util.BinaryWriter;
+import io.onemfive.data.util.JSONCodec;
+import io.onemfive.data.util.JSONCodecs;
+import io.onemfive.data.util.JSONReader;
+import io.onemfive.data.util.JSONWriter;
+
+import java.io.IOException;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -12,6 +21,11 @@ import java.util.Map;
  */
 public class PublicKey implements Addressable, JSONSerializable {
 
+    static {
+        JSONCodecs.register(new Codec(), PublicKey.class);
+        BinaryCodecs.register(new Wire(), PublicKey.class);
+    }
+
     private String alias;
     private String fingerprint;
     private String address;
@@ -100,4 +114,70 @@ public class PublicKey implements Addressable, JSONSerializable {
         clone.address = address;
         return clone;
     }
+
+    /**
+     * Same members as toMap()/fromMap().
+     */
+    private static final class Codec implements JSONCodec<PublicKey> {
+
+        @Override
+        public void write(PublicKey k, JSONWriter w) throws IOException {
+            w.startObject();
+            if(k.alias!=null) w.writeName("alias").writeString(k.alias);
+            if(k.fingerprint!=null) w.writeName("fingerprint").writeString(k.fingerprint);
+            if(k.address!=null) w.writeName("address").writeString(k.address);
+            if(k.isEncryptionKey!=null) w.writeName("isEncryptionKey").writeBoolean(k.isEncryptionKey);
+            if(k.isIdentityKey!=null) w.writeName("isIdentityKey").writeBoolean(k.isIdentityKey);
+            w.endObject();
+        }
+
+        @Override
+        public void read(JSONReader r, PublicKey k) {
+            while(r.nextToken()==JSONReader.Token.FIELD_NAME) {
+                String name = r.getText();
+                if(r.nextToken()==JSONReader.Token.VALUE_NULL) continue;
+                switch(name) {
+                    case "alias": k.alias = r.getValueAsString(); break;
+                    case "fingerprint": k.fingerprint = r.getValueAsString(); break;
+                    case "address": k.address = r.getValueAsString(); break;
+                    case "isEncryptionKey": k.isEncryptionKey = r.getValueAsBoolean(); break;
+                    case "isIdentityKey": k.isIdentityKey = r.getValueAsBoolean(); break;
+                    default: r.skipChildren();
+                }
+            }
+        }
+    }
+
+    private static final class Wire implements BinaryCodec<PublicKey> {
+
+        private static final int ALIAS = 1;
+        private static final int FINGERPRINT = 2;
+        private static final int ADDRESS = 3;
+        private static final int IS_IDENTITY_KEY = 4;
+        private static final int IS_ENCRYPTION_KEY = 5;
+
+        @Override
+        public void write(PublicKey k, BinaryWriter w) {
+            w.writeStringField(ALIAS, k.alias);
+            w.writeStringField(FINGERPRINT, k.fingerprint);
+            w.writeStringField(ADDRESS, k.address);
+            w.writeBooleanField(IS_IDENTITY_KEY, k.isIdentityKey);
+            w.writeBooleanField(IS_ENCRYPTION_KEY, k.isEncryptionKey);
+        }
+
+        @Override
+        public void read(BinaryReader r, PublicKey k) {
+            int tag;
+            while((tag = r.readTag()) != 0) {
+                switch(BinaryReader.field(tag)) {
+                    case ALIAS: k.alias = r.readString(); break;
+                    case FINGERPRINT: k.fingerprint = r.readString(); break;
+                    case ADDRESS: k.address = r.readString(); break;
+                    case IS_IDENTITY_KEY: k.isIdentityKey = r.readBoolean(); break;
+                    case IS_ENCRYPTION_KEY: k.isEncryptionKey = r.readBoolean(); break;
+                    default: r.skip(tag);
+                }
+            }
+        }
+    }
 }
@@ -1,5 +1,9 @@
 package io.onemfive.data;
 
+import io.onemfive.data.util.BinaryCodecs;
+import io.onemfive.data.util.BinaryReader;
+import io.onemfive.data.util.BinaryWriter;
+
 import java.util.Map;
 
 /**
@@ -9,6 +13,10 @@ import java.util.Map;
  */
 public class TextMessage extends BaseMessage {
 
+    static {
+        BinaryCodecs.register(new Wire(), TextMessage.class);
+    }
+
     protected DID to;
     protected DID from;
     protected String text;
@@ -46,13 +54,59 @@ public class TextMessage extends BaseMessage {
         this.text = text;
     }
 
+    @Override
+    void reset() {
+        super.reset();
+        to = null;
+        from = null;
+        text = null;
+    }
+
     @Override
     public Map<String, Object> toMap() {
-        return super.toMap();
+        Map<String,Object> m = super.toMap();
+        if(to!=null) m.put("to", to.toMap());
+        if(from!=null) m.put("from", from.toMap());
+        if(text!=null) m.put("text", text);
+        return m;
     }
 
     @Override
+    @SuppressWarnings("unchecked")
     public void fromMap(Map<String, Object> m) {
         super.fromMap(m);
+        if(m.get("to")!=null) {
+            to = new DID();
+            to.fromMap((Map<String,Object>)m.get("to"));
+        }
+        if(m.get("from")!=null) {
+            from = new DID();
+            from.fromMap((Map<String,Object>)m.get("from"));
+        }
+        if(m.get("text")!=null) text = (String)m.get("text");
+    }
+
+    private static final class Wire extends BaseMessage.Wire<TextMessage> {
+
+        private static final int TO = 2;
+        private static final int FROM = 3;
+        private static final int TEXT = 4;
+
+        @Override
+        void writeFields(TextMessage m, BinaryWriter w) {
+            w.writeMessageField(TO, m.to);
+            w.writeMessageField(FROM, m.from);
+            w.writeStringField(TEXT, m.text);
+        }
+
+        @Override
+        boolean readField(BinaryReader r, int tag, TextMessage m) {
+            switch(BinaryReader.field(tag)) {
+                case TO: m.to = r.readMessage(new DID()); return true;
+                case FROM: m.from = r.readMessage(new DID()); return true;
+                case TEXT: m.text = r.readString(); return true;
+                default: return false;
+            }
+        }
     }
 }
@@ -11,4 +11,8 @@ public class Audio extends Binary {
     public Audio(byte[] body, String contentType, String name, boolean generateHash, boolean generateFingerprint) {
         super(body, contentType, name, generateHash, generateFingerprint);
     }
+
+    public Audio(ChunkedBody body, String contentType, String name, boolean generateHash, boolean generateFingerprint) {
+        super(body, contentType, name, generateHash, generateFingerprint);
+    }
 }
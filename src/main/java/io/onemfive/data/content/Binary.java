@@ -20,4 +20,8 @@ public abstract class Binary extends Content {
     public Binary(byte[] body, String contentType, String name, boolean generateHash, boolean generateFingerprint) {
         super(body, contentType, name, generateHash, generateFingerprint);
     }
+
+    public Binary(ChunkedBody body, String contentType, String name, boolean generateHash, boolean generateFingerprint) {
+        super(body, contentType, name, generateHash, generateFingerprint);
+    }
 }
@@ -0,0 +1,173 @@
+package io.onemfive.data.content;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Where the chunks of a {@link ChunkedBody} come from: a byte[] or buffer, a file read
+ * a chunk at a time or memory-mapped, or any stream or channel, e.g. a socket.
+ *
+ * @author objectorange
+ */
+public interface ChunkSource extends Closeable {
+
+    /**
+     * @return the next chunk, at most the chunk size, or null at the end.
+     * The buffer may be reused by the following call.
+     */
+    ByteBuffer next() throws IOException;
+
+    /**
+     * @return total bytes if known up front, else -1
+     */
+    long length();
+
+    static ChunkSource of(byte[] body, int chunkSize) {
+        return new Bytes(ByteBuffer.wrap(body), chunkSize);
+    }
+
+    /**
+     * Chunks are read-only slices of body, which is not copied.
+     */
+    static ChunkSource of(ByteBuffer body, int chunkSize) {
+        return new Bytes(body, chunkSize);
+    }
+
+    /**
+     * Read the file through one reused buffer of chunkSize.
+     */
+    static ChunkSource of(Path file, int chunkSize) throws IOException {
+        FileChannel ch = FileChannel.open(file, StandardOpenOption.READ);
+        return new Channel(ch, ch.size(), chunkSize);
+    }
+
+    /**
+     * Map the file a chunk at a time, so chunks are read by the OS on demand
+     * and never copied onto the heap.
+     */
+    static ChunkSource mapped(Path file, int chunkSize) throws IOException {
+        return new Mapped(FileChannel.open(file, StandardOpenOption.READ), chunkSize);
+    }
+
+    /**
+     * @param length total bytes if known, else -1
+     */
+    static ChunkSource of(InputStream in, long length, int chunkSize) {
+        return new Channel(Channels.newChannel(in), length, chunkSize);
+    }
+
+    /**
+     * @param length total bytes if known, else -1
+     */
+    static ChunkSource of(ReadableByteChannel ch, long length, int chunkSize) {
+        return new Channel(ch, length, chunkSize);
+    }
+
+    final class Bytes implements ChunkSource {
+
+        private final ByteBuffer body;
+        private final int chunkSize;
+
+        private Bytes(ByteBuffer body, int chunkSize) {
+            this.body = body.slice().asReadOnlyBuffer();
+            this.chunkSize = chunkSize;
+        }
+
+        @Override
+        public ByteBuffer next() {
+            if(!body.hasRemaining()) return null;
+            int n = Math.min(chunkSize, body.remaining());
+            ByteBuffer b = body.slice();
+            b.limit(n);
+            body.position(body.position() + n);
+            return b;
+        }
+
+        @Override
+        public long length() {
+            return body.limit();
+        }
+
+        @Override
+        public void close() {}
+    }
+
+    final class Channel implements ChunkSource {
+
+        private final ReadableByteChannel ch;
+        private final long length;
+        private final ByteBuffer buffer;
+        private boolean eof;
+
+        private Channel(ReadableByteChannel ch, long length, int chunkSize) {
+            this.ch = ch;
+            this.length = length;
+            this.buffer = ByteBuffer.allocate(chunkSize);
+        }
+
+        @Override
+        public ByteBuffer next() throws IOException {
+            if(eof) return null;
+            buffer.clear();
+            // fill the chunk, as sockets and pipes return short reads
+            while(buffer.hasRemaining()) {
+                if(ch.read(buffer) < 0) {
+                    eof = true;
+                    break;
+                }
+            }
+            buffer.flip();
+            return buffer.hasRemaining() ? buffer : null;
+        }
+
+        @Override
+        public long length() {
+            return length;
+        }
+
+        @Override
+        public void close() throws IOException {
+            ch.close();
+        }
+    }
+
+    final class Mapped implements ChunkSource {
+
+        private final FileChannel ch;
+        private final long length;
+        private final int chunkSize;
+        private long pos;
+
+        private Mapped(FileChannel ch, int chunkSize) throws IOException {
+            this.ch = ch;
+            this.length = ch.size();
+            this.chunkSize = chunkSize;
+        }
+
+        @Override
+        public ByteBuffer next() throws IOException {
+            if(pos >= length) return null;
+            long n = Math.min(chunkSize, length - pos);
+            ByteBuffer b = ch.map(FileChannel.MapMode.READ_ONLY, pos, n);
+            pos += n;
+            return b;
+        }
+
+        @Override
+        public long length() {
+            return length;
+        }
+
+        @Override
+        public void close() throws IOException {
+            ch.close();
+        }
+    }
+}
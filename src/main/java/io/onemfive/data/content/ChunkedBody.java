@@ -0,0 +1,244 @@
+package io.onemfive.data.content;
+
+import io.onemfive.data.Hash;
+import io.onemfive.data.util.HashUtil;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.logging.Logger;
+
+/**
+ * A body too large to hold as a byte[], read once as a sequence of bounded
+ * chunks from a {@link ChunkSource}.
+ *
+ * Each chunk gets its own hash, and the size and hash of the whole body
+ * are computed as the chunks pass, so a 500 MB video costs one chunk of
+ * heap. When the last chunk has been read the Content the body is set on
+ * gets its size, and its hash and fingerprint if they were asked for.
+ *
+ * Not thread-safe; one reader consumes the body once.
+ *
+ * @author objectorange
+ */
+public final class ChunkedBody implements Closeable {
+
+    private static final Logger LOG = Logger.getLogger(ChunkedBody.class.getName());
+
+    public static final int DEFAULT_CHUNK_SIZE = 64 * 1024;
+
+    private final ChunkSource source;
+    private final Hash.Algorithm algorithm;
+    private final MessageDigest chunkDigest;
+    // whole body, salted as HashUtil.generateHash does
+    private final MessageDigest digest;
+    private final byte[] salt;
+
+    private final List<Hash> chunkHashes = new ArrayList<>();
+    private long size;
+    private boolean complete;
+    private Hash hash;
+
+    private Content content;
+    private boolean generateHash;
+    private boolean generateFingerprint;
+
+    public ChunkedBody(ChunkSource source) {
+        this(source, Hash.Algorithm.SHA256);
+    }
+
+    /**
+     * @param algorithm of the chunk and body hashes; not PBKDF2WithHmacSHA1
+     */
+    public ChunkedBody(ChunkSource source, Hash.Algorithm algorithm) {
+        if(algorithm == Hash.Algorithm.PBKDF2WithHmacSHA1)
+            throw new IllegalArgumentException("Chunked bodies can not be hashed with " + algorithm);
+        this.source = source;
+        this.algorithm = algorithm;
+        try {
+            chunkDigest = MessageDigest.getInstance(algorithm.getName());
+            digest = MessageDigest.getInstance(algorithm.getName());
+            salt = HashUtil.getSalt();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        digest.update(salt);
+    }
+
+    /**
+     * Give c this body's size, and hash and fingerprint as asked, once it is read.
+     * c takes on this body's hash algorithm, as that is what its hash is made with.
+     */
+    void attach(Content c, boolean generateHash, boolean generateFingerprint) {
+        this.content = c;
+        c.setHashAlgorithm(algorithm);
+        this.generateHash = generateHash;
+        this.generateFingerprint = generateFingerprint;
+    }
+
+    /**
+     * @return the next chunk or null once all have been read. Its data may be
+     * overwritten by the following call.
+     */
+    public Chunk next() throws IOException {
+        if(complete) return null;
+        ByteBuffer data = source.next();
+        if(data == null) {
+            finish();
+            return null;
+        }
+        long offset = size;
+        size += data.remaining();
+        data.mark();
+        chunkDigest.update(data);
+        data.reset();
+        digest.update(data);
+        data.reset();
+        Hash h = new Hash(HashUtil.toHex(chunkDigest.digest()), algorithm);
+        chunkHashes.add(h);
+        return new Chunk(chunkHashes.size() - 1, offset, data.asReadOnlyBuffer(), h);
+    }
+
+    /**
+     * Read the rest of the body into out.
+     * @return bytes written
+     */
+    public long writeTo(OutputStream out) throws IOException {
+        long n = 0;
+        byte[] b = null;
+        Chunk c;
+        while((c = next()) != null) {
+            int len = c.getLength();
+            if(b == null || b.length < len) b = new byte[len];
+            c.getData().get(b, 0, len);
+            out.write(b, 0, len);
+            n += len;
+        }
+        return n;
+    }
+
+    /**
+     * Read the rest of the body into ch.
+     * @return bytes written
+     */
+    public long writeTo(WritableByteChannel ch) throws IOException {
+        long n = 0;
+        Chunk c;
+        while((c = next()) != null) {
+            ByteBuffer data = c.getData();
+            while(data.hasRemaining())
+                ch.write(data);
+            n += c.getLength();
+        }
+        return n;
+    }
+
+    private void finish() throws IOException {
+        complete = true;
+        hash = HashUtil.generateHash(salt, digest, algorithm);
+        source.close();
+        if(content == null) return;
+        content.setSize(size);
+        if(generateHash) {
+            content.setHash(hash);
+            if(generateFingerprint) {
+                try {
+                    content.setFingerprint(HashUtil.generateFingerprint(hash.getHash().getBytes(), content.getFingerprintAlgorithm()));
+                } catch (NoSuchAlgorithmException e) {
+                    LOG.warning(e.getLocalizedMessage());
+                }
+            }
+        }
+    }
+
+    public boolean isComplete() {
+        return complete;
+    }
+
+    /**
+     * @return bytes read so far, the whole size once complete
+     */
+    public long getSize() {
+        return size;
+    }
+
+    /**
+     * @return total bytes if the source knows it up front, else -1
+     */
+    public long getLength() {
+        return source.length();
+    }
+
+    public Hash.Algorithm getAlgorithm() {
+        return algorithm;
+    }
+
+    /**
+     * @return hashes of the chunks read so far, in order
+     */
+    public List<Hash> getChunkHashes() {
+        return Collections.unmodifiableList(chunkHashes);
+    }
+
+    /**
+     * @return salted hash of the whole body, null until complete
+     */
+    public Hash getHash() {
+        return hash;
+    }
+
+    @Override
+    public void close() throws IOException {
+        source.close();
+    }
+
+    public static final class Chunk {
+
+        private final int index;
+        private final long offset;
+        private final int length;
+        private final ByteBuffer data;
+        private final Hash hash;
+
+        private Chunk(int index, long offset, ByteBuffer data, Hash hash) {
+            this.index = index;
+            this.offset = offset;
+            this.length = data.remaining();
+            this.data = data;
+            this.hash = hash;
+        }
+
+        public int getIndex() {
+            return index;
+        }
+
+        /**
+         * @return position of the chunk's first byte in the body
+         */
+        public long getOffset() {
+            return offset;
+        }
+
+        public int getLength() {
+            return length;
+        }
+
+        /**
+         * @return read-only view of the chunk's bytes
+         */
+        public ByteBuffer getData() {
+            return data;
+        }
+
+        public Hash getHash() {
+            return hash;
+        }
+    }
+}
@@ -3,9 +3,16 @@ package io.onemfive.data.content;
 import io.onemfive.data.EncryptionAlgorithm;
 import io.onemfive.data.Hash;
 import io.onemfive.data.JSONSerializable;
+import io.onemfive.data.util.BinaryCodecs;
 import io.onemfive.data.util.HashUtil;
+import io.onemfive.data.util.JSONCodec;
+import io.onemfive.data.util.JSONCodecs;
 import io.onemfive.data.util.JSONParser;
+import io.onemfive.data.util.JSONReader;
+import io.onemfive.data.util.JSONWriter;
 
+import java.io.IOException;
+import java.io.OutputStream;
 import java.io.Serializable;
 import java.security.NoSuchAlgorithmException;
 import java.util.*;
@@ -20,6 +27,11 @@ public abstract class Content implements JSONSerializable, Serializable {
 
     private Logger LOG = Logger.getLogger(Content.class.getName());
 
+    static {
+        JSONCodecs.register(new Codec(), Text.class, HTML.class, JSON.class, Image.class, Audio.class, Video.class);
+        BinaryCodecs.allowTyped(Text.class, HTML.class, JSON.class, Image.class, Audio.class, Video.class);
+    }
+
     // Required
     protected String type;
     protected String contentType;
@@ -29,6 +41,8 @@ public abstract class Content implements JSONSerializable, Serializable {
     protected String authorAlias;
     protected String authorAddress;
     protected byte[] body;
+    // streamed instead of body, not serialized with the content
+    private transient ChunkedBody chunkedBody;
     private String bodyEncoding;
     private Boolean bodyBase64Encoded = false;
     private Long createdAt;
@@ -57,6 +71,15 @@ public abstract class Content implements JSONSerializable, Serializable {
         return buildContent(body, contentType, name, false, false);
     }
 
+    /**
+     * @return true if buildContent returns a Content for contentType
+     */
+    public static boolean isBuilt(String contentType) {
+        return contentType != null && (contentType.startsWith("text/plain") || contentType.startsWith("text/html")
+                || contentType.startsWith("image/") || contentType.startsWith("audio/") || contentType.startsWith("video/")
+                || contentType.startsWith("application/json"));
+    }
+
     public static Content buildContent(byte[] body, String contentType, String name, boolean generateHash, boolean generateFingerprint) {
         Content c = null;
         if(contentType==null) return null;
@@ -66,7 +89,23 @@ public abstract class Content implements JSONSerializable, Serializable {
         else if(contentType.startsWith("audio/")) c = new Audio(body, contentType, name, generateHash, generateFingerprint);
         else if(contentType.startsWith("video/")) c = new Video(body, contentType, name, generateHash, generateFingerprint);
         else if(contentType.startsWith("application/json"))  c = new JSON(body, name, generateHash, generateFingerprint);
-        c.setCreatedAt(System.currentTimeMillis());
+        if(c!=null) c.setCreatedAt(System.currentTimeMillis());
+        return c;
+    }
+
+    /**
+     * @return Content over a streaming body, null for the same content types as the byte[] build
+     */
+    public static Content buildContent(ChunkedBody body, String contentType, String name) {
+        Content c = null;
+        if(contentType==null) return null;
+        else if(contentType.startsWith("text/plain")) c = new Text(body, name, false, false);
+        else if(contentType.startsWith("text/html")) c = new HTML(body, name, false, false);
+        else if(contentType.startsWith("image/")) c = new Image(body, contentType, name, false, false);
+        else if(contentType.startsWith("audio/")) c = new Audio(body, contentType, name, false, false);
+        else if(contentType.startsWith("video/")) c = new Video(body, contentType, name, false, false);
+        else if(contentType.startsWith("application/json"))  c = new JSON(body, name, false, false);
+        if(c!=null) c.setCreatedAt(System.currentTimeMillis());
         return c;
     }
 
@@ -94,6 +133,13 @@ public abstract class Content implements JSONSerializable, Serializable {
         }
     }
 
+    public Content(ChunkedBody body, String contentType, String name, boolean generateHash, boolean generateFingerprint) {
+        this((byte[])null, contentType, name, false, false);
+        if(body!=null) {
+            setBody(body, generateHash, generateFingerprint);
+        }
+    }
+
     public String getType() {
         return type;
     }
@@ -156,6 +202,7 @@ public abstract class Content implements JSONSerializable, Serializable {
 
     public void setBody(byte[] body, boolean generateHash, boolean generateFingerprint) {
         this.body = body;
+        this.chunkedBody = null;
         this.size = (long)body.length;
         try {
             if(generateHash) {
@@ -170,6 +217,25 @@ public abstract class Content implements JSONSerializable, Serializable {
         incrementVersion();
     }
 
+    /**
+     * Stream the body in chunks instead of holding it as a byte[]. Size, and
+     * hash and fingerprint if asked for, are set once the last chunk is read.
+     */
+    public void setBody(ChunkedBody body, boolean generateHash, boolean generateFingerprint) {
+        this.body = null;
+        this.chunkedBody = body;
+        this.size = body.getLength() < 0 ? 0L : body.getLength();
+        body.attach(this, generateHash, generateFingerprint);
+        incrementVersion();
+    }
+
+    /**
+     * @return the streamed body or null if the body is a byte[]
+     */
+    public ChunkedBody getChunkedBody() {
+        return chunkedBody;
+    }
+
     public String base64EncodeBody() {
         if(body==null) return null;
         return Base64.getEncoder().encodeToString(body);
@@ -321,7 +387,7 @@ public abstract class Content implements JSONSerializable, Serializable {
     }
 
     public boolean metaOnly() {
-        return body == null;
+        return body == null && chunkedBody == null;
     }
 
     /**
@@ -360,6 +426,14 @@ public abstract class Content implements JSONSerializable, Serializable {
     }
 
     public Map<String,Object> toMap() {
+        return toMap(true);
+    }
+
+    /**
+     * @param encodeBody false leaves a binary body (and those of children) as the raw byte[]
+     *                   for writers that stream or carry it natively instead of holding a Base64 copy
+     */
+    public Map<String,Object> toMap(boolean encodeBody) {
         Map<String,Object> m = new HashMap<>();
         if(type!=null) m.put("type",type);
         if(contentType!=null) m.put("contentType",contentType);
@@ -369,8 +443,10 @@ public abstract class Content implements JSONSerializable, Serializable {
         if(body != null) {
             if(this instanceof Text)
                 m.put("body", new String(body));
-            else
+            else if(encodeBody)
                 m.put("body", base64EncodeBody());
+            else
+                m.put("body", body);
         }
         if(bodyEncoding != null) m.put("bodyEncoding",bodyEncoding);
         if(bodyBase64Encoded != null) m.put("bodyBase64Encoded",bodyBase64Encoded.toString());
@@ -382,7 +458,7 @@ public abstract class Content implements JSONSerializable, Serializable {
         if(children != null && children.size() > 0) {
             List<Map<String,Object>> l = new ArrayList<>();
             for(Content c : children) {
-                l.add(c.toMap());
+                l.add(c.toMap(encodeBody));
             }
             m.put("children", l);
         }
@@ -406,7 +482,10 @@ public abstract class Content implements JSONSerializable, Serializable {
         if(m.get("version")!=null) version = Integer.parseInt((String)m.get("version"));
         if(m.get("name")!=null) name = (String)m.get("name");
         if(m.get("size")!=null) size = Long.parseLong((String)m.get("size"));
-        if(m.get("body")!=null) {
+        if(m.get("body") instanceof byte[]) {
+            // carried natively by CBOR and MessagePack
+            body = (byte[])m.get("body");
+        } else if(m.get("body")!=null) {
             if(this instanceof Text)
                 body = ((String)m.get("body")).getBytes();
             else
@@ -455,9 +534,127 @@ public abstract class Content implements JSONSerializable, Serializable {
         return content;
     }
 
+    /**
+     * Stream this content as UTF-8 JSON, Base64 encoding binary bodies on the way out.
+     */
+    public void writeJSON(OutputStream out) throws IOException {
+        JSONWriter.write(toMap(false), out);
+    }
+
     @Override
     public String toString() {
-        return JSONParser.toString(toMap());
+        return JSONWriter.toString(toMap(false));
+    }
+
+    /**
+     * Same members as toMap()/fromMap(); binary bodies are Base64 encoded on the way out.
+     */
+    private static final class Codec implements JSONCodec<Content> {
+
+        @Override
+        public void write(Content c, JSONWriter w) throws IOException {
+            w.startObject();
+            if(c.type!=null) w.writeName("type").writeString(c.type);
+            if(c.contentType!=null) w.writeName("contentType").writeString(c.contentType);
+            if(c.version!=null) w.writeName("version").writeString(String.valueOf(c.version));
+            if(c.name!=null) w.writeName("name").writeString(c.name);
+            if(c.size!=null) w.writeName("size").writeString(String.valueOf(c.size));
+            if(c.body != null) {
+                if(c instanceof Text)
+                    w.writeName("body").writeString(new String(c.body));
+                else
+                    w.writeName("body").writeBinary(c.body);
+            }
+            if(c.bodyEncoding != null) w.writeName("bodyEncoding").writeString(c.bodyEncoding);
+            if(c.bodyBase64Encoded != null) w.writeName("bodyBase64Encoded").writeString(c.bodyBase64Encoded.toString());
+            if(c.createdAt != null) w.writeName("createdAt").writeString(String.valueOf(c.createdAt));
+            if(c.hash != null) w.writeName("hash").writeString(c.hash.getHash());
+            if(c.hashAlgorithm != null) w.writeName("hashAlgorithm").writeString(c.hashAlgorithm.getName());
+            if(c.fingerprint != null) w.writeName("fingerprint").writeString(c.fingerprint.getHash());
+            if(c.fingerprintAlgorithm != null) w.writeName("fingerprintAlgorithm").writeString(c.fingerprintAlgorithm.getName());
+            if(c.children != null && c.children.size() > 0) {
+                w.writeName("children").startArray();
+                for(Content child : c.children)
+                    w.writeValue(child);
+                w.endArray();
+            }
+            if(c.authorAlias != null) w.writeName("authorAlias").writeString(c.authorAlias);
+            if(c.authorAddress != null) w.writeName("authorAddress").writeString(c.authorAddress);
+            if(c.encrypted!=null) w.writeName("encrypted").writeString(c.encrypted.toString());
+            if(c.encryptionAlgorithm!=null) w.writeName("encryptionAlgorithm").writeString(c.encryptionAlgorithm.getName());
+            if(c.encryptionPassphrase!=null) w.writeName("encryptionPassphrase").writeString(c.encryptionPassphrase);
+            if(c.encryptionPassphraseEncrypted!=null) w.writeName("encryptionPassphraseEncrypted").writeString(c.encryptionPassphraseEncrypted.toString());
+            if(c.encryptionPassphraseAlgorithm!=null) w.writeName("encryptionPassphraseAlgorithm").writeString(c.encryptionPassphraseAlgorithm.getName());
+            if(c.base64EncodedIV!=null) w.writeName("base64EncodedIV").writeString(c.base64EncodedIV);
+            if(c.keywords != null && c.keywords.size() > 0) w.writeName("keywords").writeValue(c.keywords);
+            if(c.readable!=null) w.writeName("readable").writeString(c.readable.toString());
+            if(c.writeable!=null) w.writeName("writeable").writeString(c.writeable.toString());
+            w.endObject();
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public void read(JSONReader r, Content c) {
+            // hashes need their algorithms, which may come after them
+            String hash = null;
+            String fingerprint = null;
+            while(r.nextToken()==JSONReader.Token.FIELD_NAME) {
+                String name = r.getText();
+                if(r.nextToken()==JSONReader.Token.VALUE_NULL) continue;
+                switch(name) {
+                    case "type": c.type = r.getValueAsString(); break;
+                    case "contentType": c.contentType = r.getValueAsString(); break;
+                    case "version": c.version = r.getValueAsInteger(); break;
+                    case "name": c.name = r.getValueAsString(); break;
+                    case "size": c.size = r.getValueAsLong(); break;
+                    case "body": {
+                        if(c instanceof Text)
+                            c.body = r.getValueAsString().getBytes();
+                        else
+                            c.body = c.base64DecodeBody(r.getValueAsString());
+                        break;
+                    }
+                    case "bodyEncoding": c.bodyEncoding = r.getValueAsString(); break;
+                    case "bodyBase64Encoded": c.bodyBase64Encoded = r.getValueAsBoolean(); break;
+                    case "createdAt": c.createdAt = r.getValueAsLong(); break;
+                    case "hashAlgorithm": c.hashAlgorithm = Hash.Algorithm.value(r.getValueAsString()); break;
+                    case "hash": hash = r.getValueAsString(); break;
+                    case "fingerprintAlgorithm": c.fingerprintAlgorithm = Hash.Algorithm.value(r.getValueAsString()); break;
+                    case "fingerprint": fingerprint = r.getValueAsString(); break;
+                    case "children": {
+                        // the concrete class is only known from each child's type member
+                        for(Object o : (List<Object>)r.readValue()) {
+                            try {
+                                c.children.add(newInstance((Map<String,Object>)o));
+                            } catch (Exception e) {
+                                c.LOG.warning(e.getMessage());
+                            }
+                        }
+                        break;
+                    }
+                    case "authorAlias": c.authorAlias = r.getValueAsString(); break;
+                    case "authorAddress": c.authorAddress = r.getValueAsString(); break;
+                    case "encrypted": c.encrypted = r.getValueAsBoolean(); break;
+                    case "encryptionAlgorithm": c.encryptionAlgorithm = EncryptionAlgorithm.value(r.getValueAsString()); break;
+                    case "encryptionPassphrase": c.encryptionPassphrase = r.getValueAsString(); break;
+                    case "encryptionPassphraseEncrypted": c.encryptionPassphraseEncrypted = r.getValueAsBoolean(); break;
+                    case "encryptionPassphraseAlgorithm": c.encryptionPassphraseAlgorithm = EncryptionAlgorithm.value(r.getValueAsString()); break;
+                    case "base64EncodedIV": c.base64EncodedIV = r.getValueAsString(); break;
+                    case "keywords": {
+                        if(r.currentToken()==JSONReader.Token.VALUE_STRING)
+                            c.keywords = (List<String>)JSONParser.parse(r.getText());
+                        else
+                            c.keywords = (List<String>)r.readValue();
+                        break;
+                    }
+                    case "readable": c.readable = r.getValueAsBoolean(); break;
+                    case "writeable": c.writeable = r.getValueAsBoolean(); break;
+                    default: r.skipChildren();
+                }
+            }
+            if(hash!=null) c.hash = new Hash(hash, c.hashAlgorithm);
+            if(fingerprint!=null) c.fingerprint = new Hash(fingerprint, c.fingerprintAlgorithm);
+        }
     }
 
 }
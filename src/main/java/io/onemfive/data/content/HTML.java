@@ -13,4 +13,8 @@ public class HTML extends Text {
     public HTML(byte[] body, String name, boolean generateHash, boolean generateFingerprint) {
         super(body, "text/html", name, generateHash, generateFingerprint);
     }
+
+    public HTML(ChunkedBody body, String name, boolean generateHash, boolean generateFingerprint) {
+        super(body, "text/html", name, generateHash, generateFingerprint);
+    }
 }
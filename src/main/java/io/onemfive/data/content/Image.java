@@ -17,4 +17,8 @@ public class Image extends Binary {
     public Image(byte[] body, String contentType, String name, boolean generateHash, boolean generateFingerprint) {
         super(body, contentType, name, generateHash, generateFingerprint);
     }
+
+    public Image(ChunkedBody body, String contentType, String name, boolean generateHash, boolean generateFingerprint) {
+        super(body, contentType, name, generateHash, generateFingerprint);
+    }
 }
@@ -18,4 +18,8 @@ public class JSON extends Text {
     public JSON(byte[] body, String name, boolean generateHash, boolean generateFingerprint) {
         super(body, "application/json", name, generateHash, generateFingerprint);
     }
+
+    public JSON(ChunkedBody body, String name, boolean generateHash, boolean generateFingerprint) {
+        super(body, "application/json", name, generateHash, generateFingerprint);
+    }
 }
@@ -21,4 +21,12 @@ public class Text extends Content {
     protected Text(byte[] body, String contentType, String name, boolean generateHash, boolean generateFingerprint) {
         super(body, contentType, name, generateHash, generateFingerprint);
     }
+
+    public Text(ChunkedBody body, String name, boolean generateHash, boolean generateFingerprint) {
+        super(body, "text/plain", name, generateHash, generateFingerprint);
+    }
+
+    protected Text(ChunkedBody body, String contentType, String name, boolean generateHash, boolean generateFingerprint) {
+        super(body, contentType, name, generateHash, generateFingerprint);
+    }
 }
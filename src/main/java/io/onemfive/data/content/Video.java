@@ -12,4 +12,8 @@ public class Video extends Binary {
     public Video(byte[] body, String contentType, String name, boolean generateHash, boolean generateFingerprint) {
         super(body, contentType, name, generateHash, generateFingerprint);
     }
+
+    public Video(ChunkedBody body, String contentType, String name, boolean generateHash, boolean generateFingerprint) {
+        super(body, contentType, name, generateHash, generateFingerprint);
+    }
 }
@@ -1,10 +1,22 @@
 package io.onemfive.data.route;
 
 import io.onemfive.data.route.Route;
-
+import io.onemfive.data.util.BinaryCodec;
+import io.onemfive.data.util.BinaryCodecs;
+import io.onemfive.data.util.BinaryReader;
+import io.onemfive.data.util.BinaryWriter;
+import io.onemfive.data.util.IdGenerator;
+import io.onemfive.data.util.JSONCodec;
+import io.onemfive.data.util.JSONCodecs;
+import io.onemfive.data.util.JSONReader;
+import io.onemfive.data.util.JSONWriter;
+
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
-import java.util.Random;
 
 /**
  * TODO: Add Description
@@ -13,11 +25,16 @@ import java.util.Random;
  */
 public abstract class BaseRoute implements Route {
 
+    static {
+        JSONCodecs.register(new Codec(), SimpleRoute.class, SimpleExternalRoute.class, DynamicRoutingSlip.class);
+        BinaryCodecs.register(new Wire(), SimpleRoute.class, SimpleExternalRoute.class, DynamicRoutingSlip.class);
+    }
+
 //    protected Envelope envelope;
     protected String service;
     protected String operation;
     protected Boolean routed = false;
-    protected Long routeId = new Random(System.currentTimeMillis()).nextLong();
+    protected Long routeId = IdGenerator.nextId();
 
 //    @Override
 //    public Route setEnvelope(Envelope envelope) {
@@ -78,7 +95,125 @@ public abstract class BaseRoute implements Route {
     public void fromMap(Map<String, Object> m) {
         if(m.get("service")!=null) service = (String)m.get("service");
         if(m.get("operation")!=null) operation = (String)m.get("operation");
-        if(m.get("routed")!=null) routed = Boolean.parseBoolean((String)m.get("routed"));
-        if(m.get("routedId")!=null) routeId = Long.parseLong((String)m.get("routeId"));
+        if(m.get("routed")!=null) routed = Boolean.parseBoolean(String.valueOf(m.get("routed")));
+        if(m.get("routeId")!=null) routeId = Long.parseLong(String.valueOf(m.get("routeId")));
+    }
+
+    /**
+     * Same members as toMap()/fromMap() for the routes in this package; only
+     * DynamicRoutingSlip adds members of its own.
+     */
+    private static final class Codec implements JSONCodec<BaseRoute> {
+
+        @Override
+        public void write(BaseRoute route, JSONWriter w) throws IOException {
+            w.startObject();
+            if(route.service!=null) w.writeName("service").writeString(route.service);
+            if(route.operation!=null) w.writeName("operation").writeString(route.operation);
+            if(route.routed!=null) w.writeName("routed").writeBoolean(route.routed);
+            if(route.routeId!=null) w.writeName("routeId").writeNumber(route.routeId);
+            w.writeName("type").writeString(route.getClass().getName());
+            if(route instanceof DynamicRoutingSlip) {
+                DynamicRoutingSlip slip = (DynamicRoutingSlip)route;
+                if(slip.inProgress()!=null) w.writeName("inProgress").writeBoolean(slip.inProgress());
+                if(slip.numberRemainingRoutes() > 0) w.writeName("routes").writeValue(slip.routeMaps());
+            }
+            w.endObject();
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public void read(JSONReader r, BaseRoute route) {
+            while(r.nextToken()==JSONReader.Token.FIELD_NAME) {
+                String name = r.getText();
+                if(r.nextToken()==JSONReader.Token.VALUE_NULL) continue;
+                switch(name) {
+                    case "service": route.service = r.getValueAsString(); break;
+                    case "operation": route.operation = r.getValueAsString(); break;
+                    case "routed": route.routed = r.getValueAsBoolean(); break;
+                    case "routeId": route.routeId = r.getValueAsLong(); break;
+                    case "inProgress": {
+                        boolean inProgress = r.getValueAsBoolean();
+                        if(route instanceof DynamicRoutingSlip)
+                            ((DynamicRoutingSlip)route).setInProgress(inProgress);
+                        break;
+                    }
+                    case "routes": {
+                        Object routes = r.readValue();
+                        if(route instanceof DynamicRoutingSlip)
+                            ((DynamicRoutingSlip)route).setRouteMaps((List<Map<String,Object>>)routes);
+                        break;
+                    }
+                    default: r.skipChildren();
+                }
+            }
+        }
+    }
+
+    /**
+     * Binary fields of the routes in this package, including the remaining
+     * routes of a DynamicRoutingSlip. Public only so that EnvelopeView can
+     * find the next route of a slip without decoding it.
+     */
+    public static final class Wire implements BinaryCodec<BaseRoute> {
+
+        private static final int SERVICE = 1;
+        private static final int OPERATION = 2;
+        private static final int ROUTED = 3;
+        private static final int ROUTE_ID = 4;
+        private static final int IN_PROGRESS = 5;
+        /** remaining routes of a slip, next route first */
+        public static final int ROUTE = 6;
+
+        private Wire() {}
+
+        @Override
+        public void write(BaseRoute route, BinaryWriter w) {
+            w.writeStringField(SERVICE, route.service);
+            w.writeStringField(OPERATION, route.operation);
+            w.writeBooleanField(ROUTED, route.routed);
+            w.writeFixed64Field(ROUTE_ID, route.routeId);
+            if(route instanceof DynamicRoutingSlip) {
+                DynamicRoutingSlip slip = (DynamicRoutingSlip)route;
+                w.writeBooleanField(IN_PROGRESS, slip.inProgress());
+                if(slip.routes!=null) {
+                    Iterator<Route> i = slip.routes.getIterator();
+                    while(i.hasNext())
+                        w.writeTypedField(ROUTE, i.next());
+                }
+            }
+        }
+
+        @Override
+        public void read(BinaryReader r, BaseRoute route) {
+            List<Route> routes = null;
+            int tag;
+            while((tag = r.readTag()) != 0) {
+                switch(BinaryReader.field(tag)) {
+                    case SERVICE: route.service = r.readString(); break;
+                    case OPERATION: route.operation = r.readString(); break;
+                    case ROUTED: route.routed = r.readBoolean(); break;
+                    case ROUTE_ID: route.routeId = r.readFixed64(); break;
+                    case IN_PROGRESS: {
+                        boolean inProgress = r.readBoolean();
+                        if(route instanceof DynamicRoutingSlip)
+                            ((DynamicRoutingSlip)route).setInProgress(inProgress);
+                        break;
+                    }
+                    case ROUTE: {
+                        if(routes==null) routes = new ArrayList<>();
+                        routes.add(r.readTyped(Route.class));
+                        break;
+                    }
+                    default: r.skip(tag);
+                }
+            }
+            if(routes!=null && route instanceof DynamicRoutingSlip) {
+                // pushed bottom up so the next route ends up on top again
+                DynamicRoutingSlip slip = (DynamicRoutingSlip)route;
+                for(int i = routes.size() - 1; i >= 0; i--)
+                    slip.routes.push(routes.get(i));
+            }
+        }
     }
 }
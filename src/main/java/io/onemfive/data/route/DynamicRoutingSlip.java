@@ -1,10 +1,13 @@
 package io.onemfive.data.route;
 
-import io.onemfive.data.util.DequeStack;
-import io.onemfive.data.util.Stack;
+import io.onemfive.data.util.IdGenerator;
+import io.onemfive.data.util.PersistentStack;
 
+import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
+import java.util.logging.Logger;
 
 /**
  * TODO: Add Description
@@ -13,11 +16,29 @@ import java.util.Map;
  */
 public final class DynamicRoutingSlip extends BaseRoute implements RoutingSlip {
 
-    protected Stack<Route> routes = new DequeStack<>();
+    private static final Logger LOG = Logger.getLogger(DynamicRoutingSlip.class.getName());
+
+    protected PersistentStack<Route> routes = new PersistentStack<>();
     private Boolean inProgress = false;
 
     public DynamicRoutingSlip() {}
 
+    /**
+     * O(1) copy for fan-out: the remaining routes are shared, and routes
+     * added or taken on either slip afterwards do not show on the other.
+     * The Route objects themselves are shared, not copied.
+     */
+    public DynamicRoutingSlip copy() {
+        DynamicRoutingSlip slip = new DynamicRoutingSlip();
+        slip.routeId = routeId;
+        slip.service = service;
+        slip.operation = operation;
+        slip.routed = routed;
+        slip.inProgress = inProgress;
+        slip.routes = routes.copy();
+        return slip;
+    }
+
     @Override
     public Integer numberRemainingRoutes() {
         return routes.numberRemainingRoutes();
@@ -53,24 +74,65 @@ public final class DynamicRoutingSlip extends BaseRoute implements RoutingSlip {
         return true;
     }
 
+    /**
+     * Drop all remaining routes and start over under a new route id, for reuse.
+     */
+    public void clear() {
+        routes.clear();
+        inProgress = false;
+        routed = false;
+        routeId = IdGenerator.nextId();
+    }
+
     @Override
     public Map<String, Object> toMap() {
         Map<String,Object> m = super.toMap();
-        if(routes!=null) {
-            StringBuffer sb = new StringBuffer();
-            Iterator<Route> i = routes.getIterator();
-            Route r;
-            while(i.hasNext()) {
-                r = i.next();
-
-            }
-        }
+        if(inProgress!=null) m.put("inProgress", inProgress);
+        if(routes!=null && routes.numberRemainingRoutes() > 0) m.put("routes", routeMaps());
         return m;
     }
 
     @Override
+    @SuppressWarnings("unchecked")
     public void fromMap(Map<String, Object> m) {
         super.fromMap(m);
+        if(m.get("inProgress")!=null) inProgress = Boolean.parseBoolean(String.valueOf(m.get("inProgress")));
+        if(m.get("routes")!=null) setRouteMaps((List<Map<String,Object>>)m.get("routes"));
+    }
+
+    /**
+     * @return the remaining routes as maps, next route first
+     */
+    List<Map<String,Object>> routeMaps() {
+        List<Map<String,Object>> l = new ArrayList<>();
+        Iterator<Route> i = routes.getIterator();
+        while(i.hasNext())
+            l.add(i.next().toMap());
+        return l;
+    }
 
+    /**
+     * Replace the remaining routes with those mapped by routeMaps(), each
+     * rebuilt as the Route class named by its type member.
+     */
+    void setRouteMaps(List<Map<String,Object>> l) {
+        routes = new PersistentStack<>();
+        // pushed bottom up so the next route ends up on top again
+        for(int i = l.size() - 1; i >= 0; i--) {
+            Map<String,Object> rm = l.get(i);
+            String type = (String)rm.get("type");
+            try {
+                Class<?> c = Class.forName(type, false, Route.class.getClassLoader());
+                if(!Route.class.isAssignableFrom(c)) {
+                    LOG.warning(type + " is not a Route");
+                    continue;
+                }
+                Route r = (Route)c.getConstructor().newInstance();
+                r.fromMap(rm);
+                routes.push(r);
+            } catch (ReflectiveOperationException | LinkageError | NullPointerException e) {
+                LOG.warning("Unable to reconstruct route of type " + type + ": " + e.getLocalizedMessage());
+            }
+        }
     }
 }
@@ -0,0 +1,20 @@
+package io.onemfive.data.util;
+
+/**
+ * Reads and writes the fields of one type in the {@link BinaryWriter}
+ * encoding; registered per concrete class with {@link BinaryCodecs}.
+ *
+ * @author objectorange
+ */
+public interface BinaryCodec<T> {
+
+    /**
+     * Write the fields of obj; the enclosing length prefix is handled by the caller.
+     */
+    void write(T obj, BinaryWriter w);
+
+    /**
+     * Read fields into obj until readTag() returns 0, skipping unknown ones.
+     */
+    void read(BinaryReader r, T obj);
+}
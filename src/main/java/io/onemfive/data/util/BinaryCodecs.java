@@ -0,0 +1,138 @@
+package io.onemfive.data.util;
+
+import io.onemfive.data.JSONSerializable;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Registry of {@link BinaryCodec}s by exact class, and framing of top level
+ * objects.
+ *
+ * A frame is a magic byte, a format version byte and the varint length of
+ * the body, so frames can be streamed back to back and a relay can step
+ * over one without decoding it. Like {@link JSONCodecs}, lookups are by
+ * exact class and run the class's static initializer on first use.
+ *
+ * @author objectorange
+ */
+public final class BinaryCodecs {
+
+    public static final int MAGIC = 0xB1;
+    public static final int VERSION = 1;
+
+    private static final Object NONE = new Object();
+
+    // a codec, or NONE once a class was looked up without one
+    private static final Map<Class<?>,Object> codecs = new ConcurrentHashMap<>();
+    // JSONSerializable classes without a codec that typed values may still instantiate
+    private static final Set<Class<?>> typed = ConcurrentHashMap.newKeySet();
+
+    private BinaryCodecs() {}
+
+    public static void register(BinaryCodec<?> codec, Class<?>... types) {
+        for (Class<?> type : types)
+            codecs.put(type, codec);
+    }
+
+    /**
+     * @return the codec registered for exactly this class or null if it has none
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> BinaryCodec<T> get(Class<?> type) {
+        Object codec = codecs.get(type);
+        if (codec == null) {
+            try {
+                Class.forName(type.getName(), true, type.getClassLoader());
+            } catch (ClassNotFoundException | LinkageError e) {
+                // not loadable by name, nothing registered for it then
+            }
+            codec = codecs.putIfAbsent(type, NONE);
+            if (codec == null)
+                codec = NONE;
+        }
+        return codec == NONE ? null : (BinaryCodec<T>) codec;
+    }
+
+    /**
+     * Let typed values written with {@link BinaryWriter#writeValue(Object)}
+     * be read back as these classes though they have no codec.
+     */
+    @SafeVarargs
+    public static void allowTyped(Class<? extends JSONSerializable>... types) {
+        Collections.addAll(typed, types);
+    }
+
+    /**
+     * @return true if a typed value may be read back as exactly this class:
+     * it has a codec or was passed to allowTyped
+     */
+    public static boolean isTyped(Class<?> type) {
+        return get(type) != null || typed.contains(type);
+    }
+
+    /**
+     * @throws IllegalArgumentException when the class has no codec, as dropping it would lose data
+     */
+    public static <T> BinaryCodec<T> require(Class<?> type) {
+        BinaryCodec<T> codec = get(type);
+        if (codec == null)
+            throw new IllegalArgumentException("No binary codec for " + type.getName());
+        return codec;
+    }
+
+    /**
+     * @return obj as one frame
+     */
+    public static byte[] encode(Object obj) {
+        BinaryWriter w = new BinaryWriter();
+        encode(obj, w);
+        return w.toByteArray();
+    }
+
+    public static void encode(Object obj, OutputStream out) throws IOException {
+        BinaryWriter w = new BinaryWriter();
+        encode(obj, w);
+        w.writeTo(out);
+    }
+
+    /**
+     * Append obj as one frame to the writer.
+     */
+    public static void encode(Object obj, BinaryWriter w) {
+        BinaryCodec<Object> codec = require(obj.getClass());
+        w.writeByte(MAGIC).writeByte(VERSION);
+        int mark = w.startLength();
+        codec.write(obj, w);
+        w.endMessage(mark);
+    }
+
+    public static <T> T decode(byte[] frame, T target) {
+        return decode(ByteBuffer.wrap(frame), target);
+    }
+
+    /**
+     * Read one frame into target, leaving the buffer positioned after it.
+     */
+    public static <T> T decode(ByteBuffer in, T target) {
+        BinaryReader r = new BinaryReader(in);
+        readHeader(r);
+        return r.readMessage(target);
+    }
+
+    /**
+     * Check the magic and version bytes, leaving the reader on the body length.
+     */
+    public static void readHeader(BinaryReader r) {
+        if (r.readByte() != MAGIC)
+            throw new IllegalStateException("Not a binary frame");
+        int version = r.readByte();
+        if (version != VERSION)
+            throw new IllegalStateException("Unsupported binary frame version " + version);
+    }
+}
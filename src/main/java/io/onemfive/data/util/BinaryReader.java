@@ -0,0 +1,319 @@
+package io.onemfive.data.util;
+
+import io.onemfive.data.JSONSerializable;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reads the encoding written by {@link BinaryWriter} from a ByteBuffer.
+ *
+ * Typical use:
+ * <pre>
+ *     int tag;
+ *     while((tag = r.readTag()) != 0) {
+ *         switch(BinaryReader.field(tag)) {
+ *             case 1: id = r.readFixed64(); break;
+ *             case 2: name = r.readString(); break;
+ *             default: r.skip(tag);
+ *         }
+ *     }
+ * </pre>
+ * Nested messages are read between enter() and exit(limit), within which
+ * readTag() reports the end of the nested message as the end of input.
+ *
+ * @author objectorange
+ */
+public class BinaryReader {
+
+    private final ByteBuffer in;
+
+    /**
+     * @param in read from its position up to its limit; reading advances the position
+     */
+    public BinaryReader(ByteBuffer in) {
+        this.in = in;
+    }
+
+    public BinaryReader(byte[] data) {
+        this(ByteBuffer.wrap(data));
+    }
+
+    public static int field(int tag) {
+        return tag >>> 3;
+    }
+
+    public static int wireType(int tag) {
+        return tag & 7;
+    }
+
+    public ByteBuffer getBuffer() {
+        return in;
+    }
+
+    /**
+     * @return the next field's tag or 0 at the end of the input or current nested message
+     */
+    public int readTag() {
+        if (!in.hasRemaining())
+            return 0;
+        long tag = Protocol.readVarint(in);
+        if (tag == 0 || tag > Integer.MAX_VALUE)
+            throw new IllegalStateException("Invalid tag " + tag + " at " + in.position());
+        return (int) tag;
+    }
+
+    public long readUvarint() {
+        return Protocol.readVarint(in);
+    }
+
+    public long readVarint() {
+        long v = Protocol.readVarint(in);
+        return (v >>> 1) ^ -(v & 1);
+    }
+
+    public long readFixed64() {
+        need(8);
+        long v = 0;
+        for (int i = 0; i < 8; i++)
+            v |= (in.get() & 0xFFL) << (8 * i);
+        return v;
+    }
+
+    public int readByte() {
+        need(1);
+        return in.get() & 0xFF;
+    }
+
+    public boolean readBoolean() {
+        return Protocol.readVarint(in) != 0;
+    }
+
+    public int readEnum() {
+        return (int) Protocol.readVarint(in);
+    }
+
+    /**
+     * @param values of the enum, e.g. X.values()
+     * @return the constant with the ordinal read, or null if values has no such
+     * ordinal, e.g. one added by a newer version of the enum
+     */
+    public <E extends Enum<E>> E readEnum(E[] values) {
+        long ordinal = Protocol.readVarint(in);
+        return ordinal >= 0 && ordinal < values.length ? values[(int) ordinal] : null;
+    }
+
+    public byte[] readBytes() {
+        byte[] b = new byte[readLength()];
+        in.get(b);
+        return b;
+    }
+
+    public String readString() {
+        int len = readLength();
+        String s;
+        if (in.hasArray()) {
+            s = new String(in.array(), in.arrayOffset() + in.position(), len, StandardCharsets.UTF_8);
+            in.position(in.position() + len);
+        } else {
+            byte[] b = new byte[len];
+            in.get(b);
+            s = new String(b, StandardCharsets.UTF_8);
+        }
+        return s;
+    }
+
+    /**
+     * Step into the nested message of a LENGTH field.
+     *
+     * @return the limit to restore with exit() once the nested message is read
+     */
+    public int enter() {
+        int len = readLength();
+        int limit = in.limit();
+        in.limit(in.position() + len);
+        return limit;
+    }
+
+    /**
+     * Step out of the nested message, skipping whatever was left unread in it.
+     */
+    public void exit(int limit) {
+        in.position(in.limit());
+        in.limit(limit);
+    }
+
+    /**
+     * Read a nested message into target with the {@link BinaryCodec} registered for its class.
+     */
+    public <T> T readMessage(T target) {
+        BinaryCodec<T> codec = BinaryCodecs.require(target.getClass());
+        int limit = enter();
+        codec.read(this, target);
+        exit(limit);
+        return target;
+    }
+
+    /**
+     * Read a field written with writeTypedField into a new instance of the
+     * class it names. Only subclasses of expected that have a registered
+     * {@link BinaryCodec} are accepted; the class named on the wire is
+     * checked before it is initialized or instantiated.
+     *
+     * @return the instance, or null if the field names no class
+     */
+    public <T> T readTyped(Class<T> expected) {
+        int limit = enter();
+        T obj = null;
+        int tag;
+        while ((tag = readTag()) != 0) {
+            if (field(tag) == 1) {
+                obj = newInstance(expected, readString());
+            } else if (field(tag) == 2 && obj != null) {
+                readMessage(obj);
+            } else {
+                skip(tag);
+            }
+        }
+        exit(limit);
+        return obj;
+    }
+
+    private static <T> T newInstance(Class<T> expected, String type) {
+        Class<?> cls;
+        try {
+            cls = Class.forName(type, false, expected.getClassLoader());
+        } catch (ClassNotFoundException | LinkageError e) {
+            throw new IllegalStateException("Unknown type " + type, e);
+        }
+        if (!expected.isAssignableFrom(cls))
+            throw new IllegalStateException("Type " + type + " is not a " + expected.getName());
+        if (BinaryCodecs.get(cls) == null)
+            throw new IllegalStateException("No binary codec for " + type);
+        try {
+            return expected.cast(cls.getConstructor().newInstance());
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Unable to instantiate " + type, e);
+        }
+    }
+
+    /**
+     * Skip over the value of a field that is not known.
+     */
+    public void skip(int tag) {
+        switch (wireType(tag)) {
+            case BinaryWriter.VARINT: Protocol.readVarint(in); break;
+            case BinaryWriter.FIXED64: need(8); in.position(in.position() + 8); break;
+            case BinaryWriter.LENGTH: {
+                int len = readLength();
+                in.position(in.position() + len);
+                break;
+            }
+            default: throw new IllegalStateException("Unknown wire type " + wireType(tag) + " at " + in.position());
+        }
+    }
+
+    /**
+     * @return the self-describing value of a field written with writeValueField
+     */
+    public Object readValueField() {
+        int limit = enter();
+        Object v = readValue();
+        exit(limit);
+        return v;
+    }
+
+    /**
+     * @return a self-describing value as written by BinaryWriter.writeValue
+     */
+    public Object readValue() {
+        need(1);
+        byte type = in.get();
+        switch (type) {
+            case BinaryWriter.V_NULL: return null;
+            case BinaryWriter.V_FALSE: return Boolean.FALSE;
+            case BinaryWriter.V_TRUE: return Boolean.TRUE;
+            case BinaryWriter.V_INT: return (int) readVarint();
+            case BinaryWriter.V_LONG: return readVarint();
+            case BinaryWriter.V_DOUBLE: return Double.longBitsToDouble(readFixed64());
+            case BinaryWriter.V_FLOAT: return Float.intBitsToFloat((int) readUvarint());
+            case BinaryWriter.V_STRING: return readString();
+            case BinaryWriter.V_BYTES: return readBytes();
+            case BinaryWriter.V_BIG_INTEGER: return new BigInteger(readString());
+            case BinaryWriter.V_BIG_DECIMAL: return new BigDecimal(readString());
+            case BinaryWriter.V_LIST: {
+                int n = readCount();
+                List<Object> l = new ArrayList<>(n);
+                for (int i = 0; i < n; i++)
+                    l.add(readValue());
+                return l;
+            }
+            case BinaryWriter.V_MAP: {
+                int n = readCount();
+                Map<String,Object> m = new HashMap<>(n * 4 / 3 + 1);
+                for (int i = 0; i < n; i++) {
+                    String k = readString();
+                    m.put(k, readValue());
+                }
+                return m;
+            }
+            case BinaryWriter.V_TYPED: {
+                String name = readString();
+                return typed(name, readValue());
+            }
+            default: throw new IllegalStateException("Unknown value type " + type + " at " + (in.position() - 1));
+        }
+    }
+
+    /**
+     * @return a new instance of the JSONSerializable class name filled from value,
+     * or value itself if that class is not known here, has neither a binary codec
+     * nor {@link BinaryCodecs#allowTyped}, or has no public no-arg constructor
+     */
+    @SuppressWarnings("unchecked")
+    private static Object typed(String name, Object value) {
+        if (!(value instanceof Map))
+            return value;
+        Class<?> cls;
+        try {
+            cls = Class.forName(name, false, JSONSerializable.class.getClassLoader());
+        } catch (ClassNotFoundException | LinkageError e) {
+            return value;
+        }
+        if (!JSONSerializable.class.isAssignableFrom(cls) || !BinaryCodecs.isTyped(cls))
+            return value;
+        JSONSerializable obj;
+        try {
+            obj = (JSONSerializable) cls.getConstructor().newInstance();
+        } catch (ReflectiveOperationException e) {
+            return value;
+        }
+        obj.fromMap((Map<String,Object>) value);
+        return obj;
+    }
+
+    private int readLength() {
+        long len = Protocol.readVarint(in);
+        if (len < 0 || len > in.remaining())
+            throw new IllegalStateException("Length " + len + " exceeds input at " + in.position());
+        return (int) len;
+    }
+
+    /**
+     * @return an element count, each element taking at least one byte
+     */
+    private int readCount() {
+        return readLength();
+    }
+
+    private void need(int n) {
+        if (in.remaining() < n)
+            throw new IllegalStateException("Truncated input at " + in.position());
+    }
+}
@@ -0,0 +1,341 @@
+package io.onemfive.data.util;
+
+import io.onemfive.data.JSONSerializable;
+import io.onemfive.data.content.Content;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * Writes the tagged, length-prefixed binary encoding read back by {@link BinaryReader}.
+ *
+ * A message is a sequence of fields, each a varint tag of (field number
+ * &lt;&lt; 3 | wire type) followed by its value:
+ * <ul>
+ *     <li>{@link #VARINT}: unsigned varint; signed values are zigzag encoded</li>
+ *     <li>{@link #FIXED64}: eight bytes little endian, used for random ids and doubles</li>
+ *     <li>{@link #LENGTH}: varint length followed by that many bytes; strings, byte[],
+ *     nested messages and self-describing values</li>
+ * </ul>
+ * Readers skip fields they do not know, so fields can be added without
+ * breaking older peers. Varints are written with {@link Protocol#putUvarint}.
+ *
+ * Self-describing values (see writeValue) carry a type byte ahead of the
+ * value and cover the Map/List graphs found in headers and message data.
+ *
+ * @author objectorange
+ */
+public class BinaryWriter {
+
+    public static final int VARINT = 0;
+    public static final int FIXED64 = 1;
+    public static final int LENGTH = 2;
+
+    // Type bytes of self-describing values
+    static final byte V_NULL = 0;
+    static final byte V_FALSE = 1;
+    static final byte V_TRUE = 2;
+    static final byte V_INT = 3;
+    static final byte V_LONG = 4;
+    static final byte V_DOUBLE = 5;
+    static final byte V_FLOAT = 6;
+    static final byte V_STRING = 7;
+    static final byte V_BYTES = 8;
+    static final byte V_LIST = 9;
+    static final byte V_MAP = 10;
+    static final byte V_BIG_INTEGER = 11;
+    static final byte V_BIG_DECIMAL = 12;
+    static final byte V_TYPED = 13;
+
+    private byte[] buf;
+    private int count = 0;
+
+    public BinaryWriter() {
+        this(256);
+    }
+
+    public BinaryWriter(int capacity) {
+        buf = new byte[capacity];
+    }
+
+    /**
+     * @return bytes written so far
+     */
+    public int size() {
+        return count;
+    }
+
+    public byte[] toByteArray() {
+        return Arrays.copyOf(buf, count);
+    }
+
+    public void writeTo(OutputStream out) throws IOException {
+        out.write(buf, 0, count);
+    }
+
+    public void reset() {
+        count = 0;
+    }
+
+    public BinaryWriter writeByte(int b) {
+        ensure(1);
+        buf[count++] = (byte) b;
+        return this;
+    }
+
+    public BinaryWriter writeTag(int field, int wireType) {
+        return writeUvarint((long) field << 3 | wireType);
+    }
+
+    public BinaryWriter writeUvarint(long v) {
+        ensure(10);
+        count += Protocol.putUvarint(buf, count, v);
+        return this;
+    }
+
+    /**
+     * Zigzag encode so small negative values stay small.
+     */
+    public BinaryWriter writeVarint(long v) {
+        return writeUvarint((v << 1) ^ (v >> 63));
+    }
+
+    public BinaryWriter writeFixed64(long v) {
+        ensure(8);
+        for (int i = 0; i < 8; i++) {
+            buf[count++] = (byte) v;
+            v >>>= 8;
+        }
+        return this;
+    }
+
+    public BinaryWriter writeBytes(byte[] b) {
+        writeUvarint(b.length);
+        ensure(b.length);
+        System.arraycopy(b, 0, buf, count, b.length);
+        count += b.length;
+        return this;
+    }
+
+    /**
+     * Length-prefixed UTF-8, encoded straight into the buffer.
+     */
+    public BinaryWriter writeString(String s) {
+        int len = s.length();
+        // reserve the prefix for the common all-ASCII case and fix it up after
+        int prefix = Protocol.uvarintSize(len);
+        ensure(prefix + len * 3);
+        int start = count + prefix;
+        int p = start;
+        for (int i = 0; i < len; i++) {
+            char c = s.charAt(i);
+            if (c < 0x80) {
+                buf[p++] = (byte) c;
+            } else if (c < 0x800) {
+                buf[p++] = (byte) (0xC0 | (c >> 6));
+                buf[p++] = (byte) (0x80 | (c & 0x3F));
+            } else if (Character.isHighSurrogate(c) && i + 1 < len && Character.isLowSurrogate(s.charAt(i + 1))) {
+                int cp = Character.toCodePoint(c, s.charAt(++i));
+                buf[p++] = (byte) (0xF0 | (cp >> 18));
+                buf[p++] = (byte) (0x80 | ((cp >> 12) & 0x3F));
+                buf[p++] = (byte) (0x80 | ((cp >> 6) & 0x3F));
+                buf[p++] = (byte) (0x80 | (cp & 0x3F));
+            } else if (Character.isSurrogate(c)) {
+                buf[p++] = (byte) '?';
+            } else {
+                buf[p++] = (byte) (0xE0 | (c >> 12));
+                buf[p++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                buf[p++] = (byte) (0x80 | (c & 0x3F));
+            }
+        }
+        finishLength(count, start, p);
+        return this;
+    }
+
+    public BinaryWriter writeStringField(int field, String s) {
+        if (s != null)
+            writeTag(field, LENGTH).writeString(s);
+        return this;
+    }
+
+    public BinaryWriter writeBytesField(int field, byte[] b) {
+        if (b != null)
+            writeTag(field, LENGTH).writeBytes(b);
+        return this;
+    }
+
+    public BinaryWriter writeBooleanField(int field, Boolean b) {
+        if (b != null)
+            writeTag(field, VARINT).writeUvarint(b ? 1 : 0);
+        return this;
+    }
+
+    /**
+     * Zigzag varint, for counters and small signed values.
+     */
+    public BinaryWriter writeVarintField(int field, Number n) {
+        if (n != null)
+            writeTag(field, VARINT).writeVarint(n.longValue());
+        return this;
+    }
+
+    /**
+     * Eight bytes, for random 64 bit ids that a varint would only make longer.
+     */
+    public BinaryWriter writeFixed64Field(int field, Long n) {
+        if (n != null)
+            writeTag(field, FIXED64).writeFixed64(n);
+        return this;
+    }
+
+    /**
+     * Enums go by ordinal, so constants must only ever be appended.
+     */
+    public BinaryWriter writeEnumField(int field, Enum<?> e) {
+        if (e != null)
+            writeTag(field, VARINT).writeUvarint(e.ordinal());
+        return this;
+    }
+
+    /**
+     * Write obj as a nested message with the {@link BinaryCodec} registered for its class.
+     */
+    public BinaryWriter writeMessageField(int field, Object obj) {
+        if (obj != null) {
+            BinaryCodec<Object> codec = BinaryCodecs.require(obj.getClass());
+            int mark = startMessage(field);
+            codec.write(obj, this);
+            endMessage(mark);
+        }
+        return this;
+    }
+
+    /**
+     * Write obj as a nested message carrying its class name (field 1) ahead of
+     * its codec's fields (field 2), for fields declared as an interface.
+     */
+    public BinaryWriter writeTypedField(int field, Object obj) {
+        if (obj != null) {
+            int mark = startMessage(field);
+            writeStringField(1, obj.getClass().getName());
+            writeMessageField(2, obj);
+            endMessage(mark);
+        }
+        return this;
+    }
+
+    public BinaryWriter writeValueField(int field, Object v) {
+        if (v != null) {
+            int mark = startMessage(field);
+            writeValue(v);
+            endMessage(mark);
+        }
+        return this;
+    }
+
+    /**
+     * Start a nested message; fields written until endMessage(mark) make up its body.
+     *
+     * @return mark to hand to endMessage
+     */
+    public int startMessage(int field) {
+        writeTag(field, LENGTH);
+        return startLength();
+    }
+
+    /**
+     * Start a length-prefixed run of bytes ended by endMessage(mark).
+     */
+    public int startLength() {
+        ensure(1);
+        // one byte is reserved for the length, which is moved along if it needs more
+        return count++;
+    }
+
+    public BinaryWriter endMessage(int mark) {
+        finishLength(mark, mark + 1, count);
+        return this;
+    }
+
+    /**
+     * Write a self-describing value: null, Boolean, Number, String, byte[],
+     * Map, Collection, Object[] or a JSONSerializable as its class name and
+     * toMap(), Content with its body as raw bytes. Anything else is written as
+     * its toString(), so e.g. an Exception reads back as a String.
+     */
+    public BinaryWriter writeValue(Object v) {
+        if (v == null) {
+            writeType(V_NULL);
+        } else if (v instanceof String) {
+            writeType(V_STRING).writeString((String) v);
+        } else if (v instanceof Boolean) {
+            writeType((Boolean) v ? V_TRUE : V_FALSE);
+        } else if (v instanceof Integer || v instanceof Short || v instanceof Byte) {
+            writeType(V_INT).writeVarint(((Number) v).longValue());
+        } else if (v instanceof Long) {
+            writeType(V_LONG).writeVarint((Long) v);
+        } else if (v instanceof Double) {
+            writeType(V_DOUBLE).writeFixed64(Double.doubleToRawLongBits((Double) v));
+        } else if (v instanceof Float) {
+            writeType(V_FLOAT).writeUvarint(Float.floatToRawIntBits((Float) v) & 0xFFFFFFFFL);
+        } else if (v instanceof BigInteger) {
+            writeType(V_BIG_INTEGER).writeString(v.toString());
+        } else if (v instanceof BigDecimal || v instanceof Number) {
+            writeType(V_BIG_DECIMAL).writeString(new BigDecimal(v.toString()).toString());
+        } else if (v instanceof byte[]) {
+            writeType(V_BYTES).writeBytes((byte[]) v);
+        } else if (v instanceof Map) {
+            Map<?,?> m = (Map<?,?>) v;
+            writeType(V_MAP).writeUvarint(m.size());
+            for (Map.Entry<?,?> e : m.entrySet()) {
+                writeString(String.valueOf(e.getKey()));
+                writeValue(e.getValue());
+            }
+        } else if (v instanceof Collection) {
+            Collection<?> c = (Collection<?>) v;
+            writeType(V_LIST).writeUvarint(c.size());
+            for (Object o : c)
+                writeValue(o);
+        } else if (v instanceof Object[]) {
+            Object[] a = (Object[]) v;
+            writeType(V_LIST).writeUvarint(a.length);
+            for (Object o : a)
+                writeValue(o);
+        } else if (v instanceof JSONSerializable) {
+            // class name ahead of the members so it reads back as itself
+            writeType(V_TYPED).writeString(v.getClass().getName());
+            writeValue(v instanceof Content ? ((Content) v).toMap(false) : ((JSONSerializable) v).toMap());
+        } else {
+            writeType(V_STRING).writeString(v.toString());
+        }
+        return this;
+    }
+
+    private BinaryWriter writeType(byte type) {
+        return writeByte(type);
+    }
+
+    /**
+     * Write end - start as the varint at prefix, moving [start, end) to sit right behind it.
+     */
+    private void finishLength(int prefix, int start, int end) {
+        int len = end - start;
+        int size = Protocol.uvarintSize(len);
+        if (prefix + size != start) {
+            ensure(prefix + size + len - count);
+            System.arraycopy(buf, start, buf, prefix + size, len);
+        }
+        Protocol.putUvarint(buf, prefix, len);
+        count = prefix + size + len;
+    }
+
+    private void ensure(int n) {
+        if (count + n > buf.length)
+            buf = Arrays.copyOf(buf, Math.max(buf.length * 2, count + n));
+    }
+}
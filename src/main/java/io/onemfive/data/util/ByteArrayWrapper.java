@@ -46,6 +46,13 @@ public class ByteArrayWrapper implements NamedStreamable {
         else return null;
     }
 
+    @Override
+    public long length() {
+        if(data != null) return data.length;
+        else if(name != null) return name.getBytes().length;
+        else return 0;
+    }
+
     public String getName() {
         return name;
     }
@@ -0,0 +1,405 @@
+package io.onemfive.data.util;
+
+import io.onemfive.data.JSONSerializable;
+import io.onemfive.data.content.Content;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * CBOR (RFC 7049) encoding of toMap() graphs.
+ *
+ * Takes and returns the same Map/List/String/Number/Boolean graphs as
+ * {@link JSONParser}, except that byte[] values are carried as CBOR byte
+ * strings instead of Base64 text. Content is written with its raw body
+ * (see Content.toMap(false)), so binary media travels at its own size.
+ *
+ * Integers decode to Integer when they fit and Long otherwise, as
+ * JSONReader does by default; bignums (tags 2 and 3) to BigInteger and
+ * decimal fractions (tag 4) to BigDecimal. Other tags are dropped and
+ * their value kept.
+ *
+ * @author objectorange
+ */
+public final class CBOR {
+
+    public static final String CONTENT_TYPE = "application/cbor";
+
+    private static final int UNSIGNED = 0;
+    private static final int NEGATIVE = 1 << 5;
+    private static final int BYTES = 2 << 5;
+    private static final int TEXT = 3 << 5;
+    private static final int ARRAY = 4 << 5;
+    private static final int MAP = 5 << 5;
+    private static final int TAG = 6 << 5;
+    private static final int SIMPLE = 7 << 5;
+
+    private static final int FALSE = SIMPLE | 20;
+    private static final int TRUE = SIMPLE | 21;
+    private static final int NULL = SIMPLE | 22;
+    private static final int UNDEFINED = SIMPLE | 23;
+    private static final int FLOAT16 = SIMPLE | 25;
+    private static final int FLOAT32 = SIMPLE | 26;
+    private static final int FLOAT64 = SIMPLE | 27;
+    private static final int BREAK = SIMPLE | 31;
+    private static final int INDEFINITE = 31;
+
+    private static final int TAG_POSITIVE_BIGNUM = 2;
+    private static final int TAG_NEGATIVE_BIGNUM = 3;
+    private static final int TAG_DECIMAL_FRACTION = 4;
+
+    private CBOR() {}
+
+    public static byte[] encode(Object graph) {
+        Encoder e = new Encoder();
+        e.value(graph);
+        return Arrays.copyOf(e.buf, e.count);
+    }
+
+    public static void encode(Object graph, OutputStream out) throws IOException {
+        Encoder e = new Encoder();
+        e.value(graph);
+        out.write(e.buf, 0, e.count);
+    }
+
+    public static Object decode(byte[] data) {
+        return decode(ByteBuffer.wrap(data));
+    }
+
+    /**
+     * Decode one item, leaving the buffer positioned after it.
+     */
+    public static Object decode(ByteBuffer buffer) {
+        ByteBuffer in = buffer.order() == ByteOrder.BIG_ENDIAN ? buffer : buffer.duplicate().order(ByteOrder.BIG_ENDIAN);
+        try {
+            Object v = value(in, in.get() & 0xFF);
+            if (v == Break.INSTANCE)
+                throw error(in, "unexpected break");
+            return v;
+        } catch (BufferUnderflowException e) {
+            throw error(in, "truncated input");
+        } finally {
+            buffer.position(in.position());
+        }
+    }
+
+    private static final class Encoder {
+
+        private byte[] buf = new byte[256];
+        private int count = 0;
+
+        private void value(Object v) {
+            if (v == null) {
+                write(NULL);
+            } else if (v instanceof String) {
+                text((String) v);
+            } else if (v instanceof Boolean) {
+                write((Boolean) v ? TRUE : FALSE);
+            } else if (v instanceof Integer || v instanceof Long || v instanceof Short || v instanceof Byte) {
+                integer(((Number) v).longValue());
+            } else if (v instanceof Double) {
+                write(FLOAT64);
+                long bits = Double.doubleToLongBits((Double) v);
+                ensure(8);
+                for (int s = 56; s >= 0; s -= 8)
+                    buf[count++] = (byte) (bits >>> s);
+            } else if (v instanceof Float) {
+                write(FLOAT32);
+                int bits = Float.floatToIntBits((Float) v);
+                ensure(4);
+                for (int s = 24; s >= 0; s -= 8)
+                    buf[count++] = (byte) (bits >>> s);
+            } else if (v instanceof BigInteger) {
+                bigInteger((BigInteger) v);
+            } else if (v instanceof BigDecimal || v instanceof Number) {
+                BigDecimal d = v instanceof BigDecimal ? (BigDecimal) v : new BigDecimal(v.toString());
+                head(TAG, TAG_DECIMAL_FRACTION);
+                head(ARRAY, 2);
+                integer(-(long) d.scale());
+                bigInteger(d.unscaledValue());
+            } else if (v instanceof byte[]) {
+                byte[] b = (byte[]) v;
+                head(BYTES, b.length);
+                ensure(b.length);
+                System.arraycopy(b, 0, buf, count, b.length);
+                count += b.length;
+            } else if (v instanceof Map) {
+                Map<?,?> m = (Map<?,?>) v;
+                head(MAP, m.size());
+                for (Map.Entry<?,?> e : m.entrySet()) {
+                    text(String.valueOf(e.getKey()));
+                    value(e.getValue());
+                }
+            } else if (v instanceof Collection) {
+                Collection<?> c = (Collection<?>) v;
+                head(ARRAY, c.size());
+                for (Object o : c)
+                    value(o);
+            } else if (v instanceof Object[]) {
+                Object[] a = (Object[]) v;
+                head(ARRAY, a.length);
+                for (Object o : a)
+                    value(o);
+            } else if (v instanceof Content) {
+                value(((Content) v).toMap(false));
+            } else if (v instanceof JSONSerializable) {
+                value(((JSONSerializable) v).toMap());
+            } else {
+                text(v.toString());
+            }
+        }
+
+        private void integer(long n) {
+            if (n >= 0)
+                head(UNSIGNED, n);
+            else
+                head(NEGATIVE, -1 - n);
+        }
+
+        private void bigInteger(BigInteger n) {
+            if (n.bitLength() < 64) {
+                integer(n.longValue());
+                return;
+            }
+            byte[] b;
+            if (n.signum() >= 0) {
+                head(TAG, TAG_POSITIVE_BIGNUM);
+                b = n.toByteArray();
+            } else {
+                head(TAG, TAG_NEGATIVE_BIGNUM);
+                b = n.not().toByteArray();
+            }
+            // drop the sign byte BigInteger adds when the top bit is set
+            int off = b[0] == 0 ? 1 : 0;
+            head(BYTES, b.length - off);
+            ensure(b.length);
+            System.arraycopy(b, off, buf, count, b.length - off);
+            count += b.length - off;
+        }
+
+        private void text(String s) {
+            byte[] b = s.getBytes(StandardCharsets.UTF_8);
+            head(TEXT, b.length);
+            ensure(b.length);
+            System.arraycopy(b, 0, buf, count, b.length);
+            count += b.length;
+        }
+
+        /**
+         * Major type with its argument in the fewest bytes.
+         */
+        private void head(int major, long n) {
+            ensure(9);
+            if (n < 24) {
+                buf[count++] = (byte) (major | n);
+            } else if (n < 0x100) {
+                buf[count++] = (byte) (major | 24);
+                buf[count++] = (byte) n;
+            } else if (n < 0x10000) {
+                buf[count++] = (byte) (major | 25);
+                buf[count++] = (byte) (n >>> 8);
+                buf[count++] = (byte) n;
+            } else if (n < 0x100000000L) {
+                buf[count++] = (byte) (major | 26);
+                for (int s = 24; s >= 0; s -= 8)
+                    buf[count++] = (byte) (n >>> s);
+            } else {
+                buf[count++] = (byte) (major | 27);
+                for (int s = 56; s >= 0; s -= 8)
+                    buf[count++] = (byte) (n >>> s);
+            }
+        }
+
+        private void write(int b) {
+            ensure(1);
+            buf[count++] = (byte) b;
+        }
+
+        private void ensure(int n) {
+            if (count + n > buf.length)
+                buf = Arrays.copyOf(buf, Math.max(buf.length * 2, count + n));
+        }
+    }
+
+    /** Marks the end of an indefinite length item */
+    private enum Break { INSTANCE }
+
+    private static Object value(ByteBuffer in, int initial) {
+        int major = initial & 0xE0;
+        int info = initial & 0x1F;
+        switch (major) {
+            case UNSIGNED: {
+                long n = argument(in, info);
+                if (n < 0)
+                    return new BigInteger(Long.toUnsignedString(n));
+                return n <= Integer.MAX_VALUE ? (Object) (int) n : (Object) n;
+            }
+            case NEGATIVE: {
+                long n = argument(in, info);
+                if (n < 0)
+                    return new BigInteger(Long.toUnsignedString(n)).not();
+                n = -1 - n;
+                return n >= Integer.MIN_VALUE ? (Object) (int) n : (Object) n;
+            }
+            case BYTES: {
+                if (info == INDEFINITE)
+                    return chunks(in, BYTES);
+                byte[] b = new byte[length(in, info)];
+                in.get(b);
+                return b;
+            }
+            case TEXT: {
+                if (info == INDEFINITE)
+                    return new String(chunks(in, TEXT), StandardCharsets.UTF_8);
+                return text(in, length(in, info));
+            }
+            case ARRAY: {
+                boolean indefinite = info == INDEFINITE;
+                int n = indefinite ? -1 : length(in, info);
+                List<Object> l = new ArrayList<>(indefinite ? 10 : n);
+                while (indefinite || l.size() < n) {
+                    Object v = value(in, in.get() & 0xFF);
+                    if (v == Break.INSTANCE) {
+                        if (indefinite) break;
+                        throw error(in, "unexpected break");
+                    }
+                    l.add(v);
+                }
+                return l;
+            }
+            case MAP: {
+                boolean indefinite = info == INDEFINITE;
+                int n = indefinite ? -1 : length(in, info);
+                Map<String,Object> m = new LinkedHashMap<>(indefinite ? 16 : n * 4 / 3 + 1);
+                for (int i = 0; indefinite || i < n; i++) {
+                    int head = in.get() & 0xFF;
+                    if (head == BREAK && indefinite)
+                        break;
+                    String key;
+                    if ((head & 0xE0) == TEXT && (head & 0x1F) != INDEFINITE) {
+                        key = key(in, length(in, head & 0x1F));
+                    } else {
+                        Object k = value(in, head);
+                        if (k == Break.INSTANCE)
+                            throw error(in, "unexpected break");
+                        key = String.valueOf(k);
+                    }
+                    Object v = value(in, in.get() & 0xFF);
+                    if (v == Break.INSTANCE)
+                        throw error(in, "unexpected break");
+                    m.put(key, v);
+                }
+                return m;
+            }
+            case TAG: {
+                long tag = argument(in, info);
+                Object v = value(in, in.get() & 0xFF);
+                if (tag == TAG_POSITIVE_BIGNUM && v instanceof byte[])
+                    return new BigInteger(1, (byte[]) v);
+                if (tag == TAG_NEGATIVE_BIGNUM && v instanceof byte[])
+                    return new BigInteger(1, (byte[]) v).not();
+                if (tag == TAG_DECIMAL_FRACTION && v instanceof List && ((List<?>) v).size() == 2) {
+                    List<?> l = (List<?>) v;
+                    BigInteger mantissa = l.get(1) instanceof BigInteger
+                            ? (BigInteger) l.get(1) : BigInteger.valueOf(((Number) l.get(1)).longValue());
+                    return new BigDecimal(mantissa, -((Number) l.get(0)).intValue());
+                }
+                return v;
+            }
+            default: {
+                switch (initial) {
+                    case FALSE: return Boolean.FALSE;
+                    case TRUE: return Boolean.TRUE;
+                    case NULL:
+                    case UNDEFINED: return null;
+                    case FLOAT16: return halfToFloat(in.getShort() & 0xFFFF);
+                    case FLOAT32: return in.getFloat();
+                    case FLOAT64: return in.getDouble();
+                    case BREAK: return Break.INSTANCE;
+                    default: {
+                        if (info < 24) return null;
+                        if (info == 24) { in.get(); return null; }
+                        throw error(in, "unsupported simple value " + info);
+                    }
+                }
+            }
+        }
+    }
+
+    private static long argument(ByteBuffer in, int info) {
+        if (info < 24) return info;
+        switch (info) {
+            case 24: return in.get() & 0xFF;
+            case 25: return in.getShort() & 0xFFFF;
+            case 26: return in.getInt() & 0xFFFFFFFFL;
+            case 27: return in.getLong();
+            default: throw error(in, "invalid additional info " + info);
+        }
+    }
+
+    private static int length(ByteBuffer in, int info) {
+        long n = argument(in, info);
+        if (n < 0 || n > in.remaining())
+            throw error(in, "length " + Long.toUnsignedString(n) + " exceeds input");
+        return (int) n;
+    }
+
+    private static String text(ByteBuffer in, int len) {
+        String s;
+        if (in.hasArray()) {
+            s = new String(in.array(), in.arrayOffset() + in.position(), len, StandardCharsets.UTF_8);
+            in.position(in.position() + len);
+        } else {
+            byte[] b = new byte[len];
+            in.get(b);
+            s = new String(b, StandardCharsets.UTF_8);
+        }
+        return s;
+    }
+
+    private static String key(ByteBuffer in, int len) {
+        if (!in.hasArray())
+            return JSONKeys.intern(text(in, len));
+        String k = JSONKeys.intern(in.array(), in.arrayOffset() + in.position(), len);
+        in.position(in.position() + len);
+        return k;
+    }
+
+    /**
+     * Concatenate the definite length chunks of an indefinite byte or text string.
+     */
+    private static byte[] chunks(ByteBuffer in, int major) {
+        byte[] b = new byte[0];
+        int head;
+        while ((head = in.get() & 0xFF) != BREAK) {
+            if ((head & 0xE0) != major || (head & 0x1F) == INDEFINITE)
+                throw error(in, "invalid chunk");
+            int len = length(in, head & 0x1F);
+            int off = b.length;
+            b = Arrays.copyOf(b, off + len);
+            in.get(b, off, len);
+        }
+        return b;
+    }
+
+    private static float halfToFloat(int h) {
+        int exp = (h >> 10) & 0x1F;
+        int mant = h & 0x3FF;
+        float v;
+        if (exp == 0) v = mant * (float) Math.pow(2, -24);
+        else if (exp == 31) v = mant == 0 ? Float.POSITIVE_INFINITY : Float.NaN;
+        else v = (mant + 1024) * (float) Math.pow(2, exp - 25);
+        return (h & 0x8000) != 0 ? -v : v;
+    }
+
+    private static IllegalStateException error(ByteBuffer in, String message) {
+        return new IllegalStateException("cbor " + message + " at " + in.position());
+    }
+}
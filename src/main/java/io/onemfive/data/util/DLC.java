@@ -17,43 +17,25 @@ public final class DLC {
     public static final String ENTITY = "ENTITY";
     public static final String EXCEPTIONS = "EXCEPTIONS";
 
-    public static boolean addRoute(Class service, String operation, Envelope envelope) {
+    public static boolean addRoute(Class<?> service, String operation, Envelope envelope) {
         envelope.getDynamicRoutingSlip().addRoute(new SimpleRoute(service.getName(),operation));
         return true;
     }
 
     public static boolean addContent(Object content, Envelope envelope) {
-        Message m = envelope.getMessage();
-        if(!(m instanceof DocumentMessage)) {
-            return false;
-        }
-        ((DocumentMessage)m).data.get(0).put(CONTENT, content);
-        return true;
+        return put(DLCKey.CONTENT, content, envelope);
     }
 
     public static Object getContent(Envelope envelope) {
-        Message m = envelope.getMessage();
-        if(!(m instanceof DocumentMessage)) {
-            return null;
-        }
-        return ((DocumentMessage)m).data.get(0).get(CONTENT);
+        return get(DLCKey.CONTENT, envelope);
     }
 
     public static boolean addEntity(Object entity, Envelope envelope) {
-        Message m = envelope.getMessage();
-        if(!(m instanceof DocumentMessage)) {
-            return false;
-        }
-        ((DocumentMessage)m).data.get(0).put(ENTITY, entity);
-        return true;
+        return put(DLCKey.ENTITY, entity, envelope);
     }
 
     public static Object getEntity(Envelope envelope) {
-        Message m = envelope.getMessage();
-        if(!(m instanceof DocumentMessage)) {
-            return null;
-        }
-        return ((DocumentMessage)m).data.get(0).get(ENTITY);
+        return get(DLCKey.ENTITY, envelope);
     }
 
     public static boolean addException(Exception e, Envelope envelope) {
@@ -61,12 +43,7 @@ public final class DLC {
         if(!(m instanceof DocumentMessage)) {
             return false;
         }
-        List<Exception> exceptions = (List<Exception>)((DocumentMessage)m).data.get(0).get(EXCEPTIONS);
-        if(exceptions == null) {
-            exceptions = new ArrayList<>();
-            ((DocumentMessage)m).data.get(0).put(EXCEPTIONS, exceptions);
-        }
-        exceptions.add(e);
+        exceptions((DocumentMessage)m).add(e);
         return true;
     }
 
@@ -75,10 +52,14 @@ public final class DLC {
         if(!(m instanceof DocumentMessage)) {
             return null;
         }
-        List<Exception> exceptions = (List<Exception>)((DocumentMessage)m).data.get(0).get(EXCEPTIONS);
+        return exceptions((DocumentMessage)m);
+    }
+
+    private static List<Exception> exceptions(DocumentMessage dm) {
+        List<Exception> exceptions = dm.get(DLCKey.EXCEPTIONS);
         if(exceptions == null) {
             exceptions = new ArrayList<>();
-            ((DocumentMessage)m).data.get(0).put(EXCEPTIONS, exceptions);
+            dm.put(DLCKey.EXCEPTIONS, exceptions);
         }
         return exceptions;
     }
@@ -91,22 +72,51 @@ public final class DLC {
         return envelope.getMessage().getErrorMessages();
     }
 
-    public static boolean addData(Class clazz, Object object, Envelope envelope) {
+    public static boolean addData(Class<?> clazz, Object object, Envelope envelope) {
+        return put(DLCKey.of(clazz), object, envelope);
+    }
+
+    public static Object getData(Class<?> clazz, Envelope envelope) {
+        return get(DLCKey.of(clazz), envelope);
+    }
+
+    /**
+     * addData(Class, ...) checked at compile time to store a T.
+     */
+    public static <T> boolean addTypedData(Class<T> clazz, T object, Envelope envelope) {
+        return addData(clazz, object, envelope);
+    }
+
+    /**
+     * @return getData(Class, ...) as a T, null if absent
+     * @throws ClassCastException if the value stored is not a T
+     */
+    public static <T> T getTypedData(Class<T> clazz, Envelope envelope) {
+        return clazz.cast(getData(clazz, envelope));
+    }
+
+    /**
+     * Typed, slot indexed form of addNVP/addData; hold keys in static finals.
+     * @return false if the envelope carries no DocumentMessage
+     */
+    public static <T> boolean put(DLCKey<T> key, T value, Envelope envelope) {
         Message m = envelope.getMessage();
         if(!(m instanceof DocumentMessage)) {
             return false;
         }
-        DocumentMessage dm = (DocumentMessage)m;
-        dm.data.get(0).put(clazz.getName(), object);
+        ((DocumentMessage)m).put(key, value);
         return true;
     }
 
-    public static Object getData(Class clazz, Envelope envelope) {
+    /**
+     * @return the value under key or null, also if the envelope carries no DocumentMessage
+     */
+    public static <T> T get(DLCKey<T> key, Envelope envelope) {
         Message m = envelope.getMessage();
         if(!(m instanceof DocumentMessage)) {
             return null;
         }
-        return ((DocumentMessage)m).data.get(0).get(clazz.getName());
+        return ((DocumentMessage)m).get(key);
     }
 
     public static boolean addNVP(String name, Object object, Envelope envelope){
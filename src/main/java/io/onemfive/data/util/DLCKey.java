@@ -0,0 +1,118 @@
+package io.onemfive.data.util;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Typed name of a value in a DocumentMessage document.
+ *
+ * Every key is registered once per name and given a small integer slot, so a
+ * service holding its keys in static finals reads and writes a document by
+ * array index instead of hashing the name, and gets the value back as T
+ * without a cast. Names not registered as keys can still be used through
+ * the document's Map view.
+ *
+ * @author objectorange
+ */
+public final class DLCKey<T> {
+
+    private static final Map<String,DLCKey<?>> byName = new ConcurrentHashMap<>();
+    private static final ClassValue<DLCKey<Object>> byClass = new ClassValue<DLCKey<Object>>() {
+        @Override
+        protected DLCKey<Object> computeValue(Class<?> type) {
+            return of(type.getName(), Object.class);
+        }
+    };
+    private static volatile DLCKey<?>[] bySlot = new DLCKey<?>[0];
+
+    public static final DLCKey<Object> CONTENT = of(DLC.CONTENT, Object.class);
+    public static final DLCKey<Object> ENTITY = of(DLC.ENTITY, Object.class);
+    @SuppressWarnings("unchecked")
+    public static final DLCKey<List<Exception>> EXCEPTIONS = (DLCKey<List<Exception>>)(DLCKey<?>)of(DLC.EXCEPTIONS, List.class);
+
+    private final String name;
+    private final Class<T> type;
+    private final int slot;
+
+    private DLCKey(String name, Class<T> type, int slot) {
+        this.name = name;
+        this.type = type;
+        this.slot = slot;
+    }
+
+    /**
+     * @return the key registered under name, registering it on first use
+     * @throws IllegalArgumentException if name is already registered with another type
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> DLCKey<T> of(String name, Class<T> type) {
+        DLCKey<?> key = byName.get(name);
+        if(key == null) key = register(name, type);
+        if(key.type != type)
+            throw new IllegalArgumentException("Key " + name + " is registered as " + key.type.getName());
+        return (DLCKey<T>)key;
+    }
+
+    /**
+     * @return the key named after clazz, as DLC.addData(Class, ...) stores it;
+     * untyped, as a value decoded from the wire need not be a clazz
+     */
+    public static DLCKey<Object> of(Class<?> clazz) {
+        return byClass.get(clazz);
+    }
+
+    /**
+     * @return the key registered under name or null
+     */
+    public static DLCKey<?> forName(Object name) {
+        return name instanceof String ? byName.get(name) : null;
+    }
+
+    public static DLCKey<?> forSlot(int slot) {
+        return bySlot[slot];
+    }
+
+    /**
+     * @return number of registered keys, one past the highest slot
+     */
+    public static int slots() {
+        return bySlot.length;
+    }
+
+    private static synchronized DLCKey<?> register(String name, Class<?> type) {
+        DLCKey<?> key = byName.get(name);
+        if(key != null) return key;
+        DLCKey<?>[] keys = Arrays.copyOf(bySlot, bySlot.length + 1);
+        key = new DLCKey<>(name, type, bySlot.length);
+        keys[key.slot] = key;
+        bySlot = keys;
+        byName.put(name, key);
+        return key;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public Class<T> getType() {
+        return type;
+    }
+
+    public int getSlot() {
+        return slot;
+    }
+
+    /**
+     * @throws ClassCastException if value is not a T
+     */
+    public T cast(Object value) {
+        return type.cast(value);
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
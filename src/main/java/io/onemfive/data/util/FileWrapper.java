@@ -30,6 +30,11 @@ public class FileWrapper implements NamedStreamable {
         return source.isDirectory();
     }
 
+    @Override
+    public long length() {
+        return source.isDirectory() ? 0 : source.length();
+    }
+
     public File getFile() {
         return source;
     }
@@ -54,6 +54,14 @@ public class HashUtil {
         }
     }
 
+    /**
+     * Finish a hash started with md.update(salt) and fed the content piece by
+     * piece, in the same form generateHash(byte[], Algorithm) returns.
+     */
+    public static Hash generateHash(byte[] salt, MessageDigest md, Hash.Algorithm algorithm) {
+        return new Hash(Base64.encode(md.digest()) + DEL + Base64.encode(salt), algorithm);
+    }
+
     public static Boolean verifyHash(String contentToVerify, Hash hashToVerify) throws NoSuchAlgorithmException {
         if(hashToVerify.getAlgorithm() == Hash.Algorithm.PBKDF2WithHmacSHA1)
             return verifyPasswordHash(contentToVerify, hashToVerify);
@@ -0,0 +1,202 @@
+package io.onemfive.data.util;
+
+import java.lang.ref.WeakReference;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Generates the 64 bit ids of envelopes, routes and events.
+ *
+ * In the default TIME_ORDERED mode ids are Snowflake style, from the high bit down:
+ * <pre>
+ *     0 | 41 bits ms since 2018-01-01 | 8 bits node | 6 bits lane | 8 bits sequence
+ * </pre>
+ * so they sort by creation time and never collide within a node, and not
+ * across nodes either as long as each node is given its own node number
+ * (-Dio.onemfive.data.util.IdGenerator.node=n or setNode(n); a random one
+ * is picked otherwise).
+ *
+ * Each thread claims a lane of its own on first use and keeps its clock
+ * and sequence there, so generating ids takes no lock and no shared write.
+ * A lane whose 256 ids for the current millisecond are used up borrows the
+ * next millisecond rather than waiting, and the clock falls back into step
+ * once the burst is over. Lanes of dead threads are handed to new ones.
+ * Threads beyond the 63 private lanes share the last one through a CAS.
+ *
+ * RANDOM mode hands out ThreadLocalRandom values instead: faster still and
+ * unordered, unique only with high probability, and not for anything that
+ * must be unguessable.
+ *
+ * @author objectorange
+ */
+public final class IdGenerator {
+
+    public enum Mode {TIME_ORDERED, RANDOM}
+
+    /** 2018-01-01T00:00:00Z */
+    public static final long EPOCH = 1514764800000L;
+
+    private static final int SEQUENCE_BITS = 8;
+    private static final int LANE_BITS = 6;
+    private static final int NODE_BITS = 8;
+    private static final int LANE_SHIFT = SEQUENCE_BITS;
+    private static final int NODE_SHIFT = LANE_SHIFT + LANE_BITS;
+    private static final int TIME_SHIFT = NODE_SHIFT + NODE_BITS;
+    private static final long MAX_SEQUENCE = (1L << SEQUENCE_BITS) - 1;
+    public static final int MAX_NODE = (1 << NODE_BITS) - 1;
+
+    private static final int LANES = 1 << LANE_BITS;
+    private static final int SHARED_LANE = LANES - 1;
+
+    private static volatile long node = Integer.getInteger(IdGenerator.class.getName() + ".node",
+            ThreadLocalRandom.current().nextInt(MAX_NODE + 1)) & MAX_NODE;
+    private static volatile Mode mode = Mode.valueOf(System.getProperty(IdGenerator.class.getName() + ".mode",
+            Mode.TIME_ORDERED.name()));
+
+    private static final AtomicReferenceArray<Lane> lanes = new AtomicReferenceArray<>(SHARED_LANE);
+    private static final ThreadLocal<Lane> lane = ThreadLocal.withInitial(IdGenerator::claim);
+    // time << SEQUENCE_BITS | sequence of the shared lane
+    private static final AtomicLong shared = new AtomicLong();
+
+    private IdGenerator() {}
+
+    /**
+     * @return a new id in the current mode
+     */
+    public static long nextId() {
+        return mode == Mode.RANDOM ? nextRandomId() : nextTimeOrderedId();
+    }
+
+    public static long nextTimeOrderedId() {
+        Lane l = lane.get();
+        return l != null ? l.next() : nextShared();
+    }
+
+    /**
+     * @return a uniformly random, non-cryptographic id
+     */
+    public static long nextRandomId() {
+        return ThreadLocalRandom.current().nextLong();
+    }
+
+    public static Mode getMode() {
+        return mode;
+    }
+
+    public static void setMode(Mode m) {
+        mode = m;
+    }
+
+    public static int getNode() {
+        return (int)node;
+    }
+
+    /**
+     * @param n 0 to MAX_NODE, unique to this node among those sharing ids
+     */
+    public static void setNode(int n) {
+        if(n < 0 || n > MAX_NODE)
+            throw new IllegalArgumentException("Node must be from 0 to " + MAX_NODE);
+        node = n;
+    }
+
+    /**
+     * @return creation time in ms since 1970 of an id made in TIME_ORDERED mode
+     */
+    public static long timestamp(long id) {
+        return (id >>> TIME_SHIFT) + EPOCH;
+    }
+
+    /**
+     * @return node number of an id made in TIME_ORDERED mode
+     */
+    public static int node(long id) {
+        return (int)(id >>> NODE_SHIFT) & MAX_NODE;
+    }
+
+    private static long compose(long time, long lane, long sequence) {
+        return time << TIME_SHIFT | node << NODE_SHIFT | lane << LANE_SHIFT | sequence;
+    }
+
+    private static long now() {
+        return System.currentTimeMillis() - EPOCH;
+    }
+
+    private static long nextShared() {
+        long prev, next;
+        do {
+            prev = shared.get();
+            long time = prev >>> SEQUENCE_BITS;
+            long seq = prev & MAX_SEQUENCE;
+            long now = now();
+            if(now > time) {
+                time = now;
+                seq = 0;
+            } else if(seq == MAX_SEQUENCE) {
+                time++;
+                seq = 0;
+            } else {
+                seq++;
+            }
+            next = time << SEQUENCE_BITS | seq;
+        } while(!shared.compareAndSet(prev, next));
+        return compose(next >>> SEQUENCE_BITS, SHARED_LANE, next & MAX_SEQUENCE);
+    }
+
+    /**
+     * @return a free private lane for the current thread or null to use the shared one
+     */
+    private static Lane claim() {
+        Thread t = Thread.currentThread();
+        for(int i = 0; i < SHARED_LANE; i++) {
+            Lane cur = lanes.get(i);
+            if(cur == null || !cur.isAlive()) {
+                Lane l = new Lane(i, t, cur);
+                if(lanes.compareAndSet(i, cur, l))
+                    return l;
+            }
+        }
+        return null;
+    }
+
+    private static final class Lane {
+
+        private final long index;
+        private final WeakReference<Thread> owner;
+        // only touched by the owner thread
+        private long time;
+        private long sequence;
+
+        private Lane(int index, Thread owner, Lane previous) {
+            this.index = index;
+            this.owner = new WeakReference<>(owner);
+            if(previous != null) {
+                // carry on from any millisecond the previous owner borrowed
+                time = previous.time;
+                sequence = previous.sequence;
+            } else {
+                sequence = MAX_SEQUENCE;
+            }
+        }
+
+        private boolean isAlive() {
+            Thread t = owner.get();
+            return t != null && t.isAlive();
+        }
+
+        private long next() {
+            long now = now();
+            if(now > time) {
+                time = now;
+                sequence = 0;
+            } else if(sequence == MAX_SEQUENCE) {
+                time++;
+                sequence = 0;
+            } else {
+                sequence++;
+            }
+            return compose(time, index, sequence);
+        }
+    }
+}
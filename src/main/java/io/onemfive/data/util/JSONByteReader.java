@@ -0,0 +1,181 @@
+package io.onemfive.data.util;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Pull parser over UTF-8 encoded JSON held in a byte[] or heap ByteBuffer.
+ *
+ * Structural characters are matched as bytes (all of them are ASCII and can
+ * never appear inside a multi-byte UTF-8 sequence), so nothing is decoded
+ * while scanning. Strings are only created when getText() is called on a
+ * field name or value, which means skipped fields and skipped children cost
+ * no allocation at all, and field names already in {@link JSONKeys} cost none
+ * either.
+ *
+ * @author objectorange
+ */
+public class JSONByteReader extends JSONReader {
+
+    private final byte[] data;
+    private final int offset;
+    private final int limit;
+
+    // Byte range of the current string, field name or number token
+    private int textStart;
+    private int textLength;
+    private boolean textEscaped;
+
+    public JSONByteReader(byte[] json) {
+        this(json, 0, json.length);
+    }
+
+    public JSONByteReader(byte[] json, int offset, int length) {
+        this.data = json;
+        this.offset = offset;
+        this.limit = offset + length;
+        this.pos = offset;
+    }
+
+    /**
+     * @param json heap buffer; its remaining bytes are parsed and its position is left untouched
+     */
+    public JSONByteReader(ByteBuffer json) {
+        this(json.array(), json.arrayOffset() + json.position(), json.remaining());
+    }
+
+    @Override
+    public long getPosition() {
+        return pos - offset;
+    }
+
+    @Override
+    protected String tokenText() {
+        if (current == Token.VALUE_NUMBER)
+            return new String(data, textStart, textLength, StandardCharsets.ISO_8859_1);
+        if (current == Token.FIELD_NAME)
+            return textEscaped ? JSONKeys.intern(decode(data, textStart, textStart + textLength, true))
+                    : JSONKeys.intern(data, textStart, textLength);
+        return decode(data, textStart, textStart + textLength, textEscaped);
+    }
+
+    /**
+     * In LAZY mode the returned JSONNumber refers to the backing array rather than copying it.
+     */
+    @Override
+    protected Number numberValue() {
+        return JSONNumber.parse(data, textStart, textStart + textLength, numberMode);
+    }
+
+    @Override
+    protected int skipSpaces() {
+        while (pos < limit) {
+            byte b = data[pos];
+            if (b == ' ' || b == '\n' || b == '\r' || b == '\t')
+                pos++;
+            else
+                return b & 0xFF;
+        }
+        return -1;
+    }
+
+    @Override
+    protected void readString() {
+        int i = ++pos;
+        textEscaped = false;
+        while (i < limit) {
+            byte b = data[i];
+            if (b == '"') {
+                textStart = pos;
+                textLength = i - pos;
+                pos = i + 1;
+                return;
+            }
+            if (b == '\\') {
+                textEscaped = true;
+                i++;
+            }
+            i++;
+        }
+        throw error("unterminated string");
+    }
+
+    @Override
+    protected void readNumber() {
+        int i = pos;
+        while (i < limit) {
+            byte b = data[i];
+            if ((b >= '0' && b <= '9') || b == '-' || b == '+' || b == '.' || b == 'e' || b == 'E')
+                i++;
+            else
+                break;
+        }
+        textStart = pos;
+        textLength = i - pos;
+        pos = i;
+    }
+
+    @Override
+    protected void readLiteral(String literal) {
+        int len = literal.length();
+        if (limit - pos < len)
+            throw error("expected '" + literal + "'");
+        for (int i = 0; i < len; i++) {
+            if (data[pos + i] != literal.charAt(i))
+                throw error("expected '" + literal + "'");
+        }
+        pos += len;
+    }
+
+    /**
+     * Decode the UTF-8 bytes of a string token found between its quotes.
+     *
+     * @param escaped whether the token contains any backslash escapes
+     */
+    static String decode(byte[] data, int start, int end, boolean escaped) {
+        if (!escaped)
+            return new String(data, start, end - start, StandardCharsets.UTF_8);
+        return unescape(data, start, end);
+    }
+
+    /**
+     * Decode the UTF-8 runs between escapes and expand the escapes themselves.
+     */
+    private static String unescape(byte[] data, int start, int end) {
+        StringBuilder sb = new StringBuilder(end - start);
+        int run = start;
+        int i = start;
+        while (i < end) {
+            if (data[i] != '\\') {
+                i++;
+                continue;
+            }
+            if (i > run)
+                sb.append(new String(data, run, i - run, StandardCharsets.UTF_8));
+            int ch = data[++i];
+            if (ch == 'u') {
+                if (i + 4 >= end)
+                    throw new IllegalStateException("json invalid unicode escape at " + i);
+                int c = 0;
+                for (int j = 1; j <= 4; j++) {
+                    int d = Character.digit(data[i + j], 16);
+                    if (d < 0)
+                        throw new IllegalStateException("json invalid unicode escape at " + i);
+                    c = (c << 4) | d;
+                }
+                sb.append((char) c);
+                i += 5;
+            } else {
+                int c = unescapeSimple(ch);
+                if (c < 0)
+                    throw new IllegalStateException("json invalid escape '\\" + (char) ch + "' at " + i);
+                sb.append((char) c);
+                i++;
+            }
+            run = i;
+        }
+        if (end > run)
+            sb.append(new String(data, run, end - run, StandardCharsets.UTF_8));
+        return sb.toString();
+    }
+}
@@ -0,0 +1,26 @@
+package io.onemfive.data.util;
+
+import java.io.IOException;
+
+/**
+ * Reads and writes one type straight between its fields and a JSON token
+ * stream, skipping the intermediate toMap()/fromMap() graph.
+ *
+ * Codecs are registered per concrete class with {@link JSONCodecs}; types
+ * without one keep going through toMap()/fromMap().
+ *
+ * @author objectorange
+ */
+public interface JSONCodec<T> {
+
+    /**
+     * Write obj as one JSON object.
+     */
+    void write(T obj, JSONWriter w) throws IOException;
+
+    /**
+     * Read the members of the object the reader is on into obj. Called on
+     * START_OBJECT; must leave the reader on the matching END_OBJECT.
+     */
+    void read(JSONReader r, T obj);
+}
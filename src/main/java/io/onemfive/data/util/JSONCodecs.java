@@ -0,0 +1,52 @@
+package io.onemfive.data.util;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Registry of {@link JSONCodec}s by exact class.
+ *
+ * Lookups are by exact class on purpose: a subclass that overrides toMap()
+ * without registering a codec of its own must not be written by its
+ * parent's codec. Classes register their codecs from a static initializer,
+ * which get(Class) runs the first time a class is looked up.
+ *
+ * @author objectorange
+ */
+public final class JSONCodecs {
+
+    private static final Object NONE = new Object();
+
+    // a codec, or NONE once a class was looked up without one
+    private static final Map<Class<?>,Object> codecs = new ConcurrentHashMap<>();
+
+    private JSONCodecs() {}
+
+    /**
+     * Use the codec for exactly these classes.
+     */
+    public static void register(JSONCodec<?> codec, Class<?>... types) {
+        for (Class<?> type : types)
+            codecs.put(type, codec);
+    }
+
+    /**
+     * @return the codec registered for exactly this class or null if it has none
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> JSONCodec<T> get(Class<?> type) {
+        Object codec = codecs.get(type);
+        if (codec == null) {
+            try {
+                // make sure its static initializer had the chance to register
+                Class.forName(type.getName(), true, type.getClassLoader());
+            } catch (ClassNotFoundException | LinkageError e) {
+                // not loadable by name, nothing registered for it then
+            }
+            codec = codecs.putIfAbsent(type, NONE);
+            if (codec == null)
+                codec = NONE;
+        }
+        return codec == NONE ? null : (JSONCodec<T>) codec;
+    }
+}
@@ -0,0 +1,437 @@
+package io.onemfive.data.util;
+
+import java.util.*;
+
+/**
+ * Lazily materialized JSON over UTF-8 bytes.
+ *
+ * A single pass records every value and field name on a compact tape of
+ * parallel arrays (kind, start, end) without decoding anything. Objects and
+ * arrays are then exposed as read-only Map and List views that decode a
+ * member only when it is asked for, so reading two fields out of a large
+ * serialized Envelope never builds its body.
+ *
+ * Tape layout per entry:
+ * <ul>
+ *     <li>strings and numbers: start and end byte offsets of the token text</li>
+ *     <li>objects and arrays: start holds the number of tape members (keys and values for an object)
+ *     and end the index of the first entry after the container</li>
+ *     <li>literals: start byte offset only</li>
+ * </ul>
+ *
+ * @author objectorange
+ */
+public final class JSONDocument {
+
+    private static final byte OBJECT = 1;
+    private static final byte ARRAY = 2;
+    private static final byte STRING = 3;
+    private static final byte STRING_ESCAPED = 4;
+    private static final byte NUMBER = 5;
+    private static final byte TRUE = 6;
+    private static final byte FALSE = 7;
+    private static final byte NULL = 8;
+
+    // what index() accepts next inside a container
+    private static final byte EXPECT_FIRST = 0; // first member or close
+    private static final byte EXPECT_MEMBER = 1; // member after ','
+    private static final byte EXPECT_COLON = 2; // ':' after a field name
+    private static final byte EXPECT_VALUE = 3; // value after ':'
+    private static final byte EXPECT_NEXT = 4; // ',' or close after a member
+
+    private static final Object NOT_DECODED = new Object();
+
+    private final byte[] data;
+    private byte[] kinds;
+    private int[] starts;
+    private int[] ends;
+    private int size = 0;
+
+    private JSONDocument(byte[] data, int offset, int length) {
+        this.data = data;
+        int capacity = length / 8 + 16;
+        kinds = new byte[capacity];
+        starts = new int[capacity];
+        ends = new int[capacity];
+        index(offset, offset + length);
+    }
+
+    /**
+     * Index the first JSON value in the UTF-8 bytes.
+     */
+    public static JSONDocument parse(byte[] json) {
+        return new JSONDocument(json, 0, json.length);
+    }
+
+    public static JSONDocument parse(byte[] json, int offset, int length) {
+        return new JSONDocument(json, offset, length);
+    }
+
+    /**
+     * @return the top level value: a lazy Map or List view, or a decoded scalar
+     */
+    public Object getRoot() {
+        return size == 0 ? null : value(0);
+    }
+
+    /**
+     * @return number of tape entries, a measure of the index footprint
+     */
+    public int getEntryCount() {
+        return size;
+    }
+
+    private Object value(int entry) {
+        switch (kinds[entry]) {
+            case OBJECT: return new LazyObject(entry);
+            case ARRAY: return new LazyArray(entry);
+            case STRING: return JSONByteReader.decode(data, starts[entry], ends[entry], false);
+            case STRING_ESCAPED: return JSONByteReader.decode(data, starts[entry], ends[entry], true);
+            case NUMBER: return JSONNumber.parse(data, starts[entry], ends[entry], JSONReader.NumberMode.NARROWEST);
+            case TRUE: return Boolean.TRUE;
+            case FALSE: return Boolean.FALSE;
+            default: return null;
+        }
+    }
+
+    /**
+     * @return the index of the entry following the value at entry
+     */
+    private int next(int entry) {
+        byte k = kinds[entry];
+        return k == OBJECT || k == ARRAY ? ends[entry] : entry + 1;
+    }
+
+    /**
+     * Compare a key entry against a String without decoding the key when it is plain ASCII.
+     */
+    private boolean keyEquals(int entry, String key) {
+        int start = starts[entry];
+        int len = ends[entry] - start;
+        if (kinds[entry] == STRING) {
+            if (len == key.length()) {
+                int i = 0;
+                for (; i < len; i++) {
+                    char c = key.charAt(i);
+                    if (c >= 0x80)
+                        break;
+                    if (data[start + i] != c)
+                        return false;
+                }
+                if (i == len)
+                    return true;
+            } else if (len < key.length() || isAscii(key)) {
+                // UTF-8 never takes fewer bytes than chars and ASCII takes exactly one per char
+                return false;
+            }
+        }
+        return key.equals(value(entry));
+    }
+
+    private void index(int pos, int limit) {
+        int[] stack = new int[16];
+        byte[] expect = new byte[16];
+        int sp = -1;
+        while (true) {
+            while (pos < limit && isSpace(data[pos]))
+                pos++;
+            if (pos >= limit) {
+                if (sp >= 0)
+                    throw new IllegalStateException("json unexpected end of input at " + pos);
+                return;
+            }
+            byte b = data[pos];
+            if (b == ',') {
+                if (sp < 0 || expect[sp] != EXPECT_NEXT)
+                    throw new IllegalStateException("json unexpected ',' at " + pos);
+                expect[sp] = EXPECT_MEMBER;
+                pos++;
+                continue;
+            }
+            if (b == ':') {
+                if (sp < 0 || expect[sp] != EXPECT_COLON)
+                    throw new IllegalStateException("json unexpected ':' at " + pos);
+                expect[sp] = EXPECT_VALUE;
+                pos++;
+                continue;
+            }
+            if (b == '}' || b == ']') {
+                if (sp < 0)
+                    throw new IllegalStateException("json unexpected '" + (char) b + "' at " + pos);
+                int container = stack[sp];
+                if (kinds[container] != (b == '}' ? OBJECT : ARRAY))
+                    throw new IllegalStateException("json mismatched '" + (char) b + "' at " + pos);
+                if (expect[sp] == EXPECT_COLON || expect[sp] == EXPECT_VALUE)
+                    throw new IllegalStateException("json object missing value at " + pos);
+                if (expect[sp] == EXPECT_MEMBER)
+                    throw new IllegalStateException("json unexpected '" + (char) b + "' after ',' at " + pos);
+                sp--;
+                ends[container] = size;
+                pos++;
+                if (sp < 0)
+                    return;
+                continue;
+            }
+            if (sp >= 0) {
+                int container = stack[sp];
+                starts[container]++;
+                byte e = expect[sp];
+                if (kinds[container] == OBJECT) {
+                    if (e == EXPECT_FIRST || e == EXPECT_MEMBER) {
+                        if (b != '"')
+                            throw new IllegalStateException("json expected field name at " + pos);
+                        expect[sp] = EXPECT_COLON;
+                    } else if (e == EXPECT_VALUE) {
+                        expect[sp] = EXPECT_NEXT;
+                    } else {
+                        throw new IllegalStateException("json expected '" + (e == EXPECT_COLON ? ':' : ',') + "' at " + pos);
+                    }
+                } else {
+                    if (e == EXPECT_NEXT)
+                        throw new IllegalStateException("json expected ',' at " + pos);
+                    expect[sp] = EXPECT_NEXT;
+                }
+            }
+            int entry = add();
+            switch (b) {
+                case '{':
+                case '[': {
+                    kinds[entry] = b == '{' ? OBJECT : ARRAY;
+                    starts[entry] = 0;
+                    if (++sp == stack.length) {
+                        stack = Arrays.copyOf(stack, stack.length * 2);
+                        expect = Arrays.copyOf(expect, expect.length * 2);
+                    }
+                    stack[sp] = entry;
+                    expect[sp] = EXPECT_FIRST;
+                    pos++;
+                    continue;
+                }
+                case '"': {
+                    int i = ++pos;
+                    byte kind = STRING;
+                    while (true) {
+                        if (i >= limit)
+                            throw new IllegalStateException("json unterminated string at " + pos);
+                        byte c = data[i];
+                        if (c == '"')
+                            break;
+                        if (c == '\\') {
+                            kind = STRING_ESCAPED;
+                            i++;
+                        }
+                        i++;
+                    }
+                    kinds[entry] = kind;
+                    starts[entry] = pos;
+                    ends[entry] = i;
+                    pos = i + 1;
+                    break;
+                }
+                case 't': pos = literal(entry, TRUE, "true", pos, limit); break;
+                case 'f': pos = literal(entry, FALSE, "false", pos, limit); break;
+                case 'n': pos = literal(entry, NULL, "null", pos, limit); break;
+                default: {
+                    if (b != '-' && (b < '0' || b > '9'))
+                        throw new IllegalStateException("json unexpected character '" + (char) b + "' at " + pos);
+                    int i = pos + 1;
+                    while (i < limit) {
+                        byte c = data[i];
+                        if ((c >= '0' && c <= '9') || c == '-' || c == '+' || c == '.' || c == 'e' || c == 'E')
+                            i++;
+                        else
+                            break;
+                    }
+                    kinds[entry] = NUMBER;
+                    starts[entry] = pos;
+                    ends[entry] = i;
+                    pos = i;
+                }
+            }
+            if (sp < 0)
+                return;
+        }
+    }
+
+    private int literal(int entry, byte kind, String literal, int pos, int limit) {
+        int len = literal.length();
+        if (limit - pos < len)
+            throw new IllegalStateException("json expected '" + literal + "' at " + pos);
+        for (int i = 1; i < len; i++) {
+            if (data[pos + i] != literal.charAt(i))
+                throw new IllegalStateException("json expected '" + literal + "' at " + pos);
+        }
+        kinds[entry] = kind;
+        starts[entry] = pos;
+        return pos + len;
+    }
+
+    private int add() {
+        if (size == kinds.length) {
+            int capacity = size * 2;
+            kinds = Arrays.copyOf(kinds, capacity);
+            starts = Arrays.copyOf(starts, capacity);
+            ends = Arrays.copyOf(ends, capacity);
+        }
+        return size++;
+    }
+
+    private static boolean isAscii(String s) {
+        for (int i = 0; i < s.length(); i++) {
+            if (s.charAt(i) >= 0x80)
+                return false;
+        }
+        return true;
+    }
+
+    private static boolean isSpace(byte b) {
+        return b == ' ' || b == '\n' || b == '\r' || b == '\t';
+    }
+
+    /**
+     * Read-only Map view of an object entry; values are decoded on first access and kept.
+     */
+    private final class LazyObject extends AbstractMap<String,Object> {
+
+        private final int entry;
+        private int[] keys;
+        private Object[] decoded;
+
+        private LazyObject(int entry) {
+            this.entry = entry;
+        }
+
+        @Override
+        public int size() {
+            return starts[entry] / 2;
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return key instanceof String && find((String) key) >= 0;
+        }
+
+        @Override
+        public Object get(Object key) {
+            if (!(key instanceof String))
+                return null;
+            int member = find((String) key);
+            return member < 0 ? null : valueAt(member);
+        }
+
+        @Override
+        public Set<Entry<String,Object>> entrySet() {
+            return new AbstractSet<Entry<String,Object>>() {
+                @Override
+                public int size() {
+                    return LazyObject.this.size();
+                }
+
+                @Override
+                public Iterator<Entry<String,Object>> iterator() {
+                    return new Iterator<Entry<String,Object>>() {
+                        private int member = 0;
+
+                        @Override
+                        public boolean hasNext() {
+                            return member < size();
+                        }
+
+                        @Override
+                        public Entry<String,Object> next() {
+                            if (!hasNext())
+                                throw new NoSuchElementException();
+                            int e = keys()[member];
+                            String k = kinds[e] == STRING ? JSONKeys.intern(data, starts[e], ends[e] - starts[e]) : (String) value(e);
+                            return new SimpleImmutableEntry<>(k, valueAt(member++));
+                        }
+                    };
+                }
+            };
+        }
+
+        /**
+         * @return ordinal of the member with that key, -1 if absent
+         */
+        private int find(String key) {
+            int[] k = keys();
+            for (int member = 0; member < k.length; member++) {
+                if (keyEquals(k[member], key))
+                    return member;
+            }
+            return -1;
+        }
+
+        /**
+         * @return tape index of each member's key, computed once
+         */
+        private int[] keys() {
+            if (keys == null) {
+                int n = size();
+                int[] k = new int[n];
+                int e = entry + 1;
+                for (int i = 0; i < n; i++) {
+                    k[i] = e;
+                    e = next(e + 1);
+                }
+                keys = k;
+            }
+            return keys;
+        }
+
+        private Object valueAt(int member) {
+            if (decoded == null) {
+                decoded = new Object[size()];
+                Arrays.fill(decoded, NOT_DECODED);
+            }
+            Object v = decoded[member];
+            if (v == NOT_DECODED) {
+                v = value(keys()[member] + 1);
+                decoded[member] = v;
+            }
+            return v;
+        }
+    }
+
+    /**
+     * Read-only List view of an array entry; elements are decoded on first access and kept.
+     */
+    private final class LazyArray extends AbstractList<Object> implements RandomAccess {
+
+        private final int entry;
+        private int[] offsets;
+        private Object[] decoded;
+
+        private LazyArray(int entry) {
+            this.entry = entry;
+        }
+
+        @Override
+        public int size() {
+            return starts[entry];
+        }
+
+        @Override
+        public Object get(int index) {
+            if (index < 0 || index >= size())
+                throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size());
+            if (offsets == null) {
+                int n = size();
+                offsets = new int[n];
+                decoded = new Object[n];
+                Arrays.fill(decoded, NOT_DECODED);
+                int e = entry + 1;
+                for (int i = 0; i < n; i++) {
+                    offsets[i] = e;
+                    e = next(e);
+                }
+            }
+            Object v = decoded[index];
+            if (v == NOT_DECODED) {
+                v = value(offsets[index]);
+                decoded[index] = v;
+            }
+            return v;
+        }
+    }
+}
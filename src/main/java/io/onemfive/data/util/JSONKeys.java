@@ -0,0 +1,125 @@
+package io.onemfive.data.util;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Symbol table shared by the JSON parsers so that field names seen over and
+ * over (type, contentType, hash, fingerprint, routeId, ...) resolve to one
+ * canonical String instead of a fresh copy per object.
+ *
+ * The table is a fixed-size, direct-mapped hash of key text to String. A
+ * lookup hashes the chars or bytes in place with the same function as
+ * String.hashCode() and only allocates when the slot holds a different key,
+ * in which case the new key takes the slot over. Slots are written without
+ * locking: a racing thread either sees the old String or the new one, and
+ * both are correct answers.
+ *
+ * Each slot also remembers how many members the last object starting with
+ * that key had, so objects of the same shape get a map sized right up front
+ * instead of rehashing as they grow.
+ *
+ * @author objectorange
+ */
+public final class JSONKeys {
+
+    /** longer keys are not worth a slot */
+    public static final int MAX_KEY_LENGTH = 64;
+
+    private static final int SLOTS = 2048;
+    private static final int MASK = SLOTS - 1;
+
+    private static final String[] keys = new String[SLOTS];
+    private static final int[] sizes = new int[SLOTS];
+
+    private JSONKeys() {}
+
+    /**
+     * @return the canonical String for chars[start, start + length)
+     */
+    public static String intern(char[] chars, int start, int length) {
+        if (length > MAX_KEY_LENGTH)
+            return new String(chars, start, length);
+        int h = 0;
+        for (int i = start; i < start + length; i++)
+            h = 31 * h + chars[i];
+        int slot = slot(h);
+        String k = keys[slot];
+        if (k != null && k.length() == length) {
+            int i = 0;
+            while (i < length && k.charAt(i) == chars[start + i])
+                i++;
+            if (i == length)
+                return k;
+        }
+        k = new String(chars, start, length);
+        keys[slot] = k;
+        sizes[slot] = 0;
+        return k;
+    }
+
+    /**
+     * @return the canonical String for the unescaped UTF-8 bytes data[start, start + length)
+     */
+    public static String intern(byte[] data, int start, int length) {
+        if (length > MAX_KEY_LENGTH)
+            return new String(data, start, length, StandardCharsets.UTF_8);
+        int h = 0;
+        for (int i = start; i < start + length; i++) {
+            byte b = data[i];
+            if (b < 0) // multi-byte sequence, hash no longer matches String.hashCode()
+                return intern(new String(data, start, length, StandardCharsets.UTF_8));
+            h = 31 * h + b;
+        }
+        int slot = slot(h);
+        String k = keys[slot];
+        if (k != null && k.length() == length) {
+            int i = 0;
+            while (i < length && k.charAt(i) == data[start + i])
+                i++;
+            if (i == length)
+                return k;
+        }
+        k = new String(data, start, length, StandardCharsets.ISO_8859_1);
+        keys[slot] = k;
+        sizes[slot] = 0;
+        return k;
+    }
+
+    /**
+     * @return the canonical String equal to key, which becomes canonical if none was
+     */
+    public static String intern(String key) {
+        if (key.length() > MAX_KEY_LENGTH)
+            return key;
+        int slot = slot(key.hashCode());
+        String k = keys[slot];
+        if (key.equals(k))
+            return k;
+        keys[slot] = key;
+        sizes[slot] = 0;
+        return key;
+    }
+
+    /**
+     * @param firstKey canonical first key of an object about to be read
+     * @return initial capacity for a HashMap or LinkedHashMap holding that object
+     */
+    public static int capacity(String firstKey) {
+        int slot = slot(firstKey.hashCode());
+        int n = keys[slot] == firstKey ? sizes[slot] : 0;
+        return n == 0 ? 16 : n * 4 / 3 + 1;
+    }
+
+    /**
+     * Remember the member count of an object read starting with firstKey.
+     */
+    public static void shape(String firstKey, int size) {
+        int slot = slot(firstKey.hashCode());
+        if (keys[slot] == firstKey)
+            sizes[slot] = size;
+    }
+
+    private static int slot(int h) {
+        return (h ^ (h >>> 11)) & MASK;
+    }
+}
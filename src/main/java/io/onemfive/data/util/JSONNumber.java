@@ -0,0 +1,225 @@
+package io.onemfive.data.util;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A JSON number kept as its raw text until one of its values is asked for,
+ * as returned in {@link JSONReader.NumberMode#LAZY} mode.
+ *
+ * Also home to the single pass scanner the readers use to convert number
+ * tokens: digits are accumulated into a long with inline overflow checks,
+ * fraction and exponent are tracked as they go by, and only the final
+ * result is boxed. Text is only materialized for the rare values the fast
+ * path cannot represent exactly.
+ *
+ * @author objectorange
+ */
+public final class JSONNumber extends Number {
+
+    private static final long MAX_EXACT_DOUBLE = 1L << 53;
+    private static final double[] POW10 = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10,
+            1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+    private static final long MULTMIN = Long.MIN_VALUE / 10;
+
+    private final byte[] data;
+    private final int start;
+    private final int end;
+    private String text;
+
+    public JSONNumber(String text) {
+        this.data = null;
+        this.start = 0;
+        this.end = 0;
+        this.text = text;
+    }
+
+    JSONNumber(byte[] data, int start, int end) {
+        this.data = data;
+        this.start = start;
+        this.end = end;
+    }
+
+    @Override
+    public int intValue() {
+        return narrowest().intValue();
+    }
+
+    @Override
+    public long longValue() {
+        return narrowest().longValue();
+    }
+
+    @Override
+    public float floatValue() {
+        return (float) doubleValue();
+    }
+
+    @Override
+    public double doubleValue() {
+        return narrowest().doubleValue();
+    }
+
+    public BigDecimal bigDecimalValue() {
+        return new BigDecimal(toString());
+    }
+
+    @Override
+    public String toString() {
+        if (text == null)
+            text = new String(data, start, end - start, StandardCharsets.ISO_8859_1);
+        return text;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        return obj instanceof JSONNumber && toString().equals(obj.toString());
+    }
+
+    @Override
+    public int hashCode() {
+        return toString().hashCode();
+    }
+
+    private Number narrowest() {
+        if (data != null)
+            return parse(data, start, end, JSONReader.NumberMode.NARROWEST);
+        String s = toString();
+        return parse(s.toCharArray(), 0, s.length(), JSONReader.NumberMode.NARROWEST);
+    }
+
+    /**
+     * Convert the number token in data[start, end).
+     */
+    static Number parse(byte[] data, int start, int end, JSONReader.NumberMode mode) {
+        if (mode == JSONReader.NumberMode.LAZY)
+            return new JSONNumber(data, start, end);
+        return parse(data, null, start, end, mode);
+    }
+
+    /**
+     * Convert the number token in chars[start, end).
+     */
+    static Number parse(char[] chars, int start, int end, JSONReader.NumberMode mode) {
+        if (mode == JSONReader.NumberMode.LAZY)
+            return new JSONNumber(new String(chars, start, end - start));
+        return parse(null, chars, start, end, mode);
+    }
+
+    /**
+     * The scanner behind both parse methods, over whichever of data and chars is not null.
+     */
+    private static Number parse(byte[] data, char[] chars, int start, int end, JSONReader.NumberMode mode) {
+        int i = start;
+        boolean negative = i < end && at(data, chars, i) == '-';
+        if (negative)
+            i++;
+
+        // Integer and fraction digits accumulate negatively so Long.MIN_VALUE fits
+        long m = 0;
+        boolean overflow = false;
+        boolean decimal = false;
+        int scale = 0;
+        int digits = 0;
+        for (; i < end; i++) {
+            int d = at(data, chars, i) - '0';
+            if (d < 0 || d > 9)
+                break;
+            digits++;
+            if (!overflow && (m < MULTMIN || (m = m * 10) < Long.MIN_VALUE + d))
+                overflow = true;
+            else if (!overflow)
+                m -= d;
+        }
+        if (digits == 0)
+            throw invalid(data, chars, start, end);
+        if (i < end && at(data, chars, i) == '.') {
+            decimal = true;
+            i++;
+            int fraction = 0;
+            for (; i < end; i++) {
+                int d = at(data, chars, i) - '0';
+                if (d < 0 || d > 9)
+                    break;
+                fraction++;
+                if (!overflow && (m < MULTMIN || (m = m * 10) < Long.MIN_VALUE + d))
+                    overflow = true;
+                else if (!overflow) {
+                    m -= d;
+                    scale--;
+                }
+            }
+            if (fraction == 0)
+                throw invalid(data, chars, start, end);
+        }
+        if (i < end && (at(data, chars, i) == 'e' || at(data, chars, i) == 'E')) {
+            decimal = true;
+            i++;
+            boolean negativeExp = false;
+            if (i < end && (at(data, chars, i) == '-' || at(data, chars, i) == '+'))
+                negativeExp = at(data, chars, i++) == '-';
+            int exp = 0;
+            int expDigits = 0;
+            for (; i < end; i++) {
+                int d = at(data, chars, i) - '0';
+                if (d < 0 || d > 9)
+                    break;
+                expDigits++;
+                if (exp < 10000)
+                    exp = exp * 10 + d;
+            }
+            if (expDigits == 0)
+                throw invalid(data, chars, start, end);
+            scale += negativeExp ? -exp : exp;
+        }
+        if (i != end)
+            throw invalid(data, chars, start, end);
+        Number n = convert(negative, m, overflow, decimal, scale, mode);
+        if (n != null)
+            return n;
+        String text = text(data, chars, start, end);
+        return mode == JSONReader.NumberMode.BIG_DECIMAL ? new BigDecimal(text) : (Number) Double.parseDouble(text);
+    }
+
+    private static int at(byte[] data, char[] chars, int i) {
+        return data != null ? data[i] : chars[i];
+    }
+
+    private static String text(byte[] data, char[] chars, int start, int end) {
+        return data != null
+                ? new String(data, start, end - start, StandardCharsets.ISO_8859_1)
+                : new String(chars, start, end - start);
+    }
+
+    /**
+     * Box the accumulated value, or return null when only the text can represent it exactly.
+     *
+     * @param m negated significant digits
+     * @param scale power of ten to apply to m
+     */
+    private static Number convert(boolean negative, long m, boolean overflow, boolean decimal, int scale, JSONReader.NumberMode mode) {
+        // -Long.MIN_VALUE does not fit a long
+        if (overflow || (!negative && m == Long.MIN_VALUE))
+            return null;
+        if (!decimal) {
+            long v = negative ? m : -m;
+            if (v >= Integer.MIN_VALUE && v <= Integer.MAX_VALUE)
+                return (int) v;
+            return v;
+        }
+        if (mode == JSONReader.NumberMode.BIG_DECIMAL)
+            return BigDecimal.valueOf(negative ? m : -m, -scale);
+        // Exact when both the digits and the power of ten are exactly representable doubles
+        if (m < -MAX_EXACT_DOUBLE || scale < -22 || scale > 22)
+            return null;
+        double d = (double) -m;
+        d = scale < 0 ? d / POW10[-scale] : d * POW10[scale];
+        return negative ? -d : d;
+    }
+
+    private static IllegalStateException invalid(byte[] data, char[] chars, int start, int end) {
+        return new IllegalStateException("Failed to parse JSON number '" + text(data, chars, start, end) + "'");
+    }
+}
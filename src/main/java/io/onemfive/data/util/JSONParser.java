@@ -1,8 +1,15 @@
 package io.onemfive.data.util;
 
+import java.io.InputStream;
+import java.io.Reader;
+import java.nio.ByteBuffer;
 import java.util.*;
-
-import java.lang.reflect.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 public class JSONParser {
 
@@ -17,438 +24,282 @@ public class JSONParser {
     {
         if (json == null)
             return null;
-        return parse(json, new int[1]);
+        return parse(new JSONReader(json));
     }
 
-    public static List<Object> parseStream(String json)
+    /**
+     * Parse the first JSON value read from the stream as UTF-8 and close it.
+     */
+    public static Object parse(InputStream in)
     {
-        if (json == null)
+        if (in == null)
             return null;
-        int[] pos = new int[1];
-        List<Object> res = new ArrayList<>();
-        json = json.trim();
-        while (pos[0] < json.length())
-            res.add(parse(json, pos));
-        return res;
+        return parse(new JSONReader(in));
     }
 
-    public static String toString(Object obj)
+    /**
+     * Parse the first JSON value read from the reader and close it.
+     */
+    public static Object parse(Reader reader)
     {
-        StringBuffer buf = new StringBuffer();
-        toString(obj, buf);
-        return buf.toString();
+        if (reader == null)
+            return null;
+        return parse(new JSONReader(reader));
     }
 
-    public static String stripWhitespace(String src)
+    /**
+     * Parse the first JSON value in the UTF-8 encoded bytes without decoding
+     * them to a String first.
+     */
+    public static Object parse(byte[] json)
     {
-        boolean inQuote = false, isEscaped = false;
-        StringBuffer buf = new StringBuffer();
-
-        for (int i=0; i<src.length(); i++)
-        {
-            char ch = src.charAt(i);
-
-            if (!inQuote)
-            {
-                if (ch == '"')
-                {
-                    inQuote = true;
-                    isEscaped = false;
-                }
-                else if (Character.isWhitespace(ch))
-                    continue;
-            }
-            else if (inQuote)
-            {
-                if (ch == '\\')
-                    isEscaped = !isEscaped;
-                else if ((ch == '"') && !isEscaped)
-                    inQuote = false;
-            }
-
-            buf.append(ch);
-        }
-
-        return buf.toString();
+        if (json == null)
+            return null;
+        return parse(new JSONByteReader(json));
     }
 
-    public static Object getValue(Object json, String path)
+    public static Object parse(byte[] json, int offset, int length)
     {
-        String[] parts = path.split("\\.");
-
-        for (int i=0; i<parts.length; i++)
-        {
-            int index = -1;
-            String key = parts[i];
-
-            if (key.endsWith("]"))
-            {
-                int b = key.indexOf("[");
-                try
-                {
-                    index = Integer.parseInt(key.substring(b+1, key.length()-1));
-                    key = key.substring(0, b);
-                }
-                catch (Exception e)
-                {
-                    throw new IllegalStateException("Path syntax error - invalid index");
-                }
-            }
-
-            if ((json != null) && (json instanceof Map))
-                json = ((Map) json).get(key);
-            else
-                return null;
-
-            if (index >= 0)
-            {
-                if ((json != null) && (json instanceof List))
-                    json = ((List) json).get(index);
-                else
-                    return null;
-            }
-        }
-
-        return json;
+        if (json == null)
+            return null;
+        return parse(new JSONByteReader(json, offset, length));
     }
 
-    private static char skipSpaces(String json, int[] pos)
+    /**
+     * Parse the first JSON value in the UTF-8 encoded buffer. Heap buffers
+     * are scanned as bytes, direct buffers are decoded in small chunks.
+     */
+    public static Object parse(ByteBuffer json)
     {
-        while (true)
-        {
-            if (pos[0] >= json.length())
-                return 0;
-            char ch = json.charAt(pos[0]);
-            if (Character.isWhitespace(ch))
-                pos[0]++;
-            else
-                return ch;
-        }
+        if (json == null)
+            return null;
+        return parse(json.hasArray() ? new JSONByteReader(json) : new JSONReader(json));
     }
 
-    private static Boolean parseBoolean(String json, int[] pos)
+    /**
+     * Read the JSON object into target, field by field when its class has a
+     * {@link JSONCodec} and through fromMap() otherwise.
+     *
+     * @return target, or null when json is null
+     */
+    public static <T> T parse(String json, T target)
     {
-        if (json.regionMatches(pos[0], "true", 0, 4))
-        {
-            pos[0] += 4;
-            return Boolean.TRUE;
-        }
-
-        if (json.regionMatches(pos[0], "false", 0, 5))
-        {
-            pos[0] += 5;
-            return Boolean.FALSE;
-        }
+        if (json == null)
+            return null;
+        return parse(new JSONReader(json), target);
+    }
 
-        return null;
+    public static <T> T parse(byte[] json, T target)
+    {
+        if (json == null)
+            return null;
+        return parse(new JSONByteReader(json), target);
     }
 
-    private static Number parseNumber(String json, int[] pos)
+    public static <T> T parse(InputStream in, T target)
     {
-        int endPos = json.length();
-        int startPos = pos[0];
+        if (in == null)
+            return null;
+        return parse(new JSONReader(in), target);
+    }
 
-        boolean foundExp = false;
-        boolean foundDot = false;
-        boolean allowPM = true;
-        for (int i=startPos; i<endPos; i++)
-        {
-            char ch = json.charAt(i);
-            if ((ch == 'e') || (ch == 'E'))
-            {
-                if (foundExp)
-                    return null;
-                allowPM = true;
-                foundExp = true;
-                continue;
-            }
+    /**
+     * Index the UTF-8 bytes in one pass and return lazy Map/List views that
+     * decode members only as they are accessed; see {@link JSONDocument}.
+     */
+    public static Object parseLazy(byte[] json)
+    {
+        if (json == null)
+            return null;
+        return JSONDocument.parse(json).getRoot();
+    }
 
-            if ((ch == '+') || (ch == '-'))
-            {
-                if (allowPM)
-                {
-                    allowPM = false;
-                    ch = skipSpaces(json, pos);
-                    if (ch == 0)
-                        return null;
-                    else
-                        continue;
-                }
-                else
-                    return null;
-            }
+    public static List<Object> parseStream(String json)
+    {
+        if (json == null)
+            return null;
+        return parseStream(new JSONReader(json));
+    }
 
-            allowPM = false;
-            if (ch == '.')
-            {
-                if (foundDot)
-                    return null;
-                foundDot = true;
-                continue;
-            }
+    public static List<Object> parseStream(byte[] json)
+    {
+        if (json == null)
+            return null;
+        return parseStream(new JSONByteReader(json));
+    }
 
-            if (!Character.isDigit(json.charAt(i)))
-            {
-                pos[0] = endPos = i;
-                break;
-            }
-        }
+    /**
+     * Parse concatenated JSON or NDJSON documents, in parallel on the common
+     * fork-join pool when asked to. Results keep the order of the input.
+     */
+    public static List<Object> parseStream(String json, boolean parallel)
+    {
+        if (json == null)
+            return null;
+        if (!parallel)
+            return parseStream(json);
+        return stream(json).parallel().collect(Collectors.toList());
+    }
 
-        if (startPos == endPos)
+    public static List<Object> parseStream(byte[] json, boolean parallel)
+    {
+        if (json == null)
             return null;
+        if (!parallel)
+            return parseStream(json);
+        return stream(json).parallel().collect(Collectors.toList());
+    }
 
-        String numericString = json.substring(startPos, endPos);
+    /**
+     * Parse concatenated JSON or NDJSON documents in parallel on the supplied pool.
+     */
+    public static List<Object> parseStream(String json, ForkJoinPool pool)
+    {
+        if (json == null)
+            return null;
         try
         {
-            return Integer.parseInt(numericString);
+            return pool.submit(() -> stream(json).parallel().collect(Collectors.toList())).get();
         }
-        catch (Exception e) {}
-
-        try
+        catch (InterruptedException e)
         {
-            return Long.parseLong(numericString);
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted parsing json stream", e);
         }
-        catch (Exception e) {}
-
-        try
+        catch (ExecutionException e)
         {
-            return Double.parseDouble(numericString);
+            if (e.getCause() instanceof RuntimeException)
+                throw (RuntimeException) e.getCause();
+            throw new IllegalStateException(e.getCause());
         }
-        catch (Exception e) {}
+    }
 
-        throw new IllegalStateException("Failed to parse JSON number at "+startPos+" '"+numericString+"'");
+    /**
+     * Parse concatenated JSON or NDJSON documents in parallel, handing each
+     * result to the consumer as soon as it is ready and in no particular order.
+     * The consumer must be thread-safe.
+     */
+    public static void parseStream(String json, Consumer<Object> consumer)
+    {
+        if (json == null)
+            return;
+        stream(json).parallel().unordered().forEach(consumer);
     }
 
-    private static List parseArray(String json, int[] pos)
+    public static void parseStream(byte[] json, Consumer<Object> consumer)
     {
-        int start = pos[0];
-        if (json.charAt(start) != '[')
-            return null;
-        pos[0]++;
+        if (json == null)
+            return;
+        stream(json).parallel().unordered().forEach(consumer);
+    }
 
-        ArrayList result = new ArrayList();
-        while (true)
-        {
-            char ch = skipSpaces(json, pos);
-            if (ch == 0)
-                break;
-            else if (ch == ']')
-            {
-                pos[0]++;
-                return result;
-            }
-            else if (ch == ',')
-            {
-                pos[0]++;
-                if (skipSpaces(json, pos) == 0)
-                    break;
-            }
+    /**
+     * @return a sequential Stream of the top level documents, parsed as they are consumed;
+     * call parallel() on it to spread parsing across cores
+     */
+    public static Stream<Object> stream(String json)
+    {
+        return StreamSupport.stream(new JSONSpliterator(json), false);
+    }
 
-            Object val = parse(json, pos);
-            result.add(val);
-        }
-        throw new IllegalStateException("json Array format at "+start+" ["+(pos[0]-start)+"]  '"+json.substring(start)+"'");
+    public static Stream<Object> stream(byte[] json)
+    {
+        return StreamSupport.stream(new JSONSpliterator(json), false);
     }
 
-    private static Map parseObject(String json, int[] pos)
+    /**
+     * Parse concatenated JSON values read from the stream as UTF-8 and close it.
+     */
+    public static List<Object> parseStream(InputStream in)
     {
-        int start = pos[0];
-        if (json.charAt(start) != '{')
+        if (in == null)
             return null;
-        pos[0]++;
-
-        Map result = new LinkedHashMap();
-        while (true)
-        {
-            char ch = skipSpaces(json, pos);
-            if (ch == 0)
-                break;
-            else if (ch == '}')
-            {
-                pos[0]++;
-                return result;
-            }
-            else if (ch == ',')
-            {
-                pos[0]++;
-                if (skipSpaces(json, pos) == 0)
-                    break;
-            }
-
-            String key = parseString(json, pos);
-            ch = skipSpaces(json, pos);
-            if (ch == 0)
-                break;
-
-            pos[0]++;
-            if (ch != ':')
-                break;
+        return parseStream(new JSONReader(in));
+    }
 
-            Object val = parse(json, pos);
-            result.put(key, val);
-        }
-        throw new IllegalStateException("json Object format at "+pos[0]+"  ["+start+", "+json.length()+"]  '"+json.substring(pos[0])+"'");
+    public static String toString(Object obj)
+    {
+        return JSONWriter.toString(obj);
     }
 
-    private static String parseString(String json, int[] pos)
+    public static String stripWhitespace(String src)
     {
-        int startPos = pos[0];
-        if (json.charAt(startPos) != '"')
-            return null;
-        pos[0]++;
+        boolean inQuote = false, isEscaped = false;
+        StringBuffer buf = new StringBuffer();
 
-        boolean isEscape = false;
-        for (int i=startPos+1; i<json.length(); i++)
+        for (int i=0; i<src.length(); i++)
         {
-            char ch = json.charAt(i);
-            if (ch == '\\')
-            {
-                isEscape = !isEscape;
-                continue;
-            }
+            char ch = src.charAt(i);
 
-            if (ch == '"')
+            if (!inQuote)
             {
-                if (!isEscape)
+                if (ch == '"')
                 {
-                    pos[0] = i+1;
-                    return json.substring(startPos+1, i);
+                    inQuote = true;
+                    isEscaped = false;
                 }
+                else if (Character.isWhitespace(ch))
+                    continue;
+            }
+            else if (inQuote)
+            {
+                if (ch == '\\')
+                    isEscaped = !isEscaped;
+                else if ((ch == '"') && !isEscaped)
+                    inQuote = false;
             }
 
-            isEscape = false;
+            buf.append(ch);
         }
 
-        throw new IllegalStateException("json string at at "+startPos+"  '"+json+"'");
+        return buf.toString();
     }
 
-    private static Object parse(String json, int[] pos)
+    /**
+     * Resolve a dotted path such as "route.service" or "routes[2].operation".
+     * Paths are compiled once and cached; see {@link JSONPath}.
+     */
+    public static Object getValue(Object json, String path)
     {
-        char ch = skipSpaces(json, pos);
-        if (ch == 0)
-            return null;
-        int startPos = pos[0];
-        if (startPos == json.length())
-            return null;
-
-        Object result = parseArray(json, pos);
-        if (result != null)
-            return result;
-
-        result = parseObject(json, pos);
-        if (result != null)
-            return result;
-
-        result = parseBoolean(json, pos);
-        if (result != null)
-            return result;
-
-        result = parseString(json, pos);
-        if (result != null)
-            return result;
-
-        result = parseNumber(json, pos);
-        if (result != null)
-            return result;
-
-        if (json.regionMatches(pos[0], "null", 0, 4))
-        {
-            pos[0] += 4;
-            return null;
-        }
-
-        throw new IllegalStateException("json object at at "+startPos+"  '"+json+"'");
+        return JSONPath.compile(path).getValue(json);
     }
 
-    private static void escapeString(String s, StringBuffer buf)
+    private static Object parse(JSONReader reader)
     {
-        buf.append('"');
-        for (int i=0; i<s.length(); i++)
+        try
         {
-            char ch = s.charAt(i);
-            if ((ch == '"') || (ch == '\\'))
-                buf.append('\\');
-            buf.append(ch);
+            return reader.readValue();
+        }
+        finally
+        {
+            reader.close();
         }
-        buf.append('"');
     }
 
-    private static void toString(Object obj, StringBuffer buf)
+    private static <T> T parse(JSONReader reader, T target)
     {
-        if (obj == null)
-            buf.append("null");
-        else if ((obj instanceof Boolean) || (obj instanceof Number))
-            buf.append(obj.toString());
-        else if (obj instanceof Map)
+        try
         {
-            Map m = (Map) obj;
-            boolean first = true;
-            Iterator itt = m.keySet().iterator();
-
-            buf.append('{');
-            while (itt.hasNext())
-            {
-                if (!first)
-                    buf.append(',');
-
-                String s = (String) itt.next();
-                Object val = m.get(s);
-                escapeString(s, buf);
-                buf.append(":");
-                toString(val, buf);
-                first = false;
-            }
-            buf.append('}');
+            return reader.readObject(target);
         }
-        else if (obj instanceof Object[])
+        finally
         {
-            Object[] l = (Object[]) obj;
-            boolean first = true;
-
-            buf.append('[');
-            for (int i=0; i<l.length; i++)
-            {
-                if (!first)
-                    buf.append(',');
-
-                toString(l[i], buf);
-                first = false;
-            }
-            buf.append(']');
+            reader.close();
         }
-        else if (obj instanceof List)
-        {
-            List l = (List) obj;
-            boolean first = true;
-            Iterator itt = l.iterator();
-
-            buf.append('[');
-            while (itt.hasNext())
-            {
-                if (!first)
-                    buf.append(',');
+    }
 
-                Object val = itt.next();
-                toString(val, buf);
-                first = false;
-            }
-            buf.append(']');
+    private static List<Object> parseStream(JSONReader reader)
+    {
+        List<Object> res = new ArrayList<>();
+        try
+        {
+            while (reader.nextToken() != null)
+                res.add(reader.readValue());
         }
-        else if (obj instanceof String)
-            escapeString(obj.toString(), buf);
-        else
+        finally
         {
-            try
-            {
-                Class cls = obj.getClass();
-                Method m = cls.getDeclaredMethod("toJSON", new Class[0]);
-                Object jsonObj = m.invoke(obj, new Object[0]);
-                buf.append(toString(jsonObj));
-            }
-            catch (Exception e)
-            {
-                escapeString(obj.toString(), buf);
-            }
+            reader.close();
         }
+        return res;
     }
 }
@@ -0,0 +1,172 @@
+package io.onemfive.data.util;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A pre-tokenized path into a parsed JSON graph, e.g. "route.service" or "routes[2].operation".
+ *
+ * Segments are separated by '.' and may end in a single [index] into a List.
+ * Compiled paths are immutable and thread-safe; compile(String) keeps a bounded
+ * cache so fixed paths are only ever tokenized once.
+ *
+ * @author objectorange
+ */
+public final class JSONPath {
+
+    private static final int MAX_CACHED = 1024;
+    private static final Map<String, JSONPath> cache = new ConcurrentHashMap<>();
+
+    private final String path;
+    private final String[] keys;
+    private final int[] indexes;
+
+    private JSONPath(String path) {
+        this.path = path;
+        String[] parts = path.split("\\.");
+        keys = new String[parts.length];
+        indexes = new int[parts.length];
+        for (int i = 0; i < parts.length; i++) {
+            String key = parts[i];
+            int index = -1;
+            if (key.endsWith("]")) {
+                int b = key.indexOf("[");
+                try {
+                    index = Integer.parseInt(key.substring(b + 1, key.length() - 1));
+                    key = key.substring(0, b);
+                } catch (Exception e) {
+                    throw new IllegalStateException("Path syntax error - invalid index");
+                }
+            }
+            keys[i] = key;
+            indexes[i] = index;
+        }
+    }
+
+    /**
+     * @return the compiled path, from the cache when it has been compiled before
+     */
+    public static JSONPath compile(String path) {
+        JSONPath p = cache.get(path);
+        if (p == null) {
+            p = new JSONPath(path);
+            // once full, new paths are simply not cached rather than evicting hot ones
+            if (cache.size() < MAX_CACHED)
+                cache.put(path, p);
+        }
+        return p;
+    }
+
+    /**
+     * Compile several paths for extraction in a single traversal.
+     */
+    public static Batch batch(String... paths) {
+        return new Batch(paths);
+    }
+
+    public Object getValue(Object json) {
+        for (int i = 0; i < keys.length; i++) {
+            json = step(json, keys[i], indexes[i]);
+            if (json == null)
+                return null;
+        }
+        return json;
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        return obj instanceof JSONPath && path.equals(((JSONPath) obj).path);
+    }
+
+    @Override
+    public int hashCode() {
+        return path.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return path;
+    }
+
+    private static Object step(Object json, String key, int index) {
+        if (!(json instanceof Map))
+            return null;
+        json = ((Map) json).get(key);
+        if (index >= 0) {
+            if (json instanceof List && index < ((List) json).size())
+                json = ((List) json).get(index);
+            else
+                return null;
+        }
+        return json;
+    }
+
+    /**
+     * Several paths merged into a tree on their shared prefixes so that
+     * every prefix is resolved once no matter how many paths share it.
+     */
+    public static final class Batch {
+
+        private final Node root = new Node(null, -1);
+        private final int size;
+
+        private Batch(String[] paths) {
+            size = paths.length;
+            for (int p = 0; p < paths.length; p++) {
+                JSONPath compiled = compile(paths[p]);
+                Node n = root;
+                for (int i = 0; i < compiled.keys.length; i++)
+                    n = n.child(compiled.keys[i], compiled.indexes[i]);
+                n.slots.add(p);
+            }
+        }
+
+        /**
+         * @return the value for each path in the order the paths were supplied
+         */
+        public Object[] getValues(Object json) {
+            Object[] values = new Object[size];
+            root.collect(json, values);
+            return values;
+        }
+    }
+
+    private static final class Node {
+
+        private final String key;
+        private final int index;
+        private final Map<String, Node> children = new LinkedHashMap<>();
+        private final List<Integer> slots = new ArrayList<>(1);
+
+        private Node(String key, int index) {
+            this.key = key;
+            this.index = index;
+        }
+
+        private Node child(String key, int index) {
+            String id = index < 0 ? key : key + "[" + index + "]";
+            Node n = children.get(id);
+            if (n == null) {
+                n = new Node(key, index);
+                children.put(id, n);
+            }
+            return n;
+        }
+
+        private void collect(Object json, Object[] values) {
+            for (int slot : slots)
+                values[slot] = json;
+            if (json == null)
+                return;
+            for (Node child : children.values())
+                child.collect(step(json, child.key, child.index), values);
+        }
+    }
+}
@@ -1,47 +1,156 @@
 package io.onemfive.data.util;
 
+import java.io.*;
+import java.util.Arrays;
+
+/**
+ * Pretty printer for JSON text and toMap() graphs.
+ *
+ * Text is streamed from a Reader to a Writer a buffer at a time, and
+ * indentation is copied out of a precomputed run of spaces, so a large DID
+ * document or Content dump is never held whole on either side. Graphs are
+ * printed by {@link JSONWriter} in the same layout without going through
+ * compact JSON first.
+ *
+ * @author objectorange
+ */
 public class JSONPretty {
 
+    private static final int BUFFER_SIZE = 4096;
+    private static final char[] NEWLINE = System.lineSeparator().toCharArray();
+    private static final char[] SPACES = new char[128];
+    static {
+        Arrays.fill(SPACES, ' ');
+    }
+
     public static String toPretty(final String json, final int indention) {
-        final char[] chars = json.toCharArray();
-        final String newline = System.lineSeparator();
+        StringWriter out = new StringWriter(json.length() * 2);
+        try {
+            toPretty(new StringReader(json), out, indention);
+        } catch (IOException e) {
+            // StringReader and StringWriter do not throw
+            throw new IllegalStateException(e);
+        }
+        return out.toString();
+    }
+
+    /**
+     * Pretty print the JSON text read from in to out, leaving both open.
+     */
+    public static void toPretty(Reader in, Writer out, int indention) throws IOException {
+        char[] src = new char[BUFFER_SIZE];
+        Printer p = new Printer(out);
+        boolean inQuotes = false, escaped = false;
+        int indent = 0;
+        int n;
+        while ((n = in.read(src, 0, src.length)) >= 0) {
+            for (int i = 0; i < n; i++) {
+                char c = src[i];
+                if (escaped) {
+                    escaped = false;
+                    p.append(c);
+                    continue;
+                }
+                if (c == '"') {
+                    inQuotes = !inQuotes;
+                    p.append(c);
+                    continue;
+                }
+                if (!inQuotes) {
+                    switch (c) {
+                        case '{':
+                        case '[':
+                            p.append(c);
+                            p.newline(indent += indention);
+                            continue;
+                        case '}':
+                        case ']':
+                            p.newline(indent -= indention);
+                            p.append(c);
+                            continue;
+                        case ':':
+                            p.append(c);
+                            p.append(' ');
+                            continue;
+                        case ',':
+                            p.append(c);
+                            p.newline(indent);
+                            continue;
+                        default:
+                            if (Character.isWhitespace(c)) continue;
+                    }
+                }
+                if (c == '\\')
+                    escaped = true;
+                p.append(c);
+            }
+        }
+        p.flush();
+    }
+
+    /**
+     * @return the toMap() graph pretty printed
+     */
+    public static String print(Object graph, int indention) {
+        StringWriter out = new StringWriter();
+        try {
+            print(graph, out, indention);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return out.toString();
+    }
 
-        StringBuilder sb = new StringBuilder();
-        boolean begin_quotes = false;
+    /**
+     * Pretty print the toMap() graph straight to out, leaving it open.
+     */
+    public static void print(Object graph, Writer out, int indention) throws IOException {
+        new JSONWriter(out).setIndent(indention).writeValue(graph).flush();
+    }
 
-        for (int i = 0, indent = 0; i < chars.length; i++) {
-            char c = chars[i];
+    /**
+     * Batches output so an unbuffered Writer is not called per char.
+     */
+    private static final class Printer {
 
-            if (c == '\"') {
-                sb.append(c);
-                begin_quotes = !begin_quotes;
-                continue;
-            }
+        private final Writer out;
+        private final char[] buf = new char[BUFFER_SIZE];
+        private int count = 0;
 
-            if (!begin_quotes) {
-                switch (c) {
-                    case '{':
-                    case '[':
-                        sb.append(c + newline + String.format("%" + (indent += indention) + "s", ""));
-                        continue;
-                    case '}':
-                    case ']':
-                        sb.append(newline + ((indent -= indention) > 0 ? String.format("%" + indent + "s", "") : "") + c);
-                        continue;
-                    case ':':
-                        sb.append(c + " ");
-                        continue;
-                    case ',':
-                        sb.append(c + newline + (indent > 0 ? String.format("%" + indent + "s", "") : ""));
-                        continue;
-                    default:
-                        if (Character.isWhitespace(c)) continue;
-                }
+        private Printer(Writer out) {
+            this.out = out;
+        }
+
+        private void append(char c) throws IOException {
+            if (count == buf.length)
+                flushBuffer();
+            buf[count++] = c;
+        }
+
+        private void newline(int indent) throws IOException {
+            append(NEWLINE, NEWLINE.length);
+            while (indent > 0) {
+                int k = Math.min(indent, SPACES.length);
+                append(SPACES, k);
+                indent -= k;
             }
+        }
 
-            sb.append(c + (c == '\\' ? "" + chars[++i] : ""));
+        private void append(char[] chars, int len) throws IOException {
+            if (count + len > buf.length)
+                flushBuffer();
+            System.arraycopy(chars, 0, buf, count, len);
+            count += len;
         }
 
-        return sb.toString();
+        private void flushBuffer() throws IOException {
+            out.write(buf, 0, count);
+            count = 0;
+        }
+
+        private void flush() throws IOException {
+            flushBuffer();
+            out.flush();
+        }
     }
 }
@@ -0,0 +1,338 @@
+package io.onemfive.data.util;
+
+import java.nio.ByteBuffer;
+import java.util.*;
+import java.util.function.Consumer;
+
+/**
+ * Resumable push parser for UTF-8 JSON arriving in arbitrary fragments.
+ *
+ * Fragments are fed as they come off the network and every top level value
+ * is handed to the consumer as soon as its last byte has been seen, so a
+ * message no longer has to be buffered whole before parsing starts.
+ * Concatenated values and NDJSON are both accepted.
+ *
+ * All parsing state lives in the parser itself: the containers under
+ * construction and the bytes of the one token that may straddle a fragment
+ * boundary. Nothing refers back to a fed buffer, so a selector thread can
+ * keep one small parser per connection and reuse its read buffer for all of
+ * them:
+ * <pre>
+ *     JSONPushParser p = new JSONPushParser(envelope -> dispatch(envelope));
+ *     ...
+ *     buffer.flip();
+ *     p.feed(buffer);
+ *     buffer.clear();
+ *     ...
+ *     p.end(); // on EOF
+ * </pre>
+ *
+ * Not thread-safe; after an exception the parser must be reset() before it is fed again.
+ *
+ * @author objectorange
+ */
+public class JSONPushParser {
+
+    // What the parser is waiting for at each nesting level
+    private static final byte CTX_TOP = 0;
+    private static final byte CTX_OBJECT_START = 1; // key or '}'
+    private static final byte CTX_OBJECT_KEY = 2;   // ':'
+    private static final byte CTX_OBJECT_COLON = 3; // value
+    private static final byte CTX_OBJECT_VALUE = 4; // ',' or '}'
+    private static final byte CTX_OBJECT_COMMA = 5; // key
+    private static final byte CTX_ARRAY_START = 6;  // value or ']'
+    private static final byte CTX_ARRAY_VALUE = 7;  // ',' or ']'
+    private static final byte CTX_ARRAY_COMMA = 8;  // value
+
+    // Token being scanned when a fragment ends
+    private static final byte TOKEN_NONE = 0;
+    private static final byte TOKEN_STRING = 1;
+    private static final byte TOKEN_STRING_ESCAPE = 2;
+    private static final byte TOKEN_NUMBER = 3;
+    private static final byte TOKEN_LITERAL = 4;
+
+    private final Consumer<Object> consumer;
+    private JSONReader.NumberMode numberMode = JSONReader.NumberMode.NARROWEST;
+
+    private byte[] contexts = new byte[16];
+    private Object[] containers = new Object[16];
+    private String[] keys = new String[16];
+    private int depth = 0;
+
+    private byte token = TOKEN_NONE;
+    private byte[] text = new byte[32];
+    private int textLength = 0;
+    private boolean textEscaped;
+    private String literal;
+
+    private long position = 0;
+
+    /**
+     * @param consumer receives each top level value once it is complete
+     */
+    public JSONPushParser(Consumer<Object> consumer) {
+        this.consumer = consumer;
+    }
+
+    public JSONReader.NumberMode getNumberMode() {
+        return numberMode;
+    }
+
+    public void setNumberMode(JSONReader.NumberMode numberMode) {
+        this.numberMode = numberMode;
+    }
+
+    /**
+     * Parse all remaining bytes of the fragment, leaving its position at its limit.
+     */
+    public void feed(ByteBuffer fragment) {
+        if (fragment.hasArray()) {
+            feed(fragment.array(), fragment.arrayOffset() + fragment.position(), fragment.remaining());
+            fragment.position(fragment.limit());
+        } else {
+            while (fragment.hasRemaining())
+                accept(fragment.get());
+        }
+    }
+
+    public void feed(byte[] fragment) {
+        feed(fragment, 0, fragment.length);
+    }
+
+    public void feed(byte[] fragment, int offset, int length) {
+        int end = offset + length;
+        for (int i = offset; i < end; i++)
+            accept(fragment[i]);
+    }
+
+    /**
+     * Signal the end of input. A trailing top level number is completed; anything
+     * else left open is an error.
+     */
+    public void end() {
+        if (token == TOKEN_NUMBER)
+            number();
+        if (token != TOKEN_NONE || depth > 0)
+            throw error("unexpected end of input");
+    }
+
+    /**
+     * @return true when no value is partially parsed, i.e. input so far ended on a value boundary
+     */
+    public boolean isIdle() {
+        return token == TOKEN_NONE && depth == 0;
+    }
+
+    /**
+     * @return number of bytes fed so far
+     */
+    public long getPosition() {
+        return position;
+    }
+
+    /**
+     * Drop any partially parsed value so the parser can be fed a new stream.
+     */
+    public void reset() {
+        Arrays.fill(containers, 0, depth + 1, null);
+        Arrays.fill(keys, 0, depth + 1, null);
+        depth = 0;
+        contexts[0] = CTX_TOP;
+        token = TOKEN_NONE;
+        textLength = 0;
+        literal = null;
+        position = 0;
+    }
+
+    private void accept(byte b) {
+        switch (token) {
+            case TOKEN_STRING: {
+                if (b == '"') {
+                    string();
+                } else {
+                    if (b == '\\') {
+                        textEscaped = true;
+                        token = TOKEN_STRING_ESCAPE;
+                    }
+                    append(b);
+                }
+                position++;
+                return;
+            }
+            case TOKEN_STRING_ESCAPE: {
+                append(b);
+                token = TOKEN_STRING;
+                position++;
+                return;
+            }
+            case TOKEN_LITERAL: {
+                if (b != literal.charAt(textLength))
+                    throw error("expected '" + literal + "'");
+                if (++textLength == literal.length())
+                    literal();
+                position++;
+                return;
+            }
+            case TOKEN_NUMBER: {
+                if ((b >= '0' && b <= '9') || b == '-' || b == '+' || b == '.' || b == 'e' || b == 'E') {
+                    append(b);
+                    position++;
+                    return;
+                }
+                // the delimiter ending a number is structural, handled below
+                number();
+            }
+        }
+        if (b == ' ' || b == '\n' || b == '\r' || b == '\t') {
+            position++;
+            return;
+        }
+        switch (contexts[depth]) {
+            case CTX_OBJECT_START:
+            case CTX_OBJECT_COMMA: {
+                if (b == '}' && contexts[depth] == CTX_OBJECT_START)
+                    endContainer();
+                else if (b == '"')
+                    startToken(TOKEN_STRING);
+                else
+                    throw error("expected field name");
+                break;
+            }
+            case CTX_OBJECT_KEY: {
+                if (b != ':')
+                    throw error("expected ':'");
+                contexts[depth] = CTX_OBJECT_COLON;
+                break;
+            }
+            case CTX_OBJECT_VALUE: {
+                if (b == '}')
+                    endContainer();
+                else if (b == ',')
+                    contexts[depth] = CTX_OBJECT_COMMA;
+                else
+                    throw error("expected ',' or '}'");
+                break;
+            }
+            case CTX_ARRAY_VALUE: {
+                if (b == ']')
+                    endContainer();
+                else if (b == ',')
+                    contexts[depth] = CTX_ARRAY_COMMA;
+                else
+                    throw error("expected ',' or ']'");
+                break;
+            }
+            case CTX_ARRAY_START: {
+                if (b == ']') {
+                    endContainer();
+                    break;
+                }
+                startValue(b);
+                break;
+            }
+            default: startValue(b);
+        }
+        position++;
+    }
+
+    private void startValue(byte b) {
+        switch (b) {
+            case '{': push(CTX_OBJECT_START, new LinkedHashMap<String,Object>()); return;
+            case '[': push(CTX_ARRAY_START, new ArrayList<>()); return;
+            case '"': startToken(TOKEN_STRING); return;
+            case 't': startLiteral("true"); return;
+            case 'f': startLiteral("false"); return;
+            case 'n': startLiteral("null"); return;
+            default: {
+                if (b != '-' && (b < '0' || b > '9'))
+                    throw error("unexpected character '" + (char) (b & 0xFF) + "'");
+                startToken(TOKEN_NUMBER);
+                append(b);
+            }
+        }
+    }
+
+    private void startToken(byte t) {
+        token = t;
+        textLength = 0;
+        textEscaped = false;
+    }
+
+    private void startLiteral(String l) {
+        startToken(TOKEN_LITERAL);
+        literal = l;
+        textLength = 1;
+    }
+
+    private void append(byte b) {
+        if (textLength == text.length)
+            text = Arrays.copyOf(text, text.length * 2);
+        text[textLength++] = b;
+    }
+
+    private void string() {
+        token = TOKEN_NONE;
+        byte ctx = contexts[depth];
+        if (ctx == CTX_OBJECT_START || ctx == CTX_OBJECT_COMMA) {
+            keys[depth] = textEscaped
+                    ? JSONKeys.intern(JSONByteReader.decode(text, 0, textLength, true))
+                    : JSONKeys.intern(text, 0, textLength);
+            contexts[depth] = CTX_OBJECT_KEY;
+        } else {
+            value(JSONByteReader.decode(text, 0, textLength, textEscaped));
+        }
+    }
+
+    private void number() {
+        token = TOKEN_NONE;
+        // LAZY numbers keep a reference to their bytes, which must not be the reused token buffer
+        byte[] b = numberMode == JSONReader.NumberMode.LAZY ? Arrays.copyOf(text, textLength) : text;
+        value(JSONNumber.parse(b, 0, textLength, numberMode));
+    }
+
+    private void literal() {
+        token = TOKEN_NONE;
+        switch (literal) {
+            case "true": value(Boolean.TRUE); break;
+            case "false": value(Boolean.FALSE); break;
+            default: value(null);
+        }
+    }
+
+    private void push(byte context, Object container) {
+        if (++depth == contexts.length) {
+            contexts = Arrays.copyOf(contexts, depth * 2);
+            containers = Arrays.copyOf(containers, depth * 2);
+            keys = Arrays.copyOf(keys, depth * 2);
+        }
+        contexts[depth] = context;
+        containers[depth] = container;
+    }
+
+    private void endContainer() {
+        Object container = containers[depth];
+        containers[depth] = null;
+        keys[depth] = null;
+        depth--;
+        value(container);
+    }
+
+    @SuppressWarnings("unchecked")
+    private void value(Object v) {
+        if (depth == 0) {
+            consumer.accept(v);
+            return;
+        }
+        if (contexts[depth] == CTX_OBJECT_COLON) {
+            ((Map<String,Object>) containers[depth]).put(keys[depth], v);
+            contexts[depth] = CTX_OBJECT_VALUE;
+        } else {
+            ((List<Object>) containers[depth]).add(v);
+            contexts[depth] = CTX_ARRAY_VALUE;
+        }
+    }
+
+    private IllegalStateException error(String message) {
+        return new IllegalStateException("json " + message + " at " + position);
+    }
+}
@@ -0,0 +1,668 @@
+package io.onemfive.data.util;
+
+import io.onemfive.data.JSONSerializable;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Token-level pull parser for JSON.
+ *
+ * Reads straight from a Reader, InputStream or ByteBuffer through a small
+ * char buffer that is reused by the next reader created on the same thread
+ * once this one is closed, so a document never has to be held as a whole
+ * String before parsing starts.
+ *
+ * Typical use:
+ * <pre>
+ *     JSONReader r = new JSONReader(in);
+ *     JSONReader.Token t;
+ *     while((t = r.nextToken()) != null) {
+ *         if(t == JSONReader.Token.FIELD_NAME && "id".equals(r.getText())) {
+ *             r.nextToken();
+ *             id = r.getNumber();
+ *         }
+ *     }
+ *     r.close();
+ * </pre>
+ *
+ * @author objectorange
+ */
+public class JSONReader implements Closeable {
+
+    public enum Token {
+        START_OBJECT,
+        END_OBJECT,
+        START_ARRAY,
+        END_ARRAY,
+        FIELD_NAME,
+        VALUE_STRING,
+        VALUE_NUMBER,
+        VALUE_TRUE,
+        VALUE_FALSE,
+        VALUE_NULL
+    }
+
+    /**
+     * How VALUE_NUMBER tokens are converted by getNumber() and readValue().
+     */
+    public enum NumberMode {
+        /** Integer, Long or Double, whichever is the narrowest to hold the value */
+        NARROWEST,
+        /** Integer or Long for integral values that fit, BigDecimal for everything else */
+        BIG_DECIMAL,
+        /** a JSONNumber keeping the raw text, converted only when a value is asked for */
+        LAZY
+    }
+
+    protected static final int BUFFER_SIZE = 4096;
+
+    /** one spare buffer per thread, handed back on close() */
+    private static final ThreadLocal<char[]> BUFFERS = new ThreadLocal<>();
+
+    // Parsing contexts kept on the stack
+    protected static final byte CTX_TOP = 0;
+    protected static final byte CTX_OBJECT_START = 1;
+    protected static final byte CTX_OBJECT_KEY = 2;
+    protected static final byte CTX_OBJECT_VALUE = 3;
+    protected static final byte CTX_ARRAY_START = 4;
+    protected static final byte CTX_ARRAY_VALUE = 5;
+
+    protected byte[] contexts = new byte[16];
+    protected int depth = 0;
+    protected Token current;
+    protected NumberMode numberMode = NumberMode.NARROWEST;
+
+    protected int pos = 0;
+
+    private Reader reader;
+    private char[] buf;
+    private int limit = 0;
+    private long consumed = 0;
+
+    // Text of the current string, field name or number token
+    private final StringBuilder sb = new StringBuilder();
+    private boolean textInBuffer;
+    private int textStart;
+    private int textLength;
+
+    protected JSONReader() {}
+
+    public JSONReader(Reader reader) {
+        this.reader = reader;
+        this.buf = acquireBuffer();
+    }
+
+    public JSONReader(InputStream in) {
+        this(new InputStreamReader(in, StandardCharsets.UTF_8));
+    }
+
+    public JSONReader(ByteBuffer in) {
+        this(new ByteBufferReader(in));
+    }
+
+    public JSONReader(String json) {
+        this(new StringReader(json));
+    }
+
+    /**
+     * Read only json[start, end) without copying it out first.
+     */
+    public JSONReader(String json, int start, int end) {
+        this(new StringRangeReader(json, start, end));
+    }
+
+    /**
+     * Advance to the next token.
+     *
+     * @return the next token or null once the end of input is reached
+     */
+    public Token nextToken() {
+        int ch = skipSpaces();
+        switch (contexts[depth]) {
+            case CTX_OBJECT_START: {
+                if (ch == '}')
+                    return endContainer(Token.END_OBJECT);
+                return fieldName(ch);
+            }
+            case CTX_OBJECT_KEY: {
+                if (ch != ':')
+                    throw error("expected ':'");
+                pos++;
+                contexts[depth] = CTX_OBJECT_VALUE;
+                return value(skipSpaces());
+            }
+            case CTX_OBJECT_VALUE: {
+                if (ch == '}')
+                    return endContainer(Token.END_OBJECT);
+                if (ch != ',')
+                    throw error("expected ',' or '}'");
+                pos++;
+                return fieldName(skipSpaces());
+            }
+            case CTX_ARRAY_START: {
+                if (ch == ']')
+                    return endContainer(Token.END_ARRAY);
+                contexts[depth] = CTX_ARRAY_VALUE;
+                return value(ch);
+            }
+            case CTX_ARRAY_VALUE: {
+                if (ch == ']')
+                    return endContainer(Token.END_ARRAY);
+                if (ch != ',')
+                    throw error("expected ',' or ']'");
+                pos++;
+                return value(skipSpaces());
+            }
+            default: {
+                if (ch == -1)
+                    return current = null;
+                return value(ch);
+            }
+        }
+    }
+
+    public Token currentToken() {
+        return current;
+    }
+
+    /**
+     * @return the text of the current FIELD_NAME, VALUE_STRING or VALUE_NUMBER token
+     */
+    public String getText() {
+        if (current == null)
+            return null;
+        switch (current) {
+            case FIELD_NAME:
+            case VALUE_STRING:
+            case VALUE_NUMBER:
+                return tokenText();
+            case VALUE_TRUE: return "true";
+            case VALUE_FALSE: return "false";
+            case VALUE_NULL: return "null";
+            default: return null;
+        }
+    }
+
+    /**
+     * @return the current VALUE_NUMBER converted according to the NumberMode
+     */
+    public Number getNumber() {
+        if (current != Token.VALUE_NUMBER)
+            throw error("not a number");
+        return numberValue();
+    }
+
+    public NumberMode getNumberMode() {
+        return numberMode;
+    }
+
+    public void setNumberMode(NumberMode numberMode) {
+        this.numberMode = numberMode;
+    }
+
+    public boolean getBoolean() {
+        if (current == Token.VALUE_TRUE)
+            return true;
+        if (current == Token.VALUE_FALSE)
+            return false;
+        throw error("not a boolean");
+    }
+
+    /**
+     * @return the current scalar as text, null for VALUE_NULL
+     */
+    public String getValueAsString() {
+        return current == Token.VALUE_NULL ? null : getText();
+    }
+
+    /**
+     * @return the current number, or string holding one, as a Long; null for VALUE_NULL
+     */
+    public Long getValueAsLong() {
+        if (current == Token.VALUE_NUMBER)
+            return numberValue().longValue();
+        if (current == Token.VALUE_STRING)
+            return Long.parseLong(getText());
+        if (current == Token.VALUE_NULL)
+            return null;
+        throw error("not a number");
+    }
+
+    /**
+     * @return the current number, or string holding one, as an Integer; null for VALUE_NULL
+     */
+    public Integer getValueAsInteger() {
+        Long l = getValueAsLong();
+        return l == null ? null : l.intValue();
+    }
+
+    /**
+     * @return the current boolean, or string holding one, as a Boolean; null for VALUE_NULL
+     */
+    public Boolean getValueAsBoolean() {
+        if (current == Token.VALUE_TRUE)
+            return Boolean.TRUE;
+        if (current == Token.VALUE_FALSE)
+            return Boolean.FALSE;
+        if (current == Token.VALUE_STRING)
+            return Boolean.parseBoolean(getText());
+        if (current == Token.VALUE_NULL)
+            return null;
+        throw error("not a boolean");
+    }
+
+    /**
+     * Read the object starting at the current token into target, field by field
+     * when its class has a {@link JSONCodec} and through fromMap() otherwise,
+     * leaving the reader on its END_OBJECT.
+     *
+     * @return target, or null when the value is null
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T readObject(T target) {
+        if (current == null || current == Token.FIELD_NAME)
+            nextToken();
+        if (current == Token.VALUE_NULL)
+            return null;
+        if (current != Token.START_OBJECT)
+            throw error("expected object");
+        JSONCodec<T> codec = JSONCodecs.get(target.getClass());
+        if (codec != null)
+            codec.read(this, target);
+        else if (target instanceof JSONSerializable)
+            ((JSONSerializable) target).fromMap((Map<String,Object>) readValue());
+        else
+            throw error("no codec for " + target.getClass().getName());
+        return target;
+    }
+
+    /**
+     * Materialize the value starting at the current token into Map, List,
+     * String, Number, Boolean or null, leaving the reader on its last token.
+     * A current FIELD_NAME is stepped over and no current token at all reads the next one.
+     */
+    public Object readValue() {
+        if (current == null || current == Token.FIELD_NAME)
+            nextToken();
+        if (current == null)
+            return null;
+        switch (current) {
+            case START_OBJECT: {
+                if (nextToken() != Token.FIELD_NAME)
+                    return new LinkedHashMap<>();
+                // objects led by the same key are usually the same shape, size the map for it
+                String first = getText();
+                Map<String,Object> m = new LinkedHashMap<>(JSONKeys.capacity(first));
+                String key = first;
+                while (true) {
+                    nextToken();
+                    m.put(key, readValue());
+                    if (nextToken() != Token.FIELD_NAME)
+                        break;
+                    key = getText();
+                }
+                JSONKeys.shape(first, m.size());
+                return m;
+            }
+            case START_ARRAY: {
+                List<Object> l = new ArrayList<>();
+                while (nextToken() != Token.END_ARRAY)
+                    l.add(readValue());
+                return l;
+            }
+            case VALUE_STRING: return getText();
+            case VALUE_NUMBER: return getNumber();
+            case VALUE_TRUE: return Boolean.TRUE;
+            case VALUE_FALSE: return Boolean.FALSE;
+            case VALUE_NULL: return null;
+            default: throw error("unexpected " + current);
+        }
+    }
+
+    /**
+     * When on START_OBJECT or START_ARRAY, skip to the matching end token
+     * without materializing anything in between.
+     */
+    public void skipChildren() {
+        if (current != Token.START_OBJECT && current != Token.START_ARRAY)
+            return;
+        int target = depth - 1;
+        while (depth > target) {
+            if (nextToken() == null)
+                throw error("unexpected end of input");
+        }
+    }
+
+    /**
+     * @return number of chars consumed so far
+     */
+    public long getPosition() {
+        return consumed + pos;
+    }
+
+    /**
+     * Hands the buffer back for reuse and closes the underlying source.
+     */
+    @Override
+    public void close() {
+        if (buf != null) {
+            BUFFERS.set(buf);
+            buf = null;
+        }
+        if (reader != null) {
+            try {
+                reader.close();
+            } catch (IOException e) {
+                // nothing to do
+            }
+            reader = null;
+        }
+    }
+
+    /**
+     * @return the text of the current string, field name or number token; field names are interned
+     */
+    protected String tokenText() {
+        if (current == Token.FIELD_NAME)
+            return textInBuffer ? JSONKeys.intern(buf, textStart, textLength) : JSONKeys.intern(sb.toString());
+        return textInBuffer ? new String(buf, textStart, textLength) : sb.toString();
+    }
+
+    /**
+     * @return the current number token converted without going through a String
+     */
+    protected Number numberValue() {
+        if (textInBuffer)
+            return JSONNumber.parse(buf, textStart, textStart + textLength, numberMode);
+        // only when the token straddled a refill
+        char[] chars = new char[sb.length()];
+        sb.getChars(0, chars.length, chars, 0);
+        return JSONNumber.parse(chars, 0, chars.length, numberMode);
+    }
+
+    protected Token fieldName(int ch) {
+        if (ch != '"')
+            throw error("expected field name");
+        readString();
+        contexts[depth] = CTX_OBJECT_KEY;
+        return current = Token.FIELD_NAME;
+    }
+
+    protected Token value(int ch) {
+        switch (ch) {
+            case '{': {
+                pos++;
+                push(CTX_OBJECT_START);
+                return current = Token.START_OBJECT;
+            }
+            case '[': {
+                pos++;
+                push(CTX_ARRAY_START);
+                return current = Token.START_ARRAY;
+            }
+            case '"': {
+                readString();
+                return current = Token.VALUE_STRING;
+            }
+            case 't': {
+                readLiteral("true");
+                return current = Token.VALUE_TRUE;
+            }
+            case 'f': {
+                readLiteral("false");
+                return current = Token.VALUE_FALSE;
+            }
+            case 'n': {
+                readLiteral("null");
+                return current = Token.VALUE_NULL;
+            }
+            case -1: throw error("unexpected end of input");
+            default: {
+                if (ch == '-' || (ch >= '0' && ch <= '9')) {
+                    readNumber();
+                    return current = Token.VALUE_NUMBER;
+                }
+                throw error("unexpected character '" + (char) ch + "'");
+            }
+        }
+    }
+
+    protected void push(byte context) {
+        if (++depth == contexts.length) {
+            byte[] c = new byte[contexts.length * 2];
+            System.arraycopy(contexts, 0, c, 0, contexts.length);
+            contexts = c;
+        }
+        contexts[depth] = context;
+    }
+
+    protected Token endContainer(Token token) {
+        pos++;
+        depth--;
+        return current = token;
+    }
+
+    protected IllegalStateException error(String message) {
+        return new IllegalStateException("json " + message + " at " + getPosition());
+    }
+
+    /**
+     * @return the char a two character escape sequence stands for or -1 if it is not one
+     */
+    protected static int unescapeSimple(int ch) {
+        switch (ch) {
+            case '"': return '"';
+            case '\\': return '\\';
+            case '/': return '/';
+            case 'b': return '\b';
+            case 'f': return '\f';
+            case 'n': return '\n';
+            case 'r': return '\r';
+            case 't': return '\t';
+            default: return -1;
+        }
+    }
+
+    protected int skipSpaces() {
+        while (true) {
+            if (pos >= limit && !fill())
+                return -1;
+            char ch = buf[pos];
+            if (ch == ' ' || ch == '\n' || ch == '\r' || ch == '\t')
+                pos++;
+            else
+                return ch;
+        }
+    }
+
+    private boolean fill() {
+        if (reader == null)
+            return false;
+        consumed += limit;
+        pos = 0;
+        limit = 0;
+        try {
+            int n;
+            while ((n = reader.read(buf, 0, buf.length)) == 0) {}
+            if (n < 0)
+                return false;
+            limit = n;
+            return true;
+        } catch (IOException e) {
+            throw new IllegalStateException("json read failed at " + consumed, e);
+        }
+    }
+
+    private int readChar() {
+        if (pos >= limit && !fill())
+            throw error("unexpected end of input");
+        return buf[pos++];
+    }
+
+    protected void readString() {
+        pos++; // opening quote
+        sb.setLength(0);
+        textInBuffer = true;
+        int start = pos;
+        while (true) {
+            if (pos >= limit) {
+                sb.append(buf, start, pos - start);
+                textInBuffer = false;
+                if (!fill())
+                    throw error("unterminated string");
+                start = pos;
+            }
+            char ch = buf[pos];
+            if (ch == '"') {
+                if (textInBuffer) {
+                    textStart = start;
+                    textLength = pos - start;
+                } else {
+                    sb.append(buf, start, pos - start);
+                }
+                pos++;
+                return;
+            }
+            if (ch == '\\') {
+                sb.append(buf, start, pos - start);
+                textInBuffer = false;
+                pos++;
+                sb.append(unescape(readChar()));
+                start = pos;
+                continue;
+            }
+            pos++;
+        }
+    }
+
+    private char unescape(int ch) {
+        if (ch == 'u') {
+            int c = 0;
+            for (int i = 0; i < 4; i++) {
+                int d = Character.digit(readChar(), 16);
+                if (d < 0)
+                    throw error("invalid unicode escape");
+                c = (c << 4) | d;
+            }
+            return (char) c;
+        }
+        int c = unescapeSimple(ch);
+        if (c < 0)
+            throw error("invalid escape '\\" + (char) ch + "'");
+        return (char) c;
+    }
+
+    protected void readNumber() {
+        sb.setLength(0);
+        textInBuffer = true;
+        int start = pos;
+        while (true) {
+            if (pos >= limit) {
+                sb.append(buf, start, pos - start);
+                textInBuffer = false;
+                if (!fill())
+                    return;
+                start = pos;
+            }
+            char ch = buf[pos];
+            if ((ch >= '0' && ch <= '9') || ch == '-' || ch == '+' || ch == '.' || ch == 'e' || ch == 'E') {
+                pos++;
+                continue;
+            }
+            if (textInBuffer) {
+                textStart = start;
+                textLength = pos - start;
+            } else {
+                sb.append(buf, start, pos - start);
+            }
+            return;
+        }
+    }
+
+    protected void readLiteral(String literal) {
+        for (int i = 0; i < literal.length(); i++) {
+            if (readChar() != literal.charAt(i))
+                throw error("expected '" + literal + "'");
+        }
+    }
+
+    private static char[] acquireBuffer() {
+        char[] b = BUFFERS.get();
+        if (b != null) {
+            BUFFERS.set(null);
+            return b;
+        }
+        return new char[BUFFER_SIZE];
+    }
+
+    /**
+     * Unsynchronized reader over a range of a String.
+     */
+    private static final class StringRangeReader extends Reader {
+
+        private final String s;
+        private int pos;
+        private final int end;
+
+        private StringRangeReader(String s, int start, int end) {
+            this.s = s;
+            this.pos = start;
+            this.end = end;
+        }
+
+        @Override
+        public int read(char[] cbuf, int off, int len) {
+            if (pos >= end)
+                return -1;
+            int n = Math.min(len, end - pos);
+            s.getChars(pos, pos + n, cbuf, off);
+            pos += n;
+            return n;
+        }
+
+        @Override
+        public void close() {}
+    }
+
+    /**
+     * Decodes UTF-8 from a ByteBuffer chunk by chunk as the parser asks for chars.
+     */
+    private static final class ByteBufferReader extends Reader {
+
+        private final ByteBuffer in;
+        private final CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder();
+        private boolean flushed = false;
+
+        private ByteBufferReader(ByteBuffer in) {
+            this.in = in;
+        }
+
+        @Override
+        public int read(char[] cbuf, int off, int len) throws IOException {
+            if (flushed)
+                return -1;
+            CharBuffer out = CharBuffer.wrap(cbuf, off, len);
+            CoderResult r = decoder.decode(in, out, true);
+            if (r.isError())
+                r.throwException();
+            if (!in.hasRemaining() && r.isUnderflow()) {
+                decoder.flush(out);
+                flushed = out.position() == off;
+            }
+            int n = out.position() - off;
+            return n == 0 && flushed ? -1 : n;
+        }
+
+        @Override
+        public void close() {}
+    }
+}
@@ -0,0 +1,201 @@
+package io.onemfive.data.util;
+
+import java.util.Arrays;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+
+/**
+ * Spliterator over the top level values of concatenated JSON or NDJSON.
+ *
+ * A quick first pass only tracks nesting depth and string quoting to find
+ * where each top level document starts and ends; splitting then hands out
+ * halves of that boundary table, and each document is parsed only when it
+ * is consumed. Plugs into parallel java.util.stream pipelines through
+ * {@link JSONParser#stream(String)} and {@link JSONParser#stream(byte[])}.
+ *
+ * @author objectorange
+ */
+public final class JSONSpliterator implements Spliterator<Object> {
+
+    private final String chars;
+    private final byte[] bytes;
+    // start and end offsets of each document, two ints per document
+    private final int[] bounds;
+    private int index;
+    private final int fence;
+
+    public JSONSpliterator(String json) {
+        this(json, null, scan(json), 0, -1);
+    }
+
+    /**
+     * @param json UTF-8 bytes
+     */
+    public JSONSpliterator(byte[] json) {
+        this(null, json, scan(json), 0, -1);
+    }
+
+    private JSONSpliterator(String chars, byte[] bytes, int[] bounds, int index, int fence) {
+        this.chars = chars;
+        this.bytes = bytes;
+        this.bounds = bounds;
+        this.index = index;
+        this.fence = fence < 0 ? bounds.length / 2 : fence;
+    }
+
+    @Override
+    public boolean tryAdvance(Consumer<? super Object> action) {
+        if (index >= fence)
+            return false;
+        action.accept(parse(index++));
+        return true;
+    }
+
+    @Override
+    public void forEachRemaining(Consumer<? super Object> action) {
+        while (index < fence)
+            action.accept(parse(index++));
+    }
+
+    @Override
+    public Spliterator<Object> trySplit() {
+        int mid = (index + fence) >>> 1;
+        if (mid <= index)
+            return null;
+        JSONSpliterator prefix = new JSONSpliterator(chars, bytes, bounds, index, mid);
+        index = mid;
+        return prefix;
+    }
+
+    @Override
+    public long estimateSize() {
+        return fence - index;
+    }
+
+    @Override
+    public int characteristics() {
+        return ORDERED | SIZED | SUBSIZED | IMMUTABLE;
+    }
+
+    private Object parse(int document) {
+        int start = bounds[document * 2];
+        int end = bounds[document * 2 + 1];
+        JSONReader reader = bytes != null
+                ? new JSONByteReader(bytes, start, end - start)
+                : new JSONReader(chars, start, end);
+        try {
+            return reader.readValue();
+        } finally {
+            reader.close();
+        }
+    }
+
+    private static int[] scan(String json) {
+        int[] bounds = new int[16];
+        int n = 0;
+        int len = json.length();
+        int i = 0;
+        while (true) {
+            while (i < len && isSpace(json.charAt(i)))
+                i++;
+            if (i >= len)
+                break;
+            int start = i;
+            char ch = json.charAt(i);
+            if (ch == '{' || ch == '[') {
+                int depth = 0;
+                for (; i < len; i++) {
+                    ch = json.charAt(i);
+                    if (ch == '"')
+                        i = skipString(json, i);
+                    else if (ch == '{' || ch == '[')
+                        depth++;
+                    else if ((ch == '}' || ch == ']') && --depth == 0) {
+                        i++;
+                        break;
+                    }
+                }
+            } else if (ch == '"') {
+                i = skipString(json, i) + 1;
+            } else {
+                while (i < len && !isSpace(ch = json.charAt(i)) && ch != '{' && ch != '[' && ch != '"')
+                    i++;
+            }
+            if (n + 2 > bounds.length)
+                bounds = Arrays.copyOf(bounds, bounds.length * 2);
+            bounds[n++] = start;
+            bounds[n++] = Math.min(i, len);
+        }
+        return Arrays.copyOf(bounds, n);
+    }
+
+    private static int[] scan(byte[] json) {
+        int[] bounds = new int[16];
+        int n = 0;
+        int len = json.length;
+        int i = 0;
+        while (true) {
+            while (i < len && isSpace(json[i]))
+                i++;
+            if (i >= len)
+                break;
+            int start = i;
+            byte b = json[i];
+            if (b == '{' || b == '[') {
+                int depth = 0;
+                for (; i < len; i++) {
+                    b = json[i];
+                    if (b == '"')
+                        i = skipString(json, i);
+                    else if (b == '{' || b == '[')
+                        depth++;
+                    else if ((b == '}' || b == ']') && --depth == 0) {
+                        i++;
+                        break;
+                    }
+                }
+            } else if (b == '"') {
+                i = skipString(json, i) + 1;
+            } else {
+                while (i < len && !isSpace(b = json[i]) && b != '{' && b != '[' && b != '"')
+                    i++;
+            }
+            if (n + 2 > bounds.length)
+                bounds = Arrays.copyOf(bounds, bounds.length * 2);
+            bounds[n++] = start;
+            bounds[n++] = Math.min(i, len);
+        }
+        return Arrays.copyOf(bounds, n);
+    }
+
+    /**
+     * @return offset of the closing quote of the string opening at i, or the length when unterminated
+     */
+    private static int skipString(String json, int i) {
+        int len = json.length();
+        for (i++; i < len; i++) {
+            char ch = json.charAt(i);
+            if (ch == '\\')
+                i++;
+            else if (ch == '"')
+                return i;
+        }
+        return len;
+    }
+
+    private static int skipString(byte[] json, int i) {
+        int len = json.length;
+        for (i++; i < len; i++) {
+            byte b = json[i];
+            if (b == '\\')
+                i++;
+            else if (b == '"')
+                return i;
+        }
+        return len;
+    }
+
+    private static boolean isSpace(int ch) {
+        return ch == ' ' || ch == '\n' || ch == '\r' || ch == '\t';
+    }
+}
@@ -0,0 +1,430 @@
+package io.onemfive.data.util;
+
+import io.onemfive.data.JSONSerializable;
+
+import java.io.*;
+import java.lang.reflect.Method;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * Streams Map/List/JSONSerializable graphs as JSON to an Appendable or,
+ * UTF-8 encoded through a pooled buffer, to an OutputStream.
+ *
+ * Either hand it a whole graph with writeValue(Object) or drive it token by
+ * token with startObject()/writeName()/write...()/endObject(); separators
+ * are managed by the writer. JSONSerializables with a {@link JSONCodec} are
+ * written field by field without building their toMap() graph. byte[]
+ * values are written as standard Base64 strings encoded on the fly, so a
+ * large binary body is never held twice.
+ * With setIndent(n) the output is pretty printed the way {@link JSONPretty}
+ * lays it out.
+ *
+ * @author objectorange
+ */
+public class JSONWriter implements Closeable, Flushable {
+
+    private static final int BUFFER_SIZE = 8192;
+    private static final ByteCache BUFFERS = ByteCache.getInstance(32, BUFFER_SIZE);
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+    private static final byte[] BASE64 = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/".getBytes();
+    private static final String NEWLINE = System.lineSeparator();
+    private static final String SPACES = "                                                                ";
+
+    private final Appendable out;
+    private final OutputStream stream;
+    private ByteArray pooled;
+    private byte[] buf;
+    private int count;
+
+    // Separator bookkeeping per nesting level
+    private boolean[] first = new boolean[16];
+    private int depth = 0;
+    private boolean afterName = false;
+    private int indent = 0;
+
+    public JSONWriter(Appendable out) {
+        this.out = out;
+        this.stream = null;
+    }
+
+    public JSONWriter(OutputStream stream) {
+        this.out = null;
+        this.stream = stream;
+        this.pooled = BUFFERS.acquire();
+        this.buf = pooled.getData();
+    }
+
+    /**
+     * @param indent spaces per nesting level, 0 for compact output
+     */
+    public JSONWriter setIndent(int indent) {
+        this.indent = indent;
+        return this;
+    }
+
+    /**
+     * @return compact JSON for the supplied graph
+     */
+    public static String toString(Object obj) {
+        StringBuilder sb = new StringBuilder();
+        try {
+            new JSONWriter(sb).writeValue(obj);
+        } catch (IOException e) {
+            // StringBuilder does not throw
+            throw new IllegalStateException(e);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Write the graph to the stream as UTF-8 JSON, leaving the stream open.
+     */
+    public static void write(Object obj, OutputStream out) throws IOException {
+        JSONWriter w = new JSONWriter(out);
+        try {
+            w.writeValue(obj);
+        } finally {
+            w.finish();
+        }
+    }
+
+    public JSONWriter writeValue(Object obj) throws IOException {
+        if (obj == null)
+            writeNull();
+        else if (obj instanceof String)
+            writeString((String) obj);
+        else if ((obj instanceof Boolean) || (obj instanceof Number)) {
+            beforeValue();
+            writeRaw(obj.toString());
+        }
+        else if (obj instanceof Map) {
+            startObject();
+            for (Map.Entry<?,?> e : ((Map<?,?>) obj).entrySet()) {
+                writeName(String.valueOf(e.getKey()));
+                writeValue(e.getValue());
+            }
+            endObject();
+        }
+        else if (obj instanceof Collection) {
+            startArray();
+            Iterator<?> itt = ((Collection<?>) obj).iterator();
+            while (itt.hasNext())
+                writeValue(itt.next());
+            endArray();
+        }
+        else if (obj instanceof Object[]) {
+            startArray();
+            for (Object o : (Object[]) obj)
+                writeValue(o);
+            endArray();
+        }
+        else if (obj instanceof byte[])
+            writeBinary((byte[]) obj);
+        else if (obj instanceof JSONSerializable) {
+            JSONCodec<Object> codec = JSONCodecs.get(obj.getClass());
+            if (codec != null)
+                codec.write(obj, this);
+            else
+                writeValue(((JSONSerializable) obj).toMap());
+        }
+        else {
+            Object json;
+            try {
+                Method m = obj.getClass().getDeclaredMethod("toJSON");
+                json = m.invoke(obj);
+            } catch (Exception e) {
+                writeString(obj.toString());
+                return this;
+            }
+            writeValue(json);
+        }
+        return this;
+    }
+
+    public JSONWriter startObject() throws IOException {
+        beforeValue();
+        writeRaw('{');
+        push();
+        if (indent > 0)
+            newline(depth);
+        return this;
+    }
+
+    public JSONWriter endObject() throws IOException {
+        depth--;
+        if (indent > 0)
+            newline(depth);
+        writeRaw('}');
+        return this;
+    }
+
+    public JSONWriter startArray() throws IOException {
+        beforeValue();
+        writeRaw('[');
+        push();
+        if (indent > 0)
+            newline(depth);
+        return this;
+    }
+
+    public JSONWriter endArray() throws IOException {
+        depth--;
+        if (indent > 0)
+            newline(depth);
+        writeRaw(']');
+        return this;
+    }
+
+    public JSONWriter writeName(String name) throws IOException {
+        beforeValue();
+        escapeString(name);
+        writeRaw(':');
+        if (indent > 0)
+            writeRaw(' ');
+        afterName = true;
+        return this;
+    }
+
+    public JSONWriter writeString(String value) throws IOException {
+        if (value == null)
+            return writeNull();
+        beforeValue();
+        escapeString(value);
+        return this;
+    }
+
+    public JSONWriter writeNumber(long value) throws IOException {
+        beforeValue();
+        writeRaw(Long.toString(value));
+        return this;
+    }
+
+    public JSONWriter writeNumber(Number value) throws IOException {
+        if (value == null)
+            return writeNull();
+        beforeValue();
+        writeRaw(value.toString());
+        return this;
+    }
+
+    public JSONWriter writeBoolean(boolean value) throws IOException {
+        beforeValue();
+        writeRaw(value ? "true" : "false");
+        return this;
+    }
+
+    public JSONWriter writeNull() throws IOException {
+        beforeValue();
+        writeRaw("null");
+        return this;
+    }
+
+    /**
+     * Write the bytes as a standard Base64 string, encoding three bytes at a time.
+     */
+    public JSONWriter writeBinary(byte[] value) throws IOException {
+        if (value == null)
+            return writeNull();
+        beforeValue();
+        writeRaw('"');
+        int i = 0;
+        int full = value.length - value.length % 3;
+        for (; i < full; i += 3) {
+            int n = (value[i] & 0xFF) << 16 | (value[i + 1] & 0xFF) << 8 | (value[i + 2] & 0xFF);
+            writeAscii(BASE64[n >>> 18], BASE64[(n >>> 12) & 0x3F], BASE64[(n >>> 6) & 0x3F], BASE64[n & 0x3F]);
+        }
+        int rest = value.length - full;
+        if (rest == 1) {
+            int n = (value[i] & 0xFF) << 16;
+            writeAscii(BASE64[n >>> 18], BASE64[(n >>> 12) & 0x3F], (byte) '=', (byte) '=');
+        } else if (rest == 2) {
+            int n = (value[i] & 0xFF) << 16 | (value[i + 1] & 0xFF) << 8;
+            writeAscii(BASE64[n >>> 18], BASE64[(n >>> 12) & 0x3F], BASE64[(n >>> 6) & 0x3F], (byte) '=');
+        }
+        writeRaw('"');
+        return this;
+    }
+
+    /**
+     * Push buffered bytes to the stream and flush it.
+     */
+    @Override
+    public void flush() throws IOException {
+        if (stream != null) {
+            flushBuffer();
+            stream.flush();
+        } else if (out instanceof Flushable) {
+            ((Flushable) out).flush();
+        }
+    }
+
+    /**
+     * Flush and hand the buffer back to the pool, leaving the target open.
+     */
+    public void finish() throws IOException {
+        try {
+            flush();
+        } finally {
+            if (pooled != null) {
+                BUFFERS.release(pooled, false);
+                pooled = null;
+                buf = null;
+            }
+        }
+    }
+
+    /**
+     * Finish and close the target.
+     */
+    @Override
+    public void close() throws IOException {
+        finish();
+        if (stream != null)
+            stream.close();
+        else if (out instanceof Closeable)
+            ((Closeable) out).close();
+    }
+
+    private void push() {
+        if (++depth == first.length) {
+            boolean[] f = new boolean[first.length * 2];
+            System.arraycopy(first, 0, f, 0, first.length);
+            first = f;
+        }
+        first[depth] = true;
+    }
+
+    private void beforeValue() throws IOException {
+        if (afterName) {
+            afterName = false;
+            return;
+        }
+        if (depth > 0) {
+            if (first[depth])
+                first[depth] = false;
+            else {
+                writeRaw(',');
+                if (indent > 0)
+                    newline(depth);
+            }
+        }
+    }
+
+    private void newline(int level) throws IOException {
+        writeRaw(NEWLINE);
+        int n = level * indent;
+        while (n > 0) {
+            int k = Math.min(n, SPACES.length());
+            writeRaw(SPACES, 0, k);
+            n -= k;
+        }
+    }
+
+    private void escapeString(String s) throws IOException {
+        writeRaw('"');
+        int len = s.length();
+        int run = 0;
+        for (int i = 0; i < len; i++) {
+            char ch = s.charAt(i);
+            if (ch >= 0x20 && ch != '"' && ch != '\\')
+                continue;
+            if (i > run)
+                writeRaw(s, run, i);
+            switch (ch) {
+                case '"': writeRaw("\\\""); break;
+                case '\\': writeRaw("\\\\"); break;
+                case '\n': writeRaw("\\n"); break;
+                case '\r': writeRaw("\\r"); break;
+                case '\t': writeRaw("\\t"); break;
+                case '\b': writeRaw("\\b"); break;
+                case '\f': writeRaw("\\f"); break;
+                default: {
+                    writeRaw("\\u00");
+                    writeRaw(HEX[ch >> 4]);
+                    writeRaw(HEX[ch & 0xF]);
+                }
+            }
+            run = i + 1;
+        }
+        // fast path: nothing needed escaping
+        if (run == 0)
+            writeRaw(s);
+        else if (run < len)
+            writeRaw(s, run, len);
+        writeRaw('"');
+    }
+
+    private void writeRaw(String s) throws IOException {
+        writeRaw(s, 0, s.length());
+    }
+
+    private void writeRaw(char ch) throws IOException {
+        if (stream == null) {
+            out.append(ch);
+            return;
+        }
+        if (ch < 0x80) {
+            if (count == buf.length)
+                flushBuffer();
+            buf[count++] = (byte) ch;
+        } else {
+            writeRaw(String.valueOf(ch));
+        }
+    }
+
+    private void writeAscii(byte a, byte b, byte c, byte d) throws IOException {
+        if (stream == null) {
+            out.append((char) a).append((char) b).append((char) c).append((char) d);
+            return;
+        }
+        if (count + 4 > buf.length)
+            flushBuffer();
+        buf[count++] = a;
+        buf[count++] = b;
+        buf[count++] = c;
+        buf[count++] = d;
+    }
+
+    /**
+     * Append chars to the target, UTF-8 encoding them into the buffer when writing to a stream.
+     */
+    private void writeRaw(CharSequence s, int start, int end) throws IOException {
+        if (stream == null) {
+            out.append(s, start, end);
+            return;
+        }
+        for (int i = start; i < end; i++) {
+            if (count + 4 > buf.length)
+                flushBuffer();
+            char c = s.charAt(i);
+            if (c < 0x80) {
+                buf[count++] = (byte) c;
+            } else if (c < 0x800) {
+                buf[count++] = (byte) (0xC0 | (c >> 6));
+                buf[count++] = (byte) (0x80 | (c & 0x3F));
+            } else if (Character.isHighSurrogate(c) && i + 1 < end && Character.isLowSurrogate(s.charAt(i + 1))) {
+                int cp = Character.toCodePoint(c, s.charAt(++i));
+                buf[count++] = (byte) (0xF0 | (cp >> 18));
+                buf[count++] = (byte) (0x80 | ((cp >> 12) & 0x3F));
+                buf[count++] = (byte) (0x80 | ((cp >> 6) & 0x3F));
+                buf[count++] = (byte) (0x80 | (cp & 0x3F));
+            } else if (Character.isSurrogate(c)) {
+                buf[count++] = (byte) '?';
+            } else {
+                buf[count++] = (byte) (0xE0 | (c >> 12));
+                buf[count++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                buf[count++] = (byte) (0x80 | (c & 0x3F));
+            }
+        }
+    }
+
+    private void flushBuffer() throws IOException {
+        if (count > 0) {
+            stream.write(buf, 0, count);
+            count = 0;
+        }
+    }
+}
@@ -81,6 +81,6 @@ public class MerkleNode {
     }
 
     public String toJSONString() {
-        return JSONParser.toString(toJSON());
+        return JSONWriter.toString(toJSON());
     }
 }
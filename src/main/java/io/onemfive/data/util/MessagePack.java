@@ -0,0 +1,351 @@
+package io.onemfive.data.util;
+
+import io.onemfive.data.JSONSerializable;
+import io.onemfive.data.content.Content;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * MessagePack encoding of toMap() graphs.
+ *
+ * Same graphs and the same byte[] handling as {@link CBOR}: byte[] values,
+ * including the bodies of Content, are written as bin rather than Base64
+ * text. MessagePack has no big numbers, so BigInteger values outside the
+ * 64 bit range and BigDecimals are written as their decimal strings, which
+ * is what the JSON path gives a reader too. Extension types are decoded
+ * as their raw data bytes.
+ *
+ * @author objectorange
+ */
+public final class MessagePack {
+
+    public static final String CONTENT_TYPE = "application/msgpack";
+
+    private static final int NIL = 0xC0;
+    private static final int FALSE = 0xC2;
+    private static final int TRUE = 0xC3;
+    private static final int BIN8 = 0xC4;
+    private static final int BIN16 = 0xC5;
+    private static final int BIN32 = 0xC6;
+    private static final int EXT8 = 0xC7;
+    private static final int EXT16 = 0xC8;
+    private static final int EXT32 = 0xC9;
+    private static final int FLOAT32 = 0xCA;
+    private static final int FLOAT64 = 0xCB;
+    private static final int UINT8 = 0xCC;
+    private static final int UINT16 = 0xCD;
+    private static final int UINT32 = 0xCE;
+    private static final int UINT64 = 0xCF;
+    private static final int INT8 = 0xD0;
+    private static final int INT16 = 0xD1;
+    private static final int INT32 = 0xD2;
+    private static final int INT64 = 0xD3;
+    private static final int FIXEXT1 = 0xD4;
+    private static final int FIXEXT16 = 0xD8;
+    private static final int STR8 = 0xD9;
+    private static final int STR16 = 0xDA;
+    private static final int STR32 = 0xDB;
+    private static final int ARRAY16 = 0xDC;
+    private static final int ARRAY32 = 0xDD;
+    private static final int MAP16 = 0xDE;
+    private static final int MAP32 = 0xDF;
+
+    private MessagePack() {}
+
+    public static byte[] encode(Object graph) {
+        Encoder e = new Encoder();
+        e.value(graph);
+        return Arrays.copyOf(e.buf, e.count);
+    }
+
+    public static void encode(Object graph, OutputStream out) throws IOException {
+        Encoder e = new Encoder();
+        e.value(graph);
+        out.write(e.buf, 0, e.count);
+    }
+
+    public static Object decode(byte[] data) {
+        return decode(ByteBuffer.wrap(data));
+    }
+
+    /**
+     * Decode one object, leaving the buffer positioned after it.
+     */
+    public static Object decode(ByteBuffer buffer) {
+        ByteBuffer in = buffer.order() == ByteOrder.BIG_ENDIAN ? buffer : buffer.duplicate().order(ByteOrder.BIG_ENDIAN);
+        try {
+            return value(in);
+        } catch (BufferUnderflowException e) {
+            throw error(in, "truncated input");
+        } finally {
+            buffer.position(in.position());
+        }
+    }
+
+    private static final class Encoder {
+
+        private byte[] buf = new byte[256];
+        private int count = 0;
+
+        private void value(Object v) {
+            if (v == null) {
+                write(NIL);
+            } else if (v instanceof String) {
+                text((String) v);
+            } else if (v instanceof Boolean) {
+                write((Boolean) v ? TRUE : FALSE);
+            } else if (v instanceof Integer || v instanceof Long || v instanceof Short || v instanceof Byte) {
+                integer(((Number) v).longValue());
+            } else if (v instanceof Double) {
+                write(FLOAT64);
+                bigEndian(Double.doubleToLongBits((Double) v), 8);
+            } else if (v instanceof Float) {
+                write(FLOAT32);
+                bigEndian(Float.floatToIntBits((Float) v), 4);
+            } else if (v instanceof BigInteger && ((BigInteger) v).bitLength() < 64) {
+                integer(((BigInteger) v).longValue());
+            } else if (v instanceof BigInteger || v instanceof BigDecimal) {
+                text(v.toString());
+            } else if (v instanceof Number) {
+                text(new BigDecimal(v.toString()).toString());
+            } else if (v instanceof byte[]) {
+                byte[] b = (byte[]) v;
+                if (b.length < 0x100) {
+                    write(BIN8);
+                    write(b.length);
+                } else if (b.length < 0x10000) {
+                    write(BIN16);
+                    bigEndian(b.length, 2);
+                } else {
+                    write(BIN32);
+                    bigEndian(b.length, 4);
+                }
+                raw(b);
+            } else if (v instanceof Map) {
+                Map<?,?> m = (Map<?,?>) v;
+                container(m.size(), 0x80, MAP16, MAP32);
+                for (Map.Entry<?,?> e : m.entrySet()) {
+                    text(String.valueOf(e.getKey()));
+                    value(e.getValue());
+                }
+            } else if (v instanceof Collection) {
+                Collection<?> c = (Collection<?>) v;
+                container(c.size(), 0x90, ARRAY16, ARRAY32);
+                for (Object o : c)
+                    value(o);
+            } else if (v instanceof Object[]) {
+                Object[] a = (Object[]) v;
+                container(a.length, 0x90, ARRAY16, ARRAY32);
+                for (Object o : a)
+                    value(o);
+            } else if (v instanceof Content) {
+                value(((Content) v).toMap(false));
+            } else if (v instanceof JSONSerializable) {
+                value(((JSONSerializable) v).toMap());
+            } else {
+                text(v.toString());
+            }
+        }
+
+        /**
+         * The smallest format that holds n.
+         */
+        private void integer(long n) {
+            if (n >= 0) {
+                if (n < 0x80) write((int) n);
+                else if (n < 0x100) { write(UINT8); write((int) n); }
+                else if (n < 0x10000) { write(UINT16); bigEndian(n, 2); }
+                else if (n < 0x100000000L) { write(UINT32); bigEndian(n, 4); }
+                else { write(UINT64); bigEndian(n, 8); }
+            } else {
+                if (n >= -32) write((int) n);
+                else if (n >= Byte.MIN_VALUE) { write(INT8); write((int) n); }
+                else if (n >= Short.MIN_VALUE) { write(INT16); bigEndian(n, 2); }
+                else if (n >= Integer.MIN_VALUE) { write(INT32); bigEndian(n, 4); }
+                else { write(INT64); bigEndian(n, 8); }
+            }
+        }
+
+        private void text(String s) {
+            byte[] b = s.getBytes(StandardCharsets.UTF_8);
+            if (b.length < 32) {
+                write(0xA0 | b.length);
+            } else if (b.length < 0x100) {
+                write(STR8);
+                write(b.length);
+            } else if (b.length < 0x10000) {
+                write(STR16);
+                bigEndian(b.length, 2);
+            } else {
+                write(STR32);
+                bigEndian(b.length, 4);
+            }
+            raw(b);
+        }
+
+        private void container(int size, int fix, int format16, int format32) {
+            if (size < 16) {
+                write(fix | size);
+            } else if (size < 0x10000) {
+                write(format16);
+                bigEndian(size, 2);
+            } else {
+                write(format32);
+                bigEndian(size, 4);
+            }
+        }
+
+        private void bigEndian(long v, int bytes) {
+            ensure(bytes);
+            for (int s = (bytes - 1) * 8; s >= 0; s -= 8)
+                buf[count++] = (byte) (v >>> s);
+        }
+
+        private void raw(byte[] b) {
+            ensure(b.length);
+            System.arraycopy(b, 0, buf, count, b.length);
+            count += b.length;
+        }
+
+        private void write(int b) {
+            ensure(1);
+            buf[count++] = (byte) b;
+        }
+
+        private void ensure(int n) {
+            if (count + n > buf.length)
+                buf = Arrays.copyOf(buf, Math.max(buf.length * 2, count + n));
+        }
+    }
+
+    private static Object value(ByteBuffer in) {
+        int b = in.get() & 0xFF;
+        if (b < 0x80) return b;
+        if (b >= 0xE0) return (int) (byte) b;
+        if (b < 0x90) return map(in, b & 0x0F);
+        if (b < 0xA0) return array(in, b & 0x0F);
+        if (b < 0xC0) return text(in, b & 0x1F);
+        switch (b) {
+            case NIL: return null;
+            case FALSE: return Boolean.FALSE;
+            case TRUE: return Boolean.TRUE;
+            case BIN8: return bytes(in, in.get() & 0xFF);
+            case BIN16: return bytes(in, in.getShort() & 0xFFFF);
+            case BIN32: return bytes(in, length(in, in.getInt()));
+            case EXT8: return ext(in, in.get() & 0xFF);
+            case EXT16: return ext(in, in.getShort() & 0xFFFF);
+            case EXT32: return ext(in, length(in, in.getInt()));
+            case FLOAT32: return in.getFloat();
+            case FLOAT64: return in.getDouble();
+            case UINT8: return in.get() & 0xFF;
+            case UINT16: return in.getShort() & 0xFFFF;
+            case UINT32: return narrow(in.getInt() & 0xFFFFFFFFL);
+            case UINT64: {
+                long n = in.getLong();
+                return n < 0 ? new BigInteger(Long.toUnsignedString(n)) : narrow(n);
+            }
+            case INT8: return (int) in.get();
+            case INT16: return (int) in.getShort();
+            case INT32: return in.getInt();
+            case INT64: return narrow(in.getLong());
+            case STR8: return text(in, in.get() & 0xFF);
+            case STR16: return text(in, in.getShort() & 0xFFFF);
+            case STR32: return text(in, length(in, in.getInt()));
+            case ARRAY16: return array(in, in.getShort() & 0xFFFF);
+            case ARRAY32: return array(in, length(in, in.getInt()));
+            case MAP16: return map(in, in.getShort() & 0xFFFF);
+            case MAP32: return map(in, length(in, in.getInt()));
+            default: {
+                if (b >= FIXEXT1 && b <= FIXEXT16)
+                    return ext(in, 1 << (b - FIXEXT1));
+                throw error(in, "unknown format 0x" + Integer.toHexString(b));
+            }
+        }
+    }
+
+    private static Object narrow(long n) {
+        return n >= Integer.MIN_VALUE && n <= Integer.MAX_VALUE ? (Object) (int) n : (Object) n;
+    }
+
+    private static List<Object> array(ByteBuffer in, int n) {
+        checkCount(in, n);
+        List<Object> l = new ArrayList<>(n);
+        for (int i = 0; i < n; i++)
+            l.add(value(in));
+        return l;
+    }
+
+    private static Map<String,Object> map(ByteBuffer in, int n) {
+        checkCount(in, n);
+        Map<String,Object> m = new LinkedHashMap<>(n * 4 / 3 + 1);
+        for (int i = 0; i < n; i++) {
+            String key;
+            int b = in.get(in.position()) & 0xFF;
+            if (b >= 0xA0 && b < 0xC0 && in.hasArray()) {
+                in.get();
+                int len = b & 0x1F;
+                if (len > in.remaining())
+                    throw error(in, "length " + len + " exceeds input");
+                key = JSONKeys.intern(in.array(), in.arrayOffset() + in.position(), len);
+                in.position(in.position() + len);
+            } else {
+                key = String.valueOf(value(in));
+            }
+            m.put(key, value(in));
+        }
+        return m;
+    }
+
+    private static String text(ByteBuffer in, int len) {
+        if (len > in.remaining())
+            throw error(in, "length " + len + " exceeds input");
+        String s;
+        if (in.hasArray()) {
+            s = new String(in.array(), in.arrayOffset() + in.position(), len, StandardCharsets.UTF_8);
+            in.position(in.position() + len);
+        } else {
+            byte[] b = new byte[len];
+            in.get(b);
+            s = new String(b, StandardCharsets.UTF_8);
+        }
+        return s;
+    }
+
+    private static byte[] bytes(ByteBuffer in, int len) {
+        if (len > in.remaining())
+            throw error(in, "length " + len + " exceeds input");
+        byte[] b = new byte[len];
+        in.get(b);
+        return b;
+    }
+
+    private static byte[] ext(ByteBuffer in, int len) {
+        in.get(); // extension type
+        return bytes(in, len);
+    }
+
+    private static int length(ByteBuffer in, int len) {
+        if (len < 0 || len > in.remaining())
+            throw error(in, "length " + (len & 0xFFFFFFFFL) + " exceeds input");
+        return len;
+    }
+
+    /**
+     * Every element takes at least a byte, so a larger count is corrupt input.
+     */
+    private static void checkCount(ByteBuffer in, int n) {
+        length(in, n);
+    }
+
+    private static IllegalStateException error(ByteBuffer in, String message) {
+        return new IllegalStateException("msgpack " + message + " at " + in.position());
+    }
+}
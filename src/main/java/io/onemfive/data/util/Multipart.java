@@ -4,36 +4,51 @@ import io.onemfive.data.JSONSerializable;
 
 import java.io.*;
 import java.net.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.util.*;
 
+/**
+ * Streaming multipart/form-data encoder.
+ *
+ * The add methods only record what each part is; nothing is read until
+ * writeTo(), which streams the parts out in order. File parts are copied
+ * with FileChannel.transferTo and subtrees are walked as they are written,
+ * so uploading a directory of any size takes constant memory.
+ * getContentLength() adds the part sizes up front without reading them.
+ *
+ * @author objectorange
+ */
 public class Multipart implements JSONSerializable {
     private final String boundary;
     private static final String LINE_FEED = "\r\n";
-    //    private HttpURLConnection httpConn;
+    private static final int BUFFER_SIZE = 64 * 1024;
     private String charset;
-    //    private OutputStream out;
-//    private PrintWriter b;
-    private StringBuilder b = new StringBuilder();
+    private final List<Part> parts = new ArrayList<>();
 
     public Multipart(String charset) {
         this.charset = charset;
         boundary = createBoundary();
-
-//        URL url = new URL(requestURL);
-//        httpConn = (HttpURLConnection) url.openConnection();
-//        httpConn.setUseCaches(false);
-//        httpConn.setDoOutput(true);
-//        httpConn.setDoInput(true);
-//        httpConn.setRequestProperty("Content-Type", "multipart/form-data; boundary=" + boundary);
-//        httpConn.setRequestProperty("User-Agent", "Client");
-//        out = httpConn.getOutputStream();
-//        b = new PrintWriter(new OutputStreamWriter(out, charset), true);
     }
 
     public String getBoundary() {
         return boundary;
     }
 
+    /**
+     * @return value of the Content-Type header to send the body with
+     */
+    public String getContentType() {
+        return "multipart/form-data; boundary=" + boundary;
+    }
+
     public static String createBoundary() {
         Random r = new Random();
         String allowed = "0123456789abcdefghijklmnopqrstuvwxyzABCDEFGHIJKLMNOPQRSTUVWXYZ";
@@ -44,99 +59,274 @@ public class Multipart implements JSONSerializable {
     }
 
     public void addFormField(String name, String value) {
-        b.append("--" + boundary).append(LINE_FEED);
-        b.append("Content-Disposition: form-data; name=\"" + name + "\"")
-                .append(LINE_FEED);
-        b.append("Content-Type: text/plain; charset=" + charset).append(LINE_FEED);
+        StringBuilder b = new StringBuilder();
+        b.append("--").append(boundary).append(LINE_FEED);
+        b.append("Content-Disposition: form-data; name=\"").append(name).append("\"").append(LINE_FEED);
+        b.append("Content-Type: text/plain; charset=").append(charset).append(LINE_FEED);
         b.append(LINE_FEED);
         b.append(value).append(LINE_FEED);
-//        b.flush();
+        parts.add(new Text(b.toString()));
     }
 
+    /**
+     * Add a directory part for dir and a part for everything below it,
+     * read from disk as it is written.
+     */
     public void addSubtree(String path, File dir) throws IOException {
-        String dirPath = path + (path.length() > 0 ? "/" : "") + dir.getName();
-        addDirectoryPart(dirPath);
-        for (File f: dir.listFiles()) {
-            if (f.isDirectory())
-                addSubtree(dirPath, f);
-            else
-                addFilePart("file", new FileWrapper(dirPath + "/", f));
-        }
+        parts.add(new Subtree(path, dir.toPath()));
     }
 
     public void addDirectoryPart(String path) {
+        parts.add(new Text(directoryHeader(path)));
+    }
+
+    public void addFilePart(String fieldName, NamedStreamable uploadFile) throws IOException {
+        parts.add(new Stream(fileHeader(fieldName, uploadFile.getName()), uploadFile));
+    }
+
+    public void addHeaderField(String name, String value) {
+        parts.add(new Text(name + ": " + value + LINE_FEED));
+    }
+
+    /**
+     * @return bytes writeTo() will write, or -1 if a part's size is not known up front
+     */
+    public long getContentLength() throws IOException {
+        long n = 0;
+        for(Part p : parts) {
+            long len = p.length();
+            if(len < 0) return -1;
+            n += len;
+        }
+        return n + bytes(closeDelimiter()).length;
+    }
+
+    /**
+     * Stream the whole body, closing delimiter included, to out.
+     */
+    public void writeTo(OutputStream out) throws IOException {
+        writeTo(Channels.newChannel(out));
+        out.flush();
+    }
+
+    /**
+     * Stream the whole body, closing delimiter included, to ch.
+     */
+    public void writeTo(WritableByteChannel ch) throws IOException {
+        for(Part p : parts)
+            p.writeTo(ch);
+        write(ch, bytes(closeDelimiter()));
+    }
+
+    /**
+     * @return the whole body as text; only for small bodies, use writeTo() otherwise
+     */
+    public String finish() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        writeTo(out);
+        return out.toString(charset);
+    }
+
+    private String closeDelimiter() {
+        return "--" + boundary + "--" + LINE_FEED;
+    }
+
+    private String directoryHeader(String path) {
         try {
-            b.append("--" + boundary).append(LINE_FEED);
-            b.append("Content-Disposition: file; filename=\"" + URLEncoder.encode(path, "UTF-8") + "\"").append(LINE_FEED);
-            b.append("Content-Type: application/x-directory").append(LINE_FEED);
-            b.append("Content-Transfer-Encoding: binary").append(LINE_FEED);
-            b.append(LINE_FEED);
-            b.append(LINE_FEED);
-//            b.flush();
+            return "--" + boundary + LINE_FEED
+                    + "Content-Disposition: file; filename=\"" + URLEncoder.encode(path, "UTF-8") + "\"" + LINE_FEED
+                    + "Content-Type: application/x-directory" + LINE_FEED
+                    + "Content-Transfer-Encoding: binary" + LINE_FEED
+                    + LINE_FEED
+                    + LINE_FEED;
         } catch (UnsupportedEncodingException e) {
             throw new RuntimeException(e);
         }
     }
 
-    public void addFilePart(String fieldName, NamedStreamable uploadFile) throws IOException {
-        String fileName = uploadFile.getName();
-        b.append("--" + boundary).append(LINE_FEED);
+    private String fileHeader(String fieldName, String fileName) {
+        StringBuilder b = new StringBuilder();
+        b.append("--").append(boundary).append(LINE_FEED);
         if (fileName == null)
-            b.append("Content-Disposition: file; name=\"" + fieldName + "\";").append(LINE_FEED);
+            b.append("Content-Disposition: file; name=\"").append(fieldName).append("\";").append(LINE_FEED);
         else
-            b.append("Content-Disposition: file; filename=\"" + fileName + "\"").append(LINE_FEED);
+            b.append("Content-Disposition: file; filename=\"").append(fileName).append("\"").append(LINE_FEED);
         b.append("Content-Type: application/octet-stream").append(LINE_FEED);
         b.append("Content-Transfer-Encoding: binary").append(LINE_FEED);
         b.append(LINE_FEED);
-//        b.flush();
+        return b.toString();
+    }
 
-//        InputStream inputStream = uploadFile.getInputStream();
-//        byte[] buffer = new byte[4096];
-//        int r;
-//        while ((r = inputStream.read(buffer)) != -1)
-//            out.write(buffer, 0, r);
-//        out.flush();
-//        inputStream.close();
+    private byte[] bytes(String s) {
+        try {
+            return s.getBytes(charset);
+        } catch (UnsupportedEncodingException e) {
+            throw new RuntimeException(e);
+        }
+    }
 
-        b.append(LINE_FEED);
-//        b.flush();
+    private static void write(WritableByteChannel ch, byte[] b) throws IOException {
+        ByteBuffer buf = ByteBuffer.wrap(b);
+        while(buf.hasRemaining())
+            ch.write(buf);
     }
 
-    public void addHeaderField(String name, String value) {
-        b.append(name + ": " + value).append(LINE_FEED);
-//        b.flush();
+    private static void transfer(File f, WritableByteChannel ch) throws IOException {
+        try (FileChannel in = FileChannel.open(f.toPath(), StandardOpenOption.READ)) {
+            long size = in.size();
+            long pos = 0;
+            // transferTo may move less than asked, e.g. 2GB at a time on Linux
+            while(pos < size) {
+                long n = in.transferTo(pos, size - pos, ch);
+                if(n <= 0 && in.size() <= pos) break;
+                pos += n;
+            }
+        }
     }
 
-    public String finish() throws IOException {
-//        StringBuilder b = new StringBuilder();
-
-        b.append("--" + boundary + "--").append(LINE_FEED);
-//        b.close();
-
-//        int status = httpConn.getResponseCode();
-//        if (status == HttpURLConnection.HTTP_OK) {
-//            BufferedReader reader = new BufferedReader(new InputStreamReader(
-//                    httpConn.getInputStream()));
-//            String line;
-//            while ((line = reader.readLine()) != null) {
-//                b.append(line);
-//            }
-//            reader.close();
-//            httpConn.disconnect();
-//        } else {
-//            try {
-//                BufferedReader reader = new BufferedReader(new InputStreamReader(
-//                        httpConn.getInputStream()));
-//                String line;
-//                while ((line = reader.readLine()) != null) {
-//                    b.append(line);
-//                }
-//                reader.close();
-//            } catch (Throwable t) {}
-//            throw new IOException("Server returned status: " + status + " with body: "+b.toString() + " and Trailer header: "+httpConn.getHeaderFields().get("Trailer"));
-//        }
+    private static void copy(InputStream in, WritableByteChannel ch) throws IOException {
+        ReadableByteChannel rc = Channels.newChannel(in);
+        ByteBuffer buf = ByteBuffer.allocate(BUFFER_SIZE);
+        while(rc.read(buf) >= 0 || buf.position() > 0) {
+            buf.flip();
+            ch.write(buf);
+            buf.compact();
+        }
+    }
 
-        return b.toString();
+    private interface Part {
+        long length() throws IOException;
+        void writeTo(WritableByteChannel ch) throws IOException;
+    }
+
+    private final class Text implements Part {
+
+        private final byte[] text;
+
+        private Text(String text) {
+            this.text = bytes(text);
+        }
+
+        @Override
+        public long length() {
+            return text.length;
+        }
+
+        @Override
+        public void writeTo(WritableByteChannel ch) throws IOException {
+            write(ch, text);
+        }
+    }
+
+    private final class Stream implements Part {
+
+        private final byte[] header;
+        private final NamedStreamable source;
+
+        private Stream(String header, NamedStreamable source) {
+            this.header = bytes(header);
+            this.source = source;
+        }
+
+        @Override
+        public long length() {
+            long len = source.length();
+            return len < 0 ? -1 : header.length + len + 2;
+        }
+
+        @Override
+        public void writeTo(WritableByteChannel ch) throws IOException {
+            write(ch, header);
+            if(source instanceof FileWrapper) {
+                transfer(((FileWrapper)source).getFile(), ch);
+            } else {
+                try (InputStream in = source.getInputStream()) {
+                    if(in != null) copy(in, ch);
+                }
+            }
+            write(ch, bytes(LINE_FEED));
+        }
+    }
+
+    /**
+     * A directory and all below it, depth first, each directory's entries
+     * in name order so that length() and writeTo() see the same parts.
+     */
+    private final class Subtree implements Part {
+
+        private final String path;
+        private final Path dir;
+
+        private Subtree(String path, Path dir) {
+            this.path = path;
+            this.dir = dir;
+        }
+
+        @Override
+        public long length() throws IOException {
+            long[] n = {0};
+            walk((dirPath, file) -> n[0] += file == null
+                    ? bytes(directoryHeader(dirPath)).length
+                    : bytes(fileHeader("file", new FileWrapper(dirPath + "/", file).getName())).length + file.length() + 2);
+            return n[0];
+        }
+
+        @Override
+        public void writeTo(WritableByteChannel ch) throws IOException {
+            walk((dirPath, file) -> {
+                if(file == null) {
+                    write(ch, bytes(directoryHeader(dirPath)));
+                } else {
+                    write(ch, bytes(fileHeader("file", new FileWrapper(dirPath + "/", file).getName())));
+                    transfer(file, ch);
+                    write(ch, bytes(LINE_FEED));
+                }
+            });
+        }
+
+        /**
+         * Visit each directory (file null) before its entries, one directory
+         * listing in memory per level rather than the whole tree.
+         */
+        private void walk(Visitor v) throws IOException {
+            Deque<Iterator<Path>> stack = new ArrayDeque<>();
+            Deque<String> paths = new ArrayDeque<>();
+            String dirPath = path + (path.length() > 0 ? "/" : "") + dir.getFileName();
+            v.visit(dirPath, null);
+            stack.push(list(dir));
+            paths.push(dirPath);
+            while(!stack.isEmpty()) {
+                Iterator<Path> i = stack.peek();
+                if(!i.hasNext()) {
+                    stack.pop();
+                    paths.pop();
+                    continue;
+                }
+                Path p = i.next();
+                if(Files.isDirectory(p)) {
+                    String sub = paths.peek() + "/" + p.getFileName();
+                    v.visit(sub, null);
+                    stack.push(list(p));
+                    paths.push(sub);
+                } else {
+                    v.visit(paths.peek(), p.toFile());
+                }
+            }
+        }
+
+        private Iterator<Path> list(Path d) throws IOException {
+            List<Path> l = new ArrayList<>();
+            try (DirectoryStream<Path> s = Files.newDirectoryStream(d)) {
+                for(Path p : s)
+                    l.add(p);
+            }
+            Collections.sort(l);
+            return l.iterator();
+        }
+    }
+
+    private interface Visitor {
+        void visit(String dirPath, File file) throws IOException;
     }
 
     @Override
@@ -0,0 +1,511 @@
+package io.onemfive.data.util;
+
+import io.onemfive.data.Envelope;
+import io.onemfive.data.content.ChunkSource;
+import io.onemfive.data.content.ChunkedBody;
+import io.onemfive.data.content.Content;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Streaming multipart/form-data parser, the inverse of {@link Multipart}.
+ *
+ * Boundaries are found with Boyer-Moore-Horspool, skipping ahead up to
+ * the delimiter's length per comparison. Over a ByteBuffer holding the
+ * whole body (e.g. a mapped file) each part's body is a read-only slice
+ * of it and nothing is copied. Over a stream or channel only one 64 KB
+ * window is held, and each part's body is an InputStream that ends at the
+ * next boundary; large parts spill to a temp file in toContent().
+ *
+ * Parts are read in order with next(); a part is valid until the next call.
+ * Not thread-safe.
+ *
+ * @author objectorange
+ */
+public final class MultipartParser implements Closeable {
+
+    public static final int DEFAULT_SPILL_THRESHOLD = 1024 * 1024;
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int MAX_HEADER_BYTES = 16 * 1024;
+
+    // null when the whole body is in buf
+    private final ReadableByteChannel ch;
+    private ByteBuffer buf;
+    private boolean eof;
+
+    // CRLF "--" boundary
+    private final byte[] delimiter;
+    private final int[] skip = new int[256];
+    // in buf: start of the delimiter ending the current body, or -1
+    private int delimiterAt = -1;
+    // in buf: no delimiter starts before here
+    private int scanFrom;
+
+    private boolean started;
+    private boolean done;
+    private Part current;
+
+    private int spillThreshold = DEFAULT_SPILL_THRESHOLD;
+    private Path spillDir;
+
+    /**
+     * Parse a body that is all in memory; part bodies are slices of it.
+     */
+    public MultipartParser(ByteBuffer body, String boundary) {
+        this(null, body.slice(), boundary);
+        eof = true;
+    }
+
+    public MultipartParser(InputStream in, String boundary) {
+        this(Channels.newChannel(in), boundary);
+    }
+
+    public MultipartParser(ReadableByteChannel ch, String boundary) {
+        this(ch, ByteBuffer.allocate(Math.max(BUFFER_SIZE, 2 * (MAX_HEADER_BYTES + boundary.length()))), boundary);
+        buf.flip();
+    }
+
+    private MultipartParser(ReadableByteChannel ch, ByteBuffer buf, String boundary) {
+        if(boundary == null || boundary.isEmpty() || boundary.length() > 70)
+            throw new IllegalArgumentException("Boundary must be 1 to 70 characters");
+        this.ch = ch;
+        this.buf = buf;
+        delimiter = ("\r\n--" + boundary).getBytes(StandardCharsets.ISO_8859_1);
+        // Horspool bad character shifts
+        int last = delimiter.length - 1;
+        for(int i = 0; i < skip.length; i++)
+            skip[i] = delimiter.length;
+        for(int i = 0; i < last; i++)
+            skip[delimiter[i] & 0xFF] = last - i;
+    }
+
+    /**
+     * @return the boundary parameter of a multipart Content-Type header value or null
+     */
+    public static String boundary(String contentType) {
+        return contentType == null ? null : parameter(contentType, "boundary");
+    }
+
+    /**
+     * @param threshold parts larger than this go to a temp file in toContent()
+     */
+    public void setSpillThreshold(int threshold) {
+        this.spillThreshold = threshold;
+    }
+
+    /**
+     * @param dir where spilled parts go, the default temp directory if null
+     */
+    public void setSpillDirectory(Path dir) {
+        this.spillDir = dir;
+    }
+
+    /**
+     * @return the next part, or null after the closing boundary
+     * @throws IOException if the body ends early or is not multipart
+     */
+    public Part next() throws IOException {
+        if(current != null) {
+            current.skip();
+            current = null;
+        }
+        if(done) return null;
+        if(!started) {
+            started = true;
+            first();
+        }
+        // after a boundary: "--" closes the body, else padding up to CRLF
+        fill(2);
+        if(buf.remaining() >= 2 && buf.get(buf.position()) == '-' && buf.get(buf.position() + 1) == '-') {
+            done = true;
+            return null;
+        }
+        int eol = indexOfCRLF(buf.position(), MAX_HEADER_BYTES);
+        if(eol < 0)
+            throw new IOException("Multipart boundary line not terminated at pos " + buf.position());
+        buf.position(eol + 2);
+        Map<String,String> headers = headers();
+        delimiterAt = -1;
+        scanFrom = buf.position();
+        current = new Part(headers);
+        return current;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if(ch != null) ch.close();
+    }
+
+    /**
+     * Skip the preamble up to just after the first "--" boundary, which
+     * unlike the others need not follow a CRLF.
+     */
+    private void first() throws IOException {
+        fill(delimiter.length - 2);
+        if(startsWith(buf.position(), 2)) {
+            buf.position(buf.position() + delimiter.length - 2);
+            return;
+        }
+        scanFrom = buf.position();
+        delimiterAt = -1;
+        while(bodyChunk(Integer.MAX_VALUE) != null);
+    }
+
+    private boolean startsWith(int at, int from) {
+        if(buf.limit() - at < delimiter.length - from) return false;
+        for(int i = from; i < delimiter.length; i++)
+            if(buf.get(at + i - from) != delimiter[i]) return false;
+        return true;
+    }
+
+    private Map<String,String> headers() throws IOException {
+        Map<String,String> headers = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        int used = 0;
+        String name = null;
+        while(true) {
+            int eol = indexOfCRLF(buf.position(), MAX_HEADER_BYTES - used);
+            if(eol < 0)
+                throw new IOException("Multipart part headers too long or not terminated at pos " + buf.position());
+            // read after indexOfCRLF, which may have compacted buf
+            int from = buf.position();
+            buf.position(eol + 2);
+            used += eol + 2 - from;
+            if(eol == from) break;
+            String line = string(from, eol);
+            if((line.charAt(0) == ' ' || line.charAt(0) == '\t') && name != null) {
+                // folded continuation
+                headers.put(name, headers.get(name) + " " + line.trim());
+                continue;
+            }
+            int colon = line.indexOf(':');
+            if(colon <= 0)
+                throw new IOException("Malformed multipart header at pos " + from);
+            name = line.substring(0, colon).trim();
+            headers.put(name, line.substring(colon + 1).trim());
+        }
+        return headers;
+    }
+
+    private String string(int from, int to) {
+        byte[] b = new byte[to - from];
+        for(int i = 0; i < b.length; i++)
+            b[i] = buf.get(from + i);
+        // RFC 7578 allows UTF-8 file names
+        return new String(b, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @return index of the next CRLF at or after from, within max bytes, or -1
+     */
+    private int indexOfCRLF(int from, int max) throws IOException {
+        int i = from;
+        while(true) {
+            for(; i + 1 < buf.limit(); i++) {
+                if(i - from >= max) return -1;
+                if(buf.get(i) == '\r' && buf.get(i + 1) == '\n') return i;
+            }
+            int pos = buf.position();
+            if(!fill(buf.remaining() + 1)) return -1;
+            i -= pos - buf.position();
+            from -= pos - buf.position();
+        }
+    }
+
+    /**
+     * @return the next bytes of the current body, at most max, as a slice of
+     * buf valid until the next call, or null once the delimiter is reached
+     */
+    private ByteBuffer bodyChunk(int max) throws IOException {
+        while(true) {
+            int pos = buf.position();
+            if(delimiterAt < 0) {
+                delimiterAt = search(Math.max(pos, scanFrom), buf.limit());
+                if(delimiterAt < 0) scanFrom = Math.max(pos, buf.limit() - delimiter.length + 1);
+            }
+            int end = delimiterAt >= 0 ? delimiterAt : scanFrom;
+            if(end > pos) {
+                int n = Math.min(max, end - pos);
+                ByteBuffer b = buf.slice();
+                b.limit(n);
+                buf.position(pos + n);
+                return b.asReadOnlyBuffer();
+            }
+            if(delimiterAt >= 0) {
+                buf.position(delimiterAt + delimiter.length);
+                delimiterAt = -1;
+                return null;
+            }
+            if(!fill(buf.remaining() + 1))
+                throw new IOException("Multipart body ends without a closing boundary");
+        }
+    }
+
+    /**
+     * Boyer-Moore-Horspool search for the delimiter in buf[from, to).
+     */
+    private int search(int from, int to) {
+        int last = delimiter.length - 1;
+        int i = from;
+        while(i + last < to) {
+            byte b = buf.get(i + last);
+            if(b == delimiter[last]) {
+                int j = last - 1;
+                while(j >= 0 && buf.get(i + j) == delimiter[j])
+                    j--;
+                if(j < 0) return i;
+            }
+            i += skip[b & 0xFF];
+        }
+        return -1;
+    }
+
+    /**
+     * Read until at least need bytes are buffered, compacting buf first.
+     * @return false if the body ended before that
+     */
+    private boolean fill(int need) throws IOException {
+        while(buf.remaining() < need) {
+            if(eof) return false;
+            int shift = buf.position();
+            if(shift == 0 && buf.limit() == buf.capacity())
+                throw new IOException("Multipart header or boundary larger than buffer");
+            buf.compact();
+            if(delimiterAt >= 0) delimiterAt -= shift;
+            scanFrom = Math.max(0, scanFrom - shift);
+            int n = ch.read(buf);
+            buf.flip();
+            if(n < 0) eof = true;
+        }
+        return true;
+    }
+
+    private static String parameter(String header, String name) {
+        int i = 0;
+        int len = header.length();
+        while(i < len) {
+            int semi = header.indexOf(';', i);
+            if(semi < 0) return null;
+            i = semi + 1;
+            while(i < len && header.charAt(i) == ' ') i++;
+            int eq = header.indexOf('=', i);
+            if(eq < 0) return null;
+            String key = header.substring(i, eq).trim();
+            i = eq + 1;
+            String value;
+            if(i < len && header.charAt(i) == '"') {
+                StringBuilder sb = new StringBuilder();
+                for(i++; i < len && header.charAt(i) != '"'; i++) {
+                    char c = header.charAt(i);
+                    if(c == '\\' && i + 1 < len) c = header.charAt(++i);
+                    sb.append(c);
+                }
+                i++;
+                value = sb.toString();
+            } else {
+                int end = header.indexOf(';', i);
+                if(end < 0) end = len;
+                value = header.substring(i, end).trim();
+                i = end;
+            }
+            if(key.equalsIgnoreCase(name)) return value;
+        }
+        return null;
+    }
+
+    public final class Part {
+
+        private final Map<String,String> headers;
+        private boolean ended;
+
+        private Part(Map<String,String> headers) {
+            this.headers = Collections.unmodifiableMap(headers);
+        }
+
+        /**
+         * @return headers by case-insensitive name
+         */
+        public Map<String,String> getHeaders() {
+            return headers;
+        }
+
+        public String getHeader(String name) {
+            return headers.get(name);
+        }
+
+        /**
+         * @return name parameter of Content-Disposition
+         */
+        public String getName() {
+            String cd = headers.get(Envelope.HEADER_CONTENT_DISPOSITION);
+            return cd == null ? null : parameter(cd, "name");
+        }
+
+        /**
+         * @return filename parameter of Content-Disposition
+         */
+        public String getFilename() {
+            String cd = headers.get(Envelope.HEADER_CONTENT_DISPOSITION);
+            return cd == null ? null : parameter(cd, "filename");
+        }
+
+        /**
+         * @return Content-Type, text/plain if not given as RFC 7578 has it
+         */
+        public String getContentType() {
+            String ct = headers.get(Envelope.HEADER_CONTENT_TYPE);
+            return ct == null ? "text/plain" : ct;
+        }
+
+        /**
+         * @return true if Content-Transfer-Encoding is base64, which the body is decoded from
+         */
+        public boolean isBase64() {
+            return "base64".equalsIgnoreCase(headers.get(Envelope.HEADER_CONTENT_TRANSFER_ENCODING));
+        }
+
+        /**
+         * @return the rest of the body, ending at the next boundary
+         */
+        public InputStream getInputStream() {
+            InputStream in = new BodyInputStream();
+            return isBase64() ? Base64.getMimeDecoder().wrap(in) : in;
+        }
+
+        /**
+         * @return the rest of the body: a read-only slice of the parsed buffer
+         * when it is all in memory and not base64, else read into a new buffer
+         */
+        public ByteBuffer getBody() throws IOException {
+            if(ch == null && !isBase64()) {
+                ByteBuffer b = null;
+                if(!ended && (b = bodyChunk(Integer.MAX_VALUE)) == null)
+                    ended = true;
+                skip();
+                return b == null ? ByteBuffer.allocate(0).asReadOnlyBuffer() : b;
+            }
+            return ByteBuffer.wrap(readUpTo(getInputStream(), Integer.MAX_VALUE));
+        }
+
+        /**
+         * Map the part onto Content.buildContent by its Content-Type. Bodies
+         * larger than the spill threshold stay out of the heap: a slice of
+         * the parsed buffer, or a temp file that is deleted once the body
+         * has been read or closed.
+         * @return null, without reading the body, for content types Content does not build
+         */
+        public Content toContent() throws IOException {
+            String type = getContentType();
+            if(!Content.isBuilt(type))
+                return null;
+            String name = getFilename() != null ? getFilename() : getName();
+            if(ch == null && !isBase64()) {
+                ByteBuffer body = getBody();
+                if(body.remaining() <= spillThreshold)
+                    return Content.buildContent(array(body), type, name);
+                return Content.buildContent(new ChunkedBody(ChunkSource.of(body, ChunkedBody.DEFAULT_CHUNK_SIZE)), type, name);
+            }
+            InputStream in = getInputStream();
+            byte[] head = readUpTo(in, spillThreshold + 1);
+            if(head.length <= spillThreshold)
+                return Content.buildContent(head, type, name);
+            Path file = spillDir == null ? Files.createTempFile("multipart", ".part") : Files.createTempFile(spillDir, "multipart", ".part");
+            try (OutputStream out = Files.newOutputStream(file)) {
+                out.write(head);
+                byte[] b = new byte[BUFFER_SIZE];
+                int n;
+                while((n = in.read(b)) > 0)
+                    out.write(b, 0, n);
+            } catch (IOException e) {
+                Files.deleteIfExists(file);
+                throw e;
+            }
+            return Content.buildContent(new ChunkedBody(new SpilledSource(file)), type, name);
+        }
+
+        private void skip() throws IOException {
+            while(!ended) {
+                if(bodyChunk(Integer.MAX_VALUE) == null)
+                    ended = true;
+            }
+        }
+
+        private final class BodyInputStream extends InputStream {
+
+            @Override
+            public int read() throws IOException {
+                byte[] b = new byte[1];
+                return read(b, 0, 1) < 0 ? -1 : b[0] & 0xFF;
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                if(len == 0) return 0;
+                if(ended || current != Part.this) return -1;
+                ByteBuffer chunk = bodyChunk(len);
+                if(chunk == null) {
+                    ended = true;
+                    return -1;
+                }
+                int n = chunk.remaining();
+                chunk.get(b, off, n);
+                return n;
+            }
+        }
+    }
+
+    private static byte[] array(ByteBuffer b) {
+        byte[] a = new byte[b.remaining()];
+        b.duplicate().get(a);
+        return a;
+    }
+
+    private static byte[] readUpTo(InputStream in, int max) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] b = new byte[8192];
+        int n;
+        while(out.size() < max && (n = in.read(b, 0, Math.min(b.length, max - out.size()))) > 0)
+            out.write(b, 0, n);
+        return out.toByteArray();
+    }
+
+    /**
+     * A spilled part's temp file, deleted when the chunked body closes it.
+     */
+    private static final class SpilledSource implements ChunkSource {
+
+        private final Path file;
+        private final ChunkSource source;
+
+        private SpilledSource(Path file) throws IOException {
+            this.file = file;
+            this.source = ChunkSource.of(file, ChunkedBody.DEFAULT_CHUNK_SIZE);
+        }
+
+        @Override
+        public ByteBuffer next() throws IOException {
+            return source.next();
+        }
+
+        @Override
+        public long length() {
+            return source.length();
+        }
+
+        @Override
+        public void close() throws IOException {
+            source.close();
+            Files.deleteIfExists(file);
+        }
+    }
+}
@@ -10,4 +10,11 @@ public interface NamedStreamable
 
     boolean isDirectory();
 
+    /**
+     * @return bytes getInputStream() will return, or -1 if not known up front
+     */
+    default long length() {
+        return -1;
+    }
+
 }
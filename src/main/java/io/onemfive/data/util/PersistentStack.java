@@ -0,0 +1,90 @@
+package io.onemfive.data.util;
+
+import java.io.Serializable;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Stack over an immutable linked list, so copy() is O(1) and copies share
+ * every element they have in common; a push or pop on one only moves its
+ * own top.
+ *
+ * @author objectorange
+ */
+public final class PersistentStack<T> implements Stack<T> {
+
+    private Node<T> top;
+
+    public PersistentStack() {}
+
+    private PersistentStack(Node<T> top) {
+        this.top = top;
+    }
+
+    /**
+     * @return an independent stack with the same elements
+     */
+    public PersistentStack<T> copy() {
+        return new PersistentStack<>(top);
+    }
+
+    @Override
+    public void push(T object) {
+        top = new Node<>(object, top);
+    }
+
+    @Override
+    public T pop() {
+        if(top == null) return null;
+        T object = top.value;
+        top = top.next;
+        return object;
+    }
+
+    @Override
+    public T peek() {
+        return top == null ? null : top.value;
+    }
+
+    @Override
+    public Integer numberRemainingRoutes() {
+        return top == null ? 0 : top.size;
+    }
+
+    public void clear() {
+        top = null;
+    }
+
+    @Override
+    public Iterator<T> getIterator() {
+        return new Iterator<T>() {
+            private Node<T> next = top;
+
+            @Override
+            public boolean hasNext() {
+                return next != null;
+            }
+
+            @Override
+            public T next() {
+                if(next == null) throw new NoSuchElementException();
+                T object = next.value;
+                next = next.next;
+                return object;
+            }
+        };
+    }
+
+    private static final class Node<T> implements Serializable {
+
+        private final T value;
+        private final Node<T> next;
+        private final int size;
+
+        private Node(T value, Node<T> next) {
+            this.value = value;
+            this.next = next;
+            this.size = next == null ? 1 : next.size + 1;
+        }
+    }
+}
@@ -8,6 +8,7 @@ import java.io.InputStream;
 import java.io.OutputStream;
 import java.net.Inet4Address;
 import java.net.Inet6Address;
+import java.nio.ByteBuffer;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -171,14 +172,28 @@ public class Protocol {
     }
 
     static int putUvarint(byte[] buf, long x) {
+        return putUvarint(buf, 0, x);
+    }
+
+    /**
+     * @return number of bytes written to buf starting at offset
+     */
+    static int putUvarint(byte[] buf, int offset, long x) {
         int i;
-        for(i = 0; x >= 128L; ++i) {
+        for(i = offset; (x & ~127L) != 0L; ++i) {
             buf[i] = (byte)((int)(x | 128L));
-            x >>= 7;
+            x >>>= 7;
         }
 
         buf[i] = (byte)((int)x);
-        return i + 1;
+        return i + 1 - offset;
+    }
+
+    /**
+     * @return number of bytes putUvarint takes for x
+     */
+    static int uvarintSize(long x) {
+        return x == 0L ? 1 : (64 - Long.numberOfLeadingZeros(x) + 6) / 7;
     }
 
     static long readVarint(InputStream in) throws IOException {
@@ -206,6 +221,31 @@ public class Protocol {
         throw new IllegalStateException("Varint too long!");
     }
 
+    static long readVarint(ByteBuffer in) {
+        long x = 0L;
+        int s = 0;
+
+        for(int i = 0; i < 10; ++i) {
+            if(!in.hasRemaining()) {
+                throw new IllegalStateException("Truncated varint");
+            }
+            int b = in.get() & 0xFF;
+
+            if(b < 128) {
+                if(i <= 9 && (i != 9 || b <= 1)) {
+                    return x | (long)b << s;
+                }
+
+                throw new IllegalStateException("Overflow reading varint" + -(i + 1));
+            }
+
+            x |= ((long)b & 127L) << s;
+            s += 7;
+        }
+
+        throw new IllegalStateException("Varint too long!");
+    }
+
     public static Protocol get(String name) {
         if(byName.containsKey(name)) {
             return byName.get(name);
@@ -1,6 +1,6 @@
 package io.onemfive.data.util;
 
-import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
 
 /**
  * TODO: Add Description
@@ -8,9 +8,12 @@ import java.util.Random;
  * @author objectorange
  */
 public class RandomUtil {
+    /**
+     * For ids use {@link IdGenerator}.
+     */
     public static long nextRandomLong() {
-        return new Random(System.currentTimeMillis()).nextLong();
+        return ThreadLocalRandom.current().nextLong();
     }
-    public static int nextRandomInteger() { return new Random(System.currentTimeMillis()).nextInt(); }
-    public static int nextRandomInteger(int upperBound) { return new Random(System.currentTimeMillis()).nextInt(upperBound); }
+    public static int nextRandomInteger() { return ThreadLocalRandom.current().nextInt(); }
+    public static int nextRandomInteger(int upperBound) { return ThreadLocalRandom.current().nextInt(upperBound); }
 }
@@ -0,0 +1,154 @@
+package io.onemfive.data;
+
+import io.onemfive.data.content.Content;
+import io.onemfive.data.content.Image;
+import io.onemfive.data.route.DynamicRoutingSlip;
+import io.onemfive.data.route.SimpleRoute;
+import io.onemfive.data.util.BinaryCodecs;
+import io.onemfive.data.util.DLC;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Envelopes, routing slips, DIDs and each kind of message through
+ * toBinary()/fromBinary() and back.
+ *
+ * @author objectorange
+ */
+public class BinaryRoundTripTest {
+
+    private static Envelope roundTrip(Envelope e) {
+        return Envelope.fromBinary(e.toBinary());
+    }
+
+    /**
+     * For envelopes whose toMap() holds only values with equals(), which Content does not have.
+     */
+    private static void assertRoundTrip(Envelope e) {
+        assertEquals(e.toMap(), roundTrip(e).toMap());
+    }
+
+    @Test
+    public void envelope() {
+        Envelope e = Envelope.documentFactory();
+        e.setSensitivity(Envelope.Sensitivity.VERYHIGH);
+        e.setAction(Envelope.Action.UPDATE);
+        e.setCommandPath("/a/b");
+        e.setClient(42L);
+        e.setExternal(true);
+        e.setHeader(Envelope.HEADER_CONTENT_TYPE, Envelope.HEADER_CONTENT_TYPE_JSON);
+        e.setHeader("X-Custom", "1");
+        e.setRoute(new SimpleRoute("svc", "op"));
+
+        assertRoundTrip(e);
+    }
+
+    @Test
+    public void dynamicRoutingSlip() {
+        Envelope e = Envelope.documentFactory();
+        DynamicRoutingSlip slip = e.getDynamicRoutingSlip();
+        slip.addRoute(new SimpleRoute("last", "op3"));
+        slip.addRoute(new SimpleRoute("second", "op2"));
+        slip.addRoute(new SimpleRoute("first", "op1"));
+
+        assertRoundTrip(e);
+    }
+
+    @Test
+    public void did() {
+        DID did = new DID();
+        did.setUsername("alice");
+        did.setDescription("test");
+        did.setStatus(DID.Status.ACTIVE);
+        did.setPassphraseHashAlgorithm(Hash.Algorithm.SHA256);
+        did.setPassphraseHash(new Hash("abc", Hash.Algorithm.SHA256));
+        did.setVerified(true);
+        Envelope e = Envelope.documentFactory();
+        e.setDID(did);
+
+        assertRoundTrip(e);
+        // toMap() has the hash but not its algorithm
+        assertEquals(Hash.Algorithm.SHA256, roundTrip(e).getDID().getPassphraseHash().getAlgorithm());
+    }
+
+    @Test
+    public void documentMessage() {
+        Envelope e = Envelope.documentFactory();
+        DLC.addNVP("name", "value", e);
+        DLC.addNVP("list", Arrays.asList(1, 2L, "three"), e);
+        DLC.addContent(new Image(new byte[]{1, 2, 3}, "image/png", "a.png", false, false), e);
+
+        Envelope e2 = roundTrip(e);
+        assertTrue(e2.getMessage() instanceof DocumentMessage);
+        assertEquals("value", DLC.getValue("name", e2));
+        assertEquals(Arrays.asList(1, 2L, "three"), DLC.getValue("list", e2));
+        Object content = DLC.getContent(e2);
+        assertTrue(content instanceof Image);
+        assertArrayEquals(new byte[]{1, 2, 3}, ((Content)content).getBody());
+        assertEquals("image/png", ((Content)content).getContentType());
+        assertEquals("a.png", ((Content)content).getName());
+    }
+
+    @Test
+    public void textMessage() {
+        DID from = new DID();
+        from.setUsername("alice");
+        DID to = new DID();
+        to.setUsername("bob");
+        Envelope e = Envelope.textFactory();
+        TextMessage m = (TextMessage)e.getMessage();
+        m.setFrom(from);
+        m.setTo(to);
+        m.setText("hello");
+
+        assertRoundTrip(e);
+    }
+
+    @Test
+    public void commandMessage() {
+        Envelope e = Envelope.commandFactory();
+        CommandMessage m = (CommandMessage)e.getMessage();
+        m.setCommand(CommandMessage.Command.Shutdown);
+        m.setTargetName("target");
+        m.addErrorMessage("failed");
+
+        assertRoundTrip(e);
+    }
+
+    @Test
+    public void eventMessage() {
+        Envelope e = Envelope.eventFactory(EventMessage.Type.STATUS_SERVICE);
+        EventMessage m = (EventMessage)e.getMessage();
+        m.setName("started");
+        m.setMessage(new Image(new byte[]{4, 5}, "image/gif"));
+
+        EventMessage m2 = (EventMessage)roundTrip(e).getMessage();
+        assertEquals(m.getId(), m2.getId());
+        assertEquals(EventMessage.Type.STATUS_SERVICE.name(), m2.getType());
+        assertEquals("started", m2.getName());
+        assertTrue(m2.getMessage() instanceof Image);
+        assertArrayEquals(new byte[]{4, 5}, ((Image)m2.getMessage()).getBody());
+    }
+
+    @Test
+    public void lossyValues() {
+        // values that are not JSONSerializable, Maps, Collections or scalars read back as their toString()
+        Envelope e = Envelope.documentFactory();
+        DLC.addException(new IllegalStateException("boom"), e);
+
+        List<?> exceptions = (List<?>)DLC.getValue(DLC.EXCEPTIONS, roundTrip(e));
+        assertEquals(1, exceptions.size());
+        assertEquals(new IllegalStateException("boom").toString(), exceptions.get(0));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void rejectsBadMagic() {
+        byte[] frame = BinaryCodecs.encode(new SimpleRoute("svc", "op"));
+        frame[0] = 0;
+        Envelope.fromBinary(frame);
+    }
+}
@@ -0,0 +1,84 @@
+package io.onemfive.data;
+
+import io.onemfive.data.content.Content;
+import io.onemfive.data.content.Image;
+import io.onemfive.data.route.DynamicRoutingSlip;
+import io.onemfive.data.route.SimpleRoute;
+import io.onemfive.data.util.DLC;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Envelopes through toBytes()/fromBytes() in each format, message included.
+ *
+ * @author objectorange
+ */
+public class EnvelopeBytesTest {
+
+    private static Envelope roundTrip(Envelope e, String contentType) {
+        e.setContentType(contentType);
+        return Envelope.fromBytes(e.toBytes(), contentType);
+    }
+
+    private static Envelope document() {
+        Envelope e = Envelope.documentFactory();
+        e.setSensitivity(Envelope.Sensitivity.MEDIUM);
+        e.getDID().setUsername("alice");
+        e.getDynamicRoutingSlip().addRoute(new SimpleRoute("second", "op2"));
+        e.getDynamicRoutingSlip().addRoute(new SimpleRoute("first", "op1"));
+        DLC.addNVP("name", "value", e);
+        DLC.addContent(new Image(new byte[]{1, 2, 3}, "image/png", "a.png", false, false), e);
+        return e;
+    }
+
+    private static void assertDocument(Envelope e, Envelope e2) {
+        assertEquals(e.getId(), e2.getId());
+        assertEquals(Envelope.Sensitivity.MEDIUM, e2.getSensitivity());
+        assertEquals("alice", e2.getDID().getUsername());
+        DynamicRoutingSlip slip = e2.getDynamicRoutingSlip();
+        assertEquals(Integer.valueOf(2), slip.numberRemainingRoutes());
+        assertEquals("first", slip.nextRoute().getService());
+        assertEquals("second", slip.nextRoute().getService());
+        assertTrue(e2.getMessage() instanceof DocumentMessage);
+        assertEquals("value", DLC.getValue("name", e2));
+        Object content = DLC.getContent(e2);
+        assertTrue(content instanceof Image);
+        assertArrayEquals(new byte[]{1, 2, 3}, ((Content)content).getBody());
+        assertEquals("a.png", ((Content)content).getName());
+    }
+
+    @Test
+    public void cbor() {
+        Envelope e = document();
+        assertDocument(e, roundTrip(e, Envelope.HEADER_CONTENT_TYPE_CBOR));
+    }
+
+    @Test
+    public void messagePack() {
+        Envelope e = document();
+        assertDocument(e, roundTrip(e, Envelope.HEADER_CONTENT_TYPE_MSGPACK));
+    }
+
+    @Test
+    public void json() {
+        Envelope e = document();
+        assertDocument(e, roundTrip(e, Envelope.HEADER_CONTENT_TYPE_JSON));
+    }
+
+    @Test
+    public void textMessage() {
+        Envelope e = Envelope.textFactory();
+        ((TextMessage)e.getMessage()).setText("hello");
+        Envelope e2 = roundTrip(e, Envelope.HEADER_CONTENT_TYPE_CBOR);
+        assertEquals("hello", ((TextMessage)e2.getMessage()).getText());
+    }
+
+    @Test
+    public void commandMessage() {
+        Envelope e = Envelope.commandFactory();
+        ((CommandMessage)e.getMessage()).setCommand(CommandMessage.Command.Restart);
+        Envelope e2 = roundTrip(e, Envelope.HEADER_CONTENT_TYPE_MSGPACK);
+        assertEquals(CommandMessage.Command.Restart, ((CommandMessage)e2.getMessage()).getCommand());
+    }
+}
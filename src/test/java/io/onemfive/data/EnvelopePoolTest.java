@@ -0,0 +1,63 @@
+package io.onemfive.data;
+
+import io.onemfive.data.util.DLC;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author objectorange
+ */
+public class EnvelopePoolTest {
+
+    @Test
+    public void releasedEnvelopeIsReset() {
+        Envelope e = Envelope.acquire(Envelope.MessageType.DOCUMENT);
+        DLC.addNVP("name", "value", e);
+        e.getDID().setUsername("alice");
+        e.release();
+
+        Envelope e2 = Envelope.acquire(Envelope.MessageType.DOCUMENT);
+        assertNull(DLC.getValue("name", e2));
+        assertEquals(new DID().getUsername(), e2.getDID().getUsername());
+        e2.release();
+    }
+
+    @Test
+    public void copiesKeepSharedMessageAndDID() {
+        Envelope e = Envelope.acquire(Envelope.MessageType.DOCUMENT);
+        DLC.addNVP("name", "value", e);
+        e.getDID().setUsername("alice");
+        Envelope copy = Envelope.envelopeFactory(e);
+        e.release();
+
+        // the pool must not hand out the original's message and DID again
+        for(int i = 0; i < 4; i++) {
+            Envelope other = Envelope.acquire(Envelope.MessageType.DOCUMENT);
+            assertNotSame(copy.getMessage(), other.getMessage());
+            assertNotSame(copy.getDID(), other.getDID());
+            other.release();
+        }
+        assertEquals("value", DLC.getValue("name", copy));
+        assertEquals("alice", copy.getDID().getUsername());
+    }
+
+    @Test
+    public void resetCopyLeavesOriginal() {
+        Envelope e = Envelope.acquire(Envelope.MessageType.DOCUMENT);
+        DLC.addNVP("name", "value", e);
+        Envelope copy = Envelope.envelopeFactory(e);
+        copy.reset();
+
+        assertNull(DLC.getValue("name", copy));
+        assertEquals("value", DLC.getValue("name", e));
+        e.release();
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void releaseTwice() {
+        Envelope e = Envelope.acquire(Envelope.MessageType.TEXT);
+        e.release();
+        e.release();
+    }
+}
@@ -0,0 +1,113 @@
+package io.onemfive.data;
+
+import io.onemfive.data.util.DLC;
+import io.onemfive.data.util.DLCKey;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+
+import static org.junit.Assert.*;
+
+/**
+ * Java serialization of envelopes and what they hold.
+ *
+ * @author objectorange
+ */
+public class SerializationTest {
+
+    @SuppressWarnings("unchecked")
+    static <T extends Serializable> T roundTrip(T obj) throws IOException, ClassNotFoundException {
+        ByteArrayOutputStream b = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(b)) {
+            out.writeObject(obj);
+        }
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(b.toByteArray()))) {
+            return (T)in.readObject();
+        }
+    }
+
+    @Test
+    public void headers() throws Exception {
+        Headers h = new Headers();
+        h.put(Envelope.HEADER_CONTENT_TYPE, Envelope.HEADER_CONTENT_TYPE_JSON);
+        h.put("X-Null", null);
+        for(int i = 0; i < 10; i++)
+            h.put("X-" + i, i);
+        h.remove("X-3");
+
+        Headers h2 = roundTrip(h);
+        assertEquals(h, h2);
+        assertEquals(Envelope.HEADER_CONTENT_TYPE_JSON, h2.get(Headers.Key.CONTENT_TYPE));
+        assertTrue(h2.containsKey("X-Null"));
+        h2.put("X-10", 10);
+        assertEquals(10, h2.get("X-10"));
+    }
+
+    @Test
+    public void sharedHeaders() throws Exception {
+        Headers h = new Headers();
+        h.put("X-A", "a");
+        Headers copy = h.copy();
+
+        Headers h2 = roundTrip(copy);
+        h2.put("X-B", "b");
+        assertEquals(2, h2.size());
+        assertEquals(1, h.size());
+    }
+
+    @Test
+    public void envelopeHeaders() throws Exception {
+        Envelope e = Envelope.textFactory();
+        e.setHeader(Envelope.HEADER_USER_AGENT, "test");
+        e.setHeader("X-Custom", "1");
+
+        Envelope e2 = roundTrip(e);
+        assertEquals(e.getId(), e2.getId());
+        assertEquals(e.getHeaders(), e2.getHeaders());
+    }
+
+    @Test
+    public void pooledEnvelope() throws Exception {
+        Envelope e = Envelope.acquire(Envelope.MessageType.TEXT);
+        ((TextMessage)e.getMessage()).setText("hello");
+
+        Envelope e2 = roundTrip(e);
+        assertEquals("hello", ((TextMessage)e2.getMessage()).getText());
+        try {
+            e2.release();
+            fail("deserialized envelope released to the pool");
+        } catch (IllegalStateException ex) {
+            // expected
+        }
+        e.release();
+    }
+
+    @Test
+    public void documentSlots() throws Exception {
+        DocumentSlots d = new DocumentSlots();
+        DLCKey<String> key = DLCKey.of("serialization.test", String.class);
+        d.put(key, "slotted");
+        d.put("X-Other", "other");
+        d.put("X-Null", null);
+
+        DocumentSlots d2 = roundTrip(d);
+        assertEquals(d, d2);
+        assertEquals("slotted", d2.get(key));
+        assertTrue(d2.containsKey("X-Null"));
+        assertNull(d2.get("X-Null"));
+    }
+
+    @Test
+    public void documentEnvelope() throws Exception {
+        Envelope e = Envelope.documentFactory();
+        DLC.addNVP("name", "value", e);
+
+        Envelope e2 = roundTrip(e);
+        assertEquals("value", DLC.getValue("name", e2));
+    }
+}
@@ -0,0 +1,44 @@
+package io.onemfive.data.util;
+
+import io.onemfive.data.Envelope;
+import io.onemfive.data.content.Image;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author objectorange
+ */
+public class DLCTest {
+
+    @Test
+    public void untypedDataAcceptsAnyValue() {
+        Envelope e = Envelope.documentFactory();
+        Map<String,Object> m = Collections.<String,Object>singletonMap("a", "b");
+        DLC.addData(Image.class, m, e);
+        assertEquals(m, DLC.getData(Image.class, e));
+        assertEquals(m, DLC.getValue(Image.class.getName(), e));
+    }
+
+    @Test
+    public void typedData() {
+        Envelope e = Envelope.documentFactory();
+        Image image = new Image(new byte[]{1}, "image/png");
+        DLC.addTypedData(Image.class, image, e);
+        assertSame(image, DLC.getTypedData(Image.class, e));
+        assertSame(image, DLC.getData(Image.class, e));
+
+        Envelope e2 = Envelope.fromBinary(e.toBinary());
+        assertArrayEquals(new byte[]{1}, DLC.getTypedData(Image.class, e2).getBody());
+    }
+
+    @Test(expected = ClassCastException.class)
+    public void typedDataOfOtherType() {
+        Envelope e = Envelope.documentFactory();
+        DLC.addData(Image.class, "not an image", e);
+        DLC.getTypedData(Image.class, e);
+    }
+}
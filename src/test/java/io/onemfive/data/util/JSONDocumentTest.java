@@ -0,0 +1,53 @@
+package io.onemfive.data.util;
+
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author objectorange
+ */
+public class JSONDocumentTest {
+
+    private static Object parse(String json) {
+        return JSONDocument.parse(json.getBytes(StandardCharsets.UTF_8)).getRoot();
+    }
+
+    private static void assertRejected(String json) {
+        try {
+            parse(json);
+            fail("accepted " + json);
+        } catch (IllegalStateException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void wellFormed() {
+        Map<?,?> m = (Map<?,?>)parse("{\"a\":1,\"b\":{\"c\":[true,null]},\"d\":\"x\",\"e\":[]}");
+        assertEquals(1, m.get("a"));
+        assertEquals("x", m.get("d"));
+        List<?> c = (List<?>)((Map<?,?>)m.get("b")).get("c");
+        assertEquals(Boolean.TRUE, c.get(0));
+        assertNull(c.get(1));
+        assertTrue(((List<?>)m.get("e")).isEmpty());
+    }
+
+    @Test
+    public void rejectsMisplacedSeparators() {
+        assertRejected("[1 2]");
+        assertRejected("{\"a\" \"b\"}");
+        assertRejected("{\"a\",1}");
+        assertRejected("[1,,2]");
+        assertRejected("{\"a\":1,}");
+        assertRejected("[,1]");
+        assertRejected("[1,]");
+        assertRejected("{\"a\":}");
+        assertRejected("{\"a\":1 \"b\":2}");
+        assertRejected("[[1][2]]");
+    }
+}
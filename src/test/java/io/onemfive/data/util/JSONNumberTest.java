@@ -0,0 +1,68 @@
+package io.onemfive.data.util;
+
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author objectorange
+ */
+public class JSONNumberTest {
+
+    private static final String[] NUMBERS = {
+            "0", "-0", "7", "-42", "2147483647", "2147483648", "-2147483649",
+            "9223372036854775807", "-9223372036854775808", "9223372036854775808",
+            "1.5", "-0.125", "1e3", "1E-3", "2.5e+10", "123456789012345678901234567890.5", "1e400",
+            "922337203685477580.8", "-922337203685477580.8"
+    };
+
+    private static Number parseBytes(String s, JSONReader.NumberMode mode) {
+        byte[] b = (" " + s + " ").getBytes(StandardCharsets.US_ASCII);
+        return JSONNumber.parse(b, 1, b.length - 1, mode);
+    }
+
+    private static Number parseChars(String s, JSONReader.NumberMode mode) {
+        char[] c = (" " + s + " ").toCharArray();
+        return JSONNumber.parse(c, 1, c.length - 1, mode);
+    }
+
+    @Test
+    public void bytesAndCharsAgree() {
+        for (JSONReader.NumberMode mode : new JSONReader.NumberMode[]{JSONReader.NumberMode.NARROWEST, JSONReader.NumberMode.BIG_DECIMAL}) {
+            for (String s : NUMBERS)
+                assertEquals(s, parseChars(s, mode), parseBytes(s, mode));
+        }
+    }
+
+    @Test
+    public void narrowest() {
+        assertEquals(7, parseBytes("7", JSONReader.NumberMode.NARROWEST));
+        assertEquals(2147483648L, parseBytes("2147483648", JSONReader.NumberMode.NARROWEST));
+        assertEquals(Long.MIN_VALUE, parseBytes("-9223372036854775808", JSONReader.NumberMode.NARROWEST));
+        assertEquals(1.5, parseChars("1.5", JSONReader.NumberMode.NARROWEST));
+        assertEquals(new BigDecimal("-0.125"), parseChars("-0.125", JSONReader.NumberMode.BIG_DECIMAL));
+        assertEquals(new BigDecimal("922337203685477580.8"), parseBytes("922337203685477580.8", JSONReader.NumberMode.BIG_DECIMAL));
+        assertEquals(new BigDecimal("-922337203685477580.8"), parseChars("-922337203685477580.8", JSONReader.NumberMode.BIG_DECIMAL));
+    }
+
+    @Test
+    public void rejectsMalformed() {
+        for (String s : new String[]{"-", "1.", ".5", "1e", "1e+", "12a"}) {
+            try {
+                parseBytes(s, JSONReader.NumberMode.NARROWEST);
+                fail("accepted " + s);
+            } catch (IllegalStateException e) {
+                // expected
+            }
+            try {
+                parseChars(s, JSONReader.NumberMode.NARROWEST);
+                fail("accepted " + s);
+            } catch (IllegalStateException e) {
+                // expected
+            }
+        }
+    }
+}